@@ -11,14 +11,17 @@ function DocumentManager() {
   const [documents, setDocuments] = useState([]);
   const [search, setSearch] = useState("");
   const [fileSearchKeywords, setFileSearchKeywords] = useState({});
+  const [nextCursor, setNextCursor] = useState(null);
 
-  // ✅ Fetch all documents (Admin and User)
-  const fetchDocuments = useCallback(async () => {
+  // ✅ Fetch documents page by page (Admin and User); pass a cursor to append the next page
+  const fetchDocuments = useCallback(async (cursor) => {
     try {
-      const res = await axios.get(`${API_BASE}`, {
+      const res = await axios.get(`${API_BASE}/page`, {
+        params: { size: 50, cursor: cursor || undefined },
         headers: { Authorization: `Bearer ${localStorage.getItem("token")}` },
       });
-      setDocuments(res.data);
+      setDocuments((prev) => (cursor ? [...prev, ...res.data.items] : res.data.items));
+      setNextCursor(res.data.nextCursor);
     } catch (err) {
       console.error(err);
       alert("⚠️ Failed to fetch documents. Please check backend.");
@@ -100,6 +103,7 @@ function DocumentManager() {
         headers: { Authorization: `Bearer ${localStorage.getItem("token")}` },
       });
       setDocuments(res.data);
+      setNextCursor(null);
     } catch (err) {
       console.error(err);
       alert("❌ Global search failed");
@@ -227,6 +231,12 @@ function DocumentManager() {
         </tbody>
       </table>
 
+      {nextCursor && (
+        <button onClick={() => fetchDocuments(nextCursor)} style={{ marginTop: "10px" }}>
+          Load more
+        </button>
+      )}
+
       <button
         onClick={handleLogout}
         style={{
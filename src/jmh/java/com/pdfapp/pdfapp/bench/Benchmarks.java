@@ -0,0 +1,33 @@
+package com.pdfapp.pdfapp.bench;
+
+import com.pdfapp.pdfapp.service.MetricsService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// Shared plumbing for benchmarks that build services without a Spring context
+public final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    // Metrics go to an in-memory registry; the slow-operation log is effectively off
+    public static MetricsService metrics() {
+        MetricsService metrics = new MetricsService(new SimpleMeterRegistry(), new StandardEnvironment());
+        ReflectionTestUtils.setField(metrics, "defaultSlowThresholdMs", Long.MAX_VALUE);
+        return metrics;
+    }
+
+    public static void deleteRecursively(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.pdfapp.pdfapp.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Deterministic generated text for benchmarks. Words are built from syllables and
+ * drawn with a Zipf-like skew, so a few terms are very common and most are rare,
+ * roughly like real documents. The same seed always yields the same corpus.
+ */
+public final class SyntheticCorpus {
+
+    private static final String[] SYLLABLES = {
+            "ka", "lo", "mi", "ren", "tas", "vo", "pri", "del", "sun", "ar",
+            "be", "co", "dra", "fi", "gu", "hol", "in", "jet", "mar", "nex"
+    };
+
+    private final String[] vocabulary;
+    private final double[] cumulative;
+    private final Random random;
+
+    public SyntheticCorpus(int vocabularySize, long seed) {
+        Random words = new Random(seed);
+        vocabulary = new String[vocabularySize];
+        for (int i = 0; i < vocabularySize; i++) {
+            StringBuilder w = new StringBuilder();
+            int syllables = 2 + words.nextInt(3);
+            for (int s = 0; s < syllables; s++) w.append(SYLLABLES[words.nextInt(SYLLABLES.length)]);
+            vocabulary[i] = w.append(i).toString(); // suffix keeps every word distinct
+        }
+
+        cumulative = new double[vocabularySize];
+        double sum = 0;
+        for (int i = 0; i < vocabularySize; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < vocabularySize; i++) cumulative[i] /= sum;
+        random = new Random(seed + 1);
+    }
+
+    // The rank-th most frequent word (0 = most common)
+    public String word(int rank) {
+        return vocabulary[rank];
+    }
+
+    public String nextWord() {
+        int i = Arrays.binarySearch(cumulative, random.nextDouble());
+        return vocabulary[i >= 0 ? i : Math.min(-i - 1, vocabulary.length - 1)];
+    }
+
+    // Sentences of 8-20 words, capitalised and terminated with a full stop
+    public String text(int words) {
+        StringBuilder sb = new StringBuilder(words * 8);
+        int sentence = 0;
+        int sentenceLength = 8 + random.nextInt(13);
+        for (int i = 0; i < words; i++) {
+            String w = nextWord();
+            if (sentence == 0) sb.append(Character.toUpperCase(w.charAt(0))).append(w, 1, w.length());
+            else sb.append(w);
+            if (++sentence == sentenceLength) {
+                sb.append(". ");
+                sentence = 0;
+                sentenceLength = 8 + random.nextInt(13);
+            } else {
+                sb.append(' ');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,133 @@
+package com.pdfapp.pdfapp.controller;
+
+import com.pdfapp.pdfapp.PdfappApplication;
+import com.pdfapp.pdfapp.bench.Benchmarks;
+import com.pdfapp.pdfapp.bench.SyntheticCorpus;
+import com.pdfapp.pdfapp.extract.ExtractedText;
+import com.pdfapp.pdfapp.model.Document;
+import com.pdfapp.pdfapp.model.DocumentStatus;
+import com.pdfapp.pdfapp.repository.DocumentRepository;
+import com.pdfapp.pdfapp.service.SearchIndexService;
+import com.pdfapp.pdfapp.service.TextStoreService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The /search and /search/ranked handlers end to end: query parsing, the index,
+ * the row lookup and (for ranked) snippets read from the segment store; for the
+ * substring and regex modes, the trigram lookup plus the scan of the candidates'
+ * texts. The application runs against an embedded H2 database standing in for
+ * Oracle, seeded with 1k, 10k and 100k generated documents. The result cache is
+ * off, so every invocation does the full work.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class SearchEndToEndBenchmark {
+
+    private static final int WORDS_PER_DOCUMENT = 60;
+    private static final int INSERT_CHUNK = 1000;
+
+    @Param({"1000", "10000", "100000"})
+    public int documents;
+
+    private Path dir;
+    private ConfigurableApplicationContext context;
+    private DocumentController controller;
+    private String booleanKeyword;
+    private String rankedKeyword;
+    private String substringKeyword;
+    private String regexKeyword;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("search-bench");
+        // Passed as arguments so they override application.properties
+        context = new SpringApplicationBuilder(PdfappApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.show-sql=false",
+                "--storage.pdf-dir=" + dir.resolve("pdfs"),
+                "--storage.text-dir=" + dir.resolve("texts"),
+                "--search.index-dir=" + dir.resolve("index"),
+                "--search.cache.max-hits=0",
+                "--metrics.slow-operation-ms=" + Long.MAX_VALUE,
+                "--logging.level.root=WARN");
+
+        DocumentRepository documentRepository = context.getBean(DocumentRepository.class);
+        TextStoreService textStoreService = context.getBean(TextStoreService.class);
+        SyntheticCorpus corpus = new SyntheticCorpus(50_000, 7);
+        List<Document> chunk = new ArrayList<>(INSERT_CHUNK);
+        for (int i = 0; i < documents; i++) {
+            String hash = String.format("%064x", i);
+            Document doc = new Document();
+            doc.setFilename("bench-" + i + ".pdf");
+            doc.setMimeType("application/pdf");
+            doc.setPdfFilePath(dir.resolve("pdfs").resolve(hash + ".pdf").toString());
+            doc.setTextFilePath(TextStoreService.segmentRef(hash));
+            doc.setContentHash(hash);
+            doc.setStatus(DocumentStatus.READY);
+            textStoreService.write(doc.getTextFilePath(), ExtractedText.singlePage(corpus.text(WORDS_PER_DOCUMENT)));
+            chunk.add(doc);
+            if (chunk.size() == INSERT_CHUNK) {
+                documentRepository.saveAll(chunk);
+                chunk.clear();
+            }
+        }
+        documentRepository.saveAll(chunk);
+        context.getBean(SearchIndexService.class).rebuild();
+
+        controller = context.getBean(DocumentController.class);
+        booleanKeyword = corpus.word(0) + " " + corpus.word(200) + " -" + corpus.word(1);
+        rankedKeyword = corpus.word(0) + " " + corpus.word(25) + " " + corpus.word(300);
+        substringKeyword = corpus.word(300).substring(2); // inside the word, as a part number would be
+        regexKeyword = corpus.word(300) + "\\s+\\w+";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        Benchmarks.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public ResponseEntity<?> search() {
+        return controller.searchDocuments(booleanKeyword, "query", false);
+    }
+
+    @Benchmark
+    public ResponseEntity<?> searchFaceted() {
+        return controller.searchDocuments(booleanKeyword, "query", true);
+    }
+
+    @Benchmark
+    public ResponseEntity<?> searchSubstring() {
+        return controller.searchDocuments(substringKeyword, "substring", false);
+    }
+
+    @Benchmark
+    public ResponseEntity<?> searchRegex() {
+        return controller.searchDocuments(regexKeyword, "regex", false);
+    }
+
+    @Benchmark
+    public ResponseEntity<?> searchRanked() {
+        return controller.searchRanked(rankedKeyword, 20);
+    }
+}
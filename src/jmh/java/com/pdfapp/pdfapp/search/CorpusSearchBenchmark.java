@@ -0,0 +1,121 @@
+package com.pdfapp.pdfapp.search;
+
+import com.pdfapp.pdfapp.bench.SyntheticCorpus;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query evaluation and BM25 ranking over an in-memory index of 1k, 10k and 100k
+ * generated documents. Each query shape mixes a very common term with rarer ones,
+ * so the intersections exercise DocIdSet skipping rather than two tiny lists.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class CorpusSearchBenchmark {
+
+    private static final int WORDS_PER_DOCUMENT = 60;
+    private static final int TOP_K = 20;
+
+    @Param({"1000", "10000", "100000"})
+    public int documents;
+
+    private InvertedIndex index;
+    private Query booleanQuery;
+    private Query phraseQuery;
+    private Query prefixQuery;
+    private Query termQuery;
+    private Query fuzzyQuery;
+    private Set<String> rankedTerms;
+    private CompletionTrie suggestions;
+    private String suggestPrefix;
+    private FacetIndex facets;
+    private DocIdSet facetHits;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SyntheticCorpus corpus = new SyntheticCorpus(50_000, 7);
+        index = new InvertedIndex();
+        facets = new FacetIndex();
+        String[] mimeTypes = {"application/pdf", "text/plain", "application/msword", "image/png"};
+        long start = 1_600_000_000_000L;
+        String first = null;
+        for (long id = 1; id <= documents; id++) {
+            String text = corpus.text(WORDS_PER_DOCUMENT);
+            if (first == null) first = text;
+            index.add(id, Tokenizer.tokenize(text));
+            // 50 owners, 4 types, about three years of uploads
+            facets.add(id, new DocumentMeta("doc" + id, null, "user" + (id % 50), mimeTypes[(int) (id % 4)],
+                    start + id * 1_000_000_000L / Math.max(1, documents / 100)));
+        }
+
+        QueryParser parser = new QueryParser(1000);
+        booleanQuery = parser.parse(corpus.word(0) + " " + corpus.word(40) + " OR " + corpus.word(2) + " -" + corpus.word(1));
+        List<String> opening = Tokenizer.terms(first);
+        phraseQuery = parser.parse("\"" + opening.get(0) + " " + opening.get(1) + "\"");
+        prefixQuery = parser.parse(corpus.word(3).substring(0, 3) + "*");
+        // The same mid-frequency word exactly and with one substituted letter; the 50k-word vocabulary is the dictionary
+        String word = corpus.word(300);
+        termQuery = parser.parse(word);
+        fuzzyQuery = parser.parse(word.charAt(0) + "x" + word.substring(2) + "~");
+
+        // Two letters, as typed into the search box: thousands of dictionary terms share the prefix
+        suggestions = new CompletionTrie();
+        index.forEachTerm(suggestions::add);
+        suggestPrefix = corpus.word(3).substring(0, 2);
+
+        facetHits = booleanQuery.evaluate(index);
+
+        rankedTerms = new LinkedHashSet<>();
+        parser.parse(corpus.word(0) + " " + corpus.word(25) + " " + corpus.word(300)).collectTerms(rankedTerms);
+    }
+
+    @Benchmark
+    public DocIdSet booleanQuery() {
+        return booleanQuery.evaluate(index);
+    }
+
+    @Benchmark
+    public DocIdSet phraseQuery() {
+        return phraseQuery.evaluate(index);
+    }
+
+    @Benchmark
+    public DocIdSet prefixQuery() {
+        return prefixQuery.evaluate(index);
+    }
+
+    @Benchmark
+    public DocIdSet termQuery() {
+        return termQuery.evaluate(index);
+    }
+
+    @Benchmark
+    public DocIdSet fuzzyQuery() {
+        return fuzzyQuery.evaluate(index);
+    }
+
+    @Benchmark
+    public List<CompletionTrie.Completion> suggest() {
+        return suggestions.complete(suggestPrefix, 10);
+    }
+
+    // Facet counts for the boolean query's hits, bitmap built per request as the service does
+    @Benchmark
+    public Map<String, Map<String, Integer>> facetCounts() {
+        return facets.counts(RoaringBitmap.of(facetHits), 20);
+    }
+
+    @Benchmark
+    public List<InvertedIndex.ScoredDocument> rankedBm25() {
+        return index.rankBm25(rankedTerms, TOP_K, 1.2, 0.75, 3);
+    }
+}
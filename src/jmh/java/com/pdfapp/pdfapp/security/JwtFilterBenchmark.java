@@ -0,0 +1,75 @@
+package com.pdfapp.pdfapp.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request authentication cost.
+ * legacyFourParses reproduces the old filter (four parserBuilder().build().parseClaimsJws
+ * calls per request); the other benchmarks measure the shared parser, the verified-token
+ * cache and the whole filter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtFilterBenchmark {
+
+    private JwtUtil jwtUtil;
+    private JwtFilter jwtFilter;
+    private Key key;
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwtUtil = new JwtUtil();
+        jwtUtil.init();
+        jwtFilter = new JwtFilter(jwtUtil);
+        key = jwtUtil.getSigningKey();
+        token = jwtUtil.generateToken("admin", "ADMIN");
+    }
+
+    @Benchmark
+    public void legacyFourParses(Blackhole bh) {
+        bh.consume(legacyParse().getSubject());          // extractUsername
+        bh.consume(legacyParse().get("role", String.class)); // extractRole
+        bh.consume(legacyParse().getSubject());          // validateToken -> extractUsername
+        bh.consume(legacyParse().getExpiration().before(new Date())); // isTokenExpired
+    }
+
+    private Claims legacyParse() {
+        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+    }
+
+    @Benchmark
+    public String singleParse() {
+        return jwtUtil.extractUsername(token);
+    }
+
+    @Benchmark
+    public JwtUtil.VerifiedToken cachedVerify() {
+        return jwtUtil.verify(token);
+    }
+
+    @Benchmark
+    public Object filterRequest() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/documents");
+        request.addHeader("Authorization", "Bearer " + token);
+        jwtFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Object auth = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return auth;
+    }
+}
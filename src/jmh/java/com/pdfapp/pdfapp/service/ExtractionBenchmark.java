@@ -0,0 +1,179 @@
+package com.pdfapp.pdfapp.service;
+
+import com.pdfapp.pdfapp.bench.Benchmarks;
+import com.pdfapp.pdfapp.bench.SyntheticCorpus;
+import com.pdfapp.pdfapp.extract.ExtractedText;
+import com.pdfapp.pdfapp.extract.Extractor;
+import com.pdfapp.pdfapp.extract.TextSink;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFTextBox;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xwpf.usermodel.BreakType;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction of generated files of 1, 10 and 100 pages (about 400 words per page;
+ * a slide, worksheet or page break per page where the format has them). Files are
+ * written once per trial; each invocation parses one from disk. extractText goes
+ * through ExtractionService as an extraction job does (sniffing, limits, metrics,
+ * collected text); extractor streams the format's Extractor alone into a sink that
+ * drops the text, which is the parser's own cost.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExtractionBenchmark {
+
+    private static final int WORDS_PER_PAGE = 400;
+    private static final int WORDS_PER_LINE = 12;
+
+    @Param({"pdf", "docx", "pptx", "xlsx", "txt"})
+    public String format;
+
+    @Param({"1", "10", "100"})
+    public int pages;
+
+    private Path dir;
+    private Path file;
+    private ExtractionService extractionService;
+    private Extractor extractor;
+
+    // What a consumer that indexes as it goes would see, minus the consumer
+    private static final TextSink DISCARD = new TextSink() {
+        @Override
+        public void startPage() {
+        }
+
+        @Override
+        public void append(CharSequence text) {
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        extractionService = new ExtractionService(Benchmarks.metrics(), new StandardEnvironment());
+        ReflectionTestUtils.setField(extractionService, "pdfMaxMainMemoryBytes", 16L * 1024 * 1024);
+        ReflectionTestUtils.setField(extractionService, "pdfScratchDir", "");
+        ReflectionTestUtils.setField(extractionService, "parallelPageThreshold", 200);
+        extractionService.start();
+
+        dir = Files.createTempDirectory("extraction-bench");
+        SyntheticCorpus corpus = new SyntheticCorpus(20_000, 42);
+        file = dir.resolve("bench." + format);
+        switch (format) {
+            case "pdf" -> writePdf(corpus);
+            case "docx" -> writeDocx(corpus);
+            case "pptx" -> writePptx(corpus);
+            case "xlsx" -> writeXlsx(corpus);
+            default -> writeTxt(corpus);
+        }
+        extractor = extractionService.getRegistry().get(format);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        extractionService.stop();
+        Benchmarks.deleteRecursively(dir);
+    }
+
+    private void writePdf(SyntheticCorpus corpus) throws IOException {
+        try (PDDocument doc = new PDDocument()) {
+            for (int p = 0; p < pages; p++) {
+                PDPage page = new PDPage();
+                doc.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(doc, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 9);
+                    content.setLeading(11);
+                    content.newLineAtOffset(40, 750);
+                    for (int line = 0; line < WORDS_PER_PAGE / WORDS_PER_LINE; line++) {
+                        content.showText(corpus.text(WORDS_PER_LINE));
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            doc.save(file.toFile());
+        }
+    }
+
+    private void writeDocx(SyntheticCorpus corpus) throws IOException {
+        try (XWPFDocument doc = new XWPFDocument(); OutputStream out = Files.newOutputStream(file)) {
+            for (int p = 0; p < pages; p++) {
+                for (int para = 0; para < WORDS_PER_PAGE / 40; para++) {
+                    doc.createParagraph().createRun().setText(corpus.text(40));
+                }
+                if (p < pages - 1) {
+                    XWPFRun run = doc.createParagraph().createRun();
+                    run.addBreak(BreakType.PAGE);
+                }
+            }
+            doc.write(out);
+        }
+    }
+
+    private void writePptx(SyntheticCorpus corpus) throws IOException {
+        try (XMLSlideShow ppt = new XMLSlideShow(); OutputStream out = Files.newOutputStream(file)) {
+            for (int p = 0; p < pages; p++) {
+                XSLFTextBox box = ppt.createSlide().createTextBox();
+                box.clearText();
+                for (int para = 0; para < WORDS_PER_PAGE / 40; para++) {
+                    box.addNewTextParagraph().addNewTextRun().setText(corpus.text(40));
+                }
+            }
+            ppt.write(out);
+        }
+    }
+
+    private void writeXlsx(SyntheticCorpus corpus) throws IOException {
+        try (XSSFWorkbook book = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            for (int p = 0; p < pages; p++) {
+                XSSFSheet sheet = book.createSheet("Sheet" + (p + 1));
+                for (int r = 0; r < WORDS_PER_PAGE / WORDS_PER_LINE; r++) {
+                    XSSFRow row = sheet.createRow(r);
+                    for (int c = 0; c < WORDS_PER_LINE; c++) row.createCell(c).setCellValue(corpus.nextWord());
+                }
+            }
+            book.write(out);
+        }
+    }
+
+    private void writeTxt(SyntheticCorpus corpus) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file)) {
+            for (int line = 0; line < pages * WORDS_PER_PAGE / WORDS_PER_LINE; line++) {
+                out.write(corpus.text(WORDS_PER_LINE));
+                out.write('\n');
+            }
+        }
+    }
+
+    @Benchmark
+    public ExtractedText extractText() throws IOException {
+        return extractionService.extractText(file);
+    }
+
+    @Benchmark
+    public void extractor() throws IOException {
+        extractor.extract(file, DISCARD);
+    }
+}
@@ -0,0 +1,66 @@
+package com.pdfapp.pdfapp.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * One-off migration for Oracle schemas created while documents.id was an IDENTITY column.
+ * ddl-auto creates DOCUMENTS_SEQ starting at 1, so it is moved past the existing ids, and
+ * an ALWAYS identity column is relaxed so inserts may supply sequence ids. Once the
+ * sequence has been moved, its LAST_NUMBER stays above MAX(id) and this does nothing.
+ * It runs while the context starts, after Hibernate's schema update (hence the
+ * EntityManagerFactory dependency) and before the web server accepts requests or any
+ * runner (e.g. the reindex import) inserts documents.
+ */
+@Component
+public class DocumentSequenceMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentSequenceMigration.class);
+
+    private static final int ALLOCATION_SIZE = 50; // must match @SequenceGenerator on Document
+
+    private final DataSource dataSource;
+
+    // Injected only so that the schema exists (ddl-auto has run) before migrate()
+    public DocumentSequenceMigration(DataSource dataSource, EntityManagerFactory entityManagerFactory) {
+        this.dataSource = dataSource;
+    }
+
+    @PostConstruct
+    public void migrate() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            if (!connection.getMetaData().getDatabaseProductName().toLowerCase().contains("oracle")) return;
+        }
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+
+        List<String> generation = jdbc.queryForList("select generation_type from user_tab_identity_cols "
+                + "where table_name = 'DOCUMENTS' and column_name = 'ID'", String.class);
+        if (!generation.isEmpty() && "ALWAYS".equals(generation.get(0))) {
+            jdbc.execute("alter table documents modify (id generated by default on null as identity)");
+            log.info("documents.id identity relaxed to BY DEFAULT ON NULL");
+        }
+
+        long maxId = jdbc.queryForObject("select nvl(max(id), 0) from documents", Long.class);
+        List<Long> lastNumber = jdbc.queryForList("select last_number from user_sequences "
+                + "where sequence_name = 'DOCUMENTS_SEQ'", Long.class);
+        if (lastNumber.isEmpty() || lastNumber.get(0) > maxId) return;
+
+        // Consume one value at a large increment so the next allocation starts above maxId
+        long current = jdbc.queryForObject("select DOCUMENTS_SEQ.nextval from dual", Long.class);
+        if (current < maxId) {
+            jdbc.execute("alter sequence DOCUMENTS_SEQ increment by " + (maxId - current));
+            jdbc.queryForObject("select DOCUMENTS_SEQ.nextval from dual", Long.class);
+            jdbc.execute("alter sequence DOCUMENTS_SEQ increment by " + ALLOCATION_SIZE);
+        }
+        log.info("DOCUMENTS_SEQ moved past existing document ids (max id {})", maxId);
+    }
+}
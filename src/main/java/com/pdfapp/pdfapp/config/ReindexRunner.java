@@ -0,0 +1,46 @@
+package com.pdfapp.pdfapp.config;
+
+import com.pdfapp.pdfapp.service.ReindexService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+/**
+ * Headless reindex: java -jar pdfapp.jar --spring.profiles.active=reindex
+ * Runs ReindexService once (after the admin seeders) and exits; the exit code is
+ * non-zero if any file could not be processed. Safe to interrupt and run again.
+ */
+@Configuration
+@Profile("reindex")
+public class ReindexRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ReindexRunner.class);
+
+    @Bean
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    CommandLineRunner reindex(ReindexService reindexService, ConfigurableApplicationContext context) {
+        return args -> {
+            int exitCode = runOnce(reindexService);
+            System.exit(SpringApplication.exit(context, () -> exitCode));
+        };
+    }
+
+    // 0 when every file was processed, 2 when some could not be, 1 when the run itself failed
+    static int runOnce(ReindexService reindexService) {
+        try {
+            ReindexService.Summary summary = reindexService.run();
+            log.info("Reindex finished: {}", summary);
+            return summary.getErrors() > 0 ? 2 : 0;
+        } catch (Exception e) {
+            log.error("Reindex failed", e);
+            return 1;
+        }
+    }
+}
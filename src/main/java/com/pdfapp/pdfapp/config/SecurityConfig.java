@@ -1,6 +1,7 @@
 package com.pdfapp.pdfapp.config;
 
 import com.pdfapp.pdfapp.security.JwtFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -18,6 +19,7 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
 @EnableMethodSecurity
+@ConditionalOnWebApplication // not needed by the headless reindex profile
 public class SecurityConfig {
 
     private final JwtFilter jwtFilter;
@@ -66,6 +68,10 @@ public class SecurityConfig {
                 // 👇 Public endpoints (no authentication)
                 .requestMatchers("/api/users/login", "/api/users/register").permitAll()
 
+                // 👇 Health is open; metrics (Prometheus scrape included) and the rest of actuator are ADMIN only
+                .requestMatchers("/actuator/health").permitAll()
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
+
                 // 👇 Allow GET requests to documents (fetch, search, download)
                 .requestMatchers(HttpMethod.GET, "/api/documents/**").permitAll()
 
@@ -1,24 +1,58 @@
 package com.pdfapp.pdfapp.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pdfapp.pdfapp.dto.BatchUploadReportDTO;
 import com.pdfapp.pdfapp.dto.DocumentDTO;
+import com.pdfapp.pdfapp.dto.DocumentPageDTO;
+import com.pdfapp.pdfapp.dto.FacetedSearchDTO;
+import com.pdfapp.pdfapp.dto.PageHitDTO;
+import com.pdfapp.pdfapp.dto.SearchHitDTO;
+import com.pdfapp.pdfapp.dto.SuggestionDTO;
+import com.pdfapp.pdfapp.extract.ExtractedText;
+import com.pdfapp.pdfapp.extract.ExtractionLimits;
+import com.pdfapp.pdfapp.extract.Extractor;
 import com.pdfapp.pdfapp.model.Document;
+import com.pdfapp.pdfapp.model.DocumentStatus;
 import com.pdfapp.pdfapp.model.User;
 import com.pdfapp.pdfapp.repository.DocumentRepository;
 import com.pdfapp.pdfapp.repository.UserRepository;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
-import org.apache.poi.xwpf.usermodel.XWPFParagraph;
-import org.springframework.core.io.ByteArrayResource;
+import com.pdfapp.pdfapp.search.DocIdSet;
+import com.pdfapp.pdfapp.search.InvertedIndex;
+import com.pdfapp.pdfapp.search.Query;
+import com.pdfapp.pdfapp.search.QuerySyntaxException;
+import com.pdfapp.pdfapp.search.QueryTimeoutException;
+import com.pdfapp.pdfapp.search.SnippetBuilder;
+import com.pdfapp.pdfapp.search.TextScanner;
+import com.pdfapp.pdfapp.search.Tokenizer;
+import com.pdfapp.pdfapp.service.BatchUploadService;
+import com.pdfapp.pdfapp.service.ExtractionJobService;
+import com.pdfapp.pdfapp.service.ExtractionService;
+import com.pdfapp.pdfapp.service.FileStorageService;
+import com.pdfapp.pdfapp.service.MetricsService;
+import com.pdfapp.pdfapp.service.SearchIndexService;
+import com.pdfapp.pdfapp.service.SearchResultCache;
+import com.pdfapp.pdfapp.service.TextStoreService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.*;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
 
 @RestController
@@ -27,51 +61,132 @@ public class DocumentController {
 
     private final DocumentRepository documentRepository;
     private final UserRepository userRepository;
-    private final Path pdfDir = Paths.get("uploaded_pdfs");
-    private final Path textDir = Paths.get("extracted_texts");
+    private final SearchIndexService searchIndexService;
+    private final SearchResultCache searchResultCache;
+    private final ExtractionJobService extractionJobService;
+    private final ExtractionService extractionService;
+    private final FileStorageService fileStorageService;
+    private final TextStoreService textStoreService;
+    private final BatchUploadService batchUploadService;
+    private final MetricsService metrics;
+    private final ObjectMapper objectMapper;
 
-    public DocumentController(DocumentRepository documentRepository, UserRepository userRepository) {
+    @Value("${search.in-document.max-hits:100}")
+    private int maxInDocumentHits;
+
+    @Value("${search.in-document.snippet-context:60}")
+    private int snippetContext;
+
+    @Value("${search.ranked.max-results:100}")
+    private int maxRankedResults;
+
+    @Value("${search.ranked.snippets-per-hit:3}")
+    private int snippetsPerHit;
+
+    @Value("${search.stream.max-results:1000}")
+    private int maxStreamResults;
+
+    @Value("${search.stream.timeout-ms:10000}")
+    private long streamTimeoutMs;
+
+    @Value("${search.facets.max-values:20}")
+    private int maxFacetValues;
+
+    @Value("${search.suggest.max-results:10}")
+    private int maxSuggestions;
+
+    @Value("${listing.max-page-size:200}")
+    private int maxPageSize;
+
+    public DocumentController(DocumentRepository documentRepository, UserRepository userRepository,
+                              SearchIndexService searchIndexService, SearchResultCache searchResultCache,
+                              ExtractionJobService extractionJobService, ExtractionService extractionService,
+                              FileStorageService fileStorageService, TextStoreService textStoreService,
+                              BatchUploadService batchUploadService, MetricsService metrics,
+                              ObjectMapper objectMapper) {
         this.documentRepository = documentRepository;
         this.userRepository = userRepository;
-
-        try {
-            Files.createDirectories(pdfDir);
-            Files.createDirectories(textDir);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        this.searchIndexService = searchIndexService;
+        this.searchResultCache = searchResultCache;
+        this.extractionJobService = extractionJobService;
+        this.extractionService = extractionService;
+        this.fileStorageService = fileStorageService;
+        this.textStoreService = textStoreService;
+        this.batchUploadService = batchUploadService;
+        this.metrics = metrics;
+        this.objectMapper = objectMapper;
     }
 
-    // ✅ Upload (Admin only)
+    // ✅ Upload (Admin only) — stores the file and queues text extraction
     @PreAuthorize("hasRole('ADMIN')")
     @PostMapping("/upload")
     public ResponseEntity<?> uploadFile(@RequestParam("file") MultipartFile file,
                                         @RequestParam(value = "ownerId", required = false) Long ownerId) {
         if (file.isEmpty()) return ResponseEntity.badRequest().body("No file selected");
+        if (extractionJobService.isSaturated()) return queueFull();
 
         try {
             String filename = file.getOriginalFilename();
-            Path pdfPath = pdfDir.resolve(filename);
-            Files.write(pdfPath, file.getBytes());
-
-            // Extract text
-            String extractedText = extractText(file);
-            Path textPath = textDir.resolve(filename + ".txt");
-            Files.writeString(textPath, extractedText);
+            FileStorageService.StoredFile stored = fileStorageService.store(file);
+            String hash = stored.getSha256();
+
+            // The format is decided by the file's bytes, whatever the client labelled it
+            Extractor extractor = extractionService.detect(stored.getPath());
+            if (extractor == null) {
+                releaseIfUnreferenced(stored);
+                return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).body("Unsupported file format");
+            }
+            ExtractionLimits limits = extractionService.getLimits(extractor.name());
+            if (limits.maxBytes() > 0 && stored.getSize() > limits.maxBytes()) {
+                releaseIfUnreferenced(stored);
+                return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                        .body("File exceeds the " + limits.maxBytes() + " byte limit for " + extractor.name() + " files");
+            }
 
-            // Save metadata
             Document doc = new Document();
             doc.setFilename(filename);
-            doc.setMimeType(file.getContentType());
-            doc.setPdfFilePath(pdfPath.toString());
-            doc.setTextFilePath(textPath.toString());
+            doc.setMimeType(extractionService.contentType(extractor, file.getContentType()));
+            doc.setContentHash(hash);
 
             if (ownerId != null) {
                 userRepository.findById(ownerId).ifPresent(doc::setOwner);
             }
 
-            documentRepository.save(doc);
-            return ResponseEntity.ok(new DocumentDTO(doc));
+            // Same content already extracted: share its blob and text instead of parsing again
+            Document twin = null;
+            synchronized (fileStorageService.lockFor(hash)) {
+                if (!Files.exists(stored.getPath())) stored = fileStorageService.store(file); // raced a delete
+                doc.setPdfFilePath(stored.getPath().toString());
+
+                if (stored.isDuplicate()) {
+                    twin = documentRepository.findReadyByContentHash(hash).stream()
+                            .filter(d -> textStoreService.exists(d.getTextFilePath()))
+                            .findFirst().orElse(null);
+                }
+                if (twin != null) {
+                    doc.setTextFilePath(twin.getTextFilePath());
+                    doc.setStatus(DocumentStatus.READY);
+                } else {
+                    doc.setTextFilePath(fileStorageService.textRef(hash));
+                    doc.setStatus(DocumentStatus.PENDING);
+                }
+                documentRepository.save(doc);
+            }
+
+            if (twin != null) {
+                if (!searchIndexService.copyDocument(twin.getId(), doc)) {
+                    searchIndexService.indexDocument(doc, textStoreService.read(doc.getTextFilePath()));
+                }
+                return ResponseEntity.ok(new DocumentDTO(doc));
+            }
+
+            try {
+                extractionJobService.submit(doc.getId());
+            } catch (RejectedExecutionException e) {
+                deleteRowAndReleaseFiles(doc);
+                return queueFull();
+            }
+            return ResponseEntity.accepted().body(new DocumentDTO(doc));
 
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -79,38 +194,116 @@ public class DocumentController {
         }
     }
 
-    private String extractText(MultipartFile file) throws IOException {
-        String contentType = file.getContentType();
-        if (contentType == null) return "";
-
-        if (contentType.contains("pdf")) {
-            try (PDDocument pdfDoc = PDDocument.load(file.getBytes())) {
-                return new PDFTextStripper().getText(pdfDoc);
-            }
-        } else if (contentType.contains("word")) {
-            try (XWPFDocument docx = new XWPFDocument(file.getInputStream())) {
-                StringBuilder sb = new StringBuilder();
-                for (XWPFParagraph p : docx.getParagraphs()) {
-                    sb.append(p.getText()).append("\n");
+    // ✅ Batch upload (Admin only) — many files (or one ZIP archive) per request, extracted in parallel.
+    // Waits for extraction and reports each file's final status; async=true returns 202 straight after saving.
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(value = "/upload/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> uploadBatch(@RequestParam(value = "files", required = false) List<MultipartFile> files,
+                                         @RequestParam(value = "archive", required = false) MultipartFile archive,
+                                         @RequestParam(value = "ownerId", required = false) Long ownerId,
+                                         @RequestParam(value = "async", defaultValue = "false") boolean async) {
+        if ((files == null || files.isEmpty()) && (archive == null || archive.isEmpty())) {
+            return ResponseEntity.badRequest().body("No files selected");
+        }
+        if (extractionJobService.isBatchSaturated()) return queueFull();
+        try {
+            BatchUploadReportDTO report;
+            if (archive != null && !archive.isEmpty()) {
+                try (InputStream in = archive.getInputStream()) {
+                    report = batchUploadService.ingestZip(in, ownerId, !async);
                 }
-                return sb.toString();
+            } else {
+                report = batchUploadService.ingestFiles(files, ownerId, !async);
             }
+            return async ? ResponseEntity.accepted().body(report) : ResponseEntity.ok(report);
+        } catch (BatchUploadService.ArchiveTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body("Could not read archive: " + e.getMessage());
         }
-        return "";
     }
 
-    // ✅ Show all docs for both Admin & Users
-    @GetMapping
-    public List<DocumentDTO> getDocuments(@RequestParam(value = "ownerId", required = false) Long ownerId) {
-        List<Document> docs = documentRepository.findAll();
+    // ✅ Same, with the ZIP archive as the raw request body (streamed, never buffered as multipart;
+    // batch.max-archive-bytes caps it in place of the multipart request size limit)
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(value = "/upload/batch", consumes = {"application/zip", "application/x-zip-compressed"})
+    public ResponseEntity<?> uploadZipStream(HttpServletRequest request,
+                                             @RequestParam(value = "ownerId", required = false) Long ownerId,
+                                             @RequestParam(value = "async", defaultValue = "false") boolean async) {
+        if (extractionJobService.isBatchSaturated()) return queueFull();
+        try {
+            BatchUploadReportDTO report = batchUploadService.ingestZip(request.getInputStream(), ownerId, !async);
+            return async ? ResponseEntity.accepted().body(report) : ResponseEntity.ok(report);
+        } catch (BatchUploadService.ArchiveTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body("Could not read archive: " + e.getMessage());
+        }
+    }
+
+    private ResponseEntity<String> queueFull() {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .body("Extraction queue is full, please retry later");
+    }
 
-        return docs.stream()
+    // ✅ Poll extraction status after an upload
+    @GetMapping("/{id}/status")
+    public ResponseEntity<DocumentDTO> getStatus(@PathVariable Long id) {
+        return documentRepository.findById(id)
                 .map(DocumentDTO::new)
-                .sorted(Comparator.comparing(DocumentDTO::getUploadedAt, Comparator.nullsLast(String::compareTo)).reversed())
-                .collect(Collectors.toList());
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // ✅ Get all documents for both Admin & Users, newest first, as a plain list.
+    // Bounded like a single page, so no request reads the whole table; use /page to read further.
+    @GetMapping
+    public List<DocumentDTO> getDocuments(@RequestParam(value = "ownerId", required = false) Long ownerId,
+                                          @RequestParam(value = "size", defaultValue = "50") int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        Pageable limit = PageRequest.of(0, pageSize);
+        return ownerId != null ? documentRepository.findListingByOwner(ownerId, limit)
+                : documentRepository.findListing(limit);
+    }
+
+    // ✅ Keyset-paginated listing: pass back nextCursor to get the following page
+    @GetMapping("/page")
+    public ResponseEntity<?> getDocumentPage(@RequestParam(value = "ownerId", required = false) Long ownerId,
+                                             @RequestParam(value = "size", defaultValue = "50") int size,
+                                             @RequestParam(value = "cursor", required = false) String cursor) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        Pageable limit = PageRequest.of(0, pageSize + 1); // one extra row tells us whether more exist
+
+        List<DocumentDTO> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = ownerId != null ? documentRepository.findListingByOwner(ownerId, limit)
+                    : documentRepository.findListing(limit);
+        } else {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+                LocalDateTime uploadedAt = LocalDateTime.parse(parts[0]);
+                long id = Long.parseLong(parts[1]);
+                rows = ownerId != null ? documentRepository.findListingByOwnerAfter(ownerId, uploadedAt, id, limit)
+                        : documentRepository.findListingAfter(uploadedAt, id, limit);
+            } catch (RuntimeException e) {
+                return ResponseEntity.badRequest().body("Invalid cursor");
+            }
+        }
+
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            DocumentDTO last = rows.get(pageSize - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (last.getUploadedAtValue() + "|" + last.getId()).getBytes(StandardCharsets.UTF_8));
+        }
+        return ResponseEntity.ok(new DocumentPageDTO(rows, nextCursor));
     }
 
     // ✅ Open PDF/DOCX file inline
+    // Range requests (206) and If-None-Match / If-Modified-Since (304) are answered by
+    // Spring's Resource handling once the validators below are set on the response.
     @GetMapping("/{id}/file")
     public ResponseEntity<Resource> openFile(@PathVariable Long id) throws IOException {
         Document doc = documentRepository.findById(id).orElse(null);
@@ -119,35 +312,79 @@ public class DocumentController {
         Path path = Paths.get(doc.getPdfFilePath());
         if (!Files.exists(path)) return ResponseEntity.notFound().build();
 
-        ByteArrayResource resource = new ByteArrayResource(Files.readAllBytes(path));
-        MediaType type = doc.getMimeType().toLowerCase().contains("word")
-                ? MediaType.APPLICATION_OCTET_STREAM
-                : MediaType.APPLICATION_PDF;
+        if (doc.getContentHash() == null) {
+            doc.setContentHash(fileStorageService.sha256(path));
+            documentRepository.save(doc);
+        }
 
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + path.getFileName() + "\"")
+        Resource resource = metrics.metered(new FileSystemResource(path), "endpoint", "file", "encoding", "identity");
+        MediaType type = doc.getMimeType() != null && doc.getMimeType().toLowerCase().contains("pdf")
+                ? MediaType.APPLICATION_PDF
+                : MediaType.APPLICATION_OCTET_STREAM;
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + doc.getFilename() + "\"")
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .eTag(doc.getContentHash())
+                .cacheControl(CacheControl.noCache());
+        if (doc.getUploadedAt() != null) {
+            response.lastModified(doc.getUploadedAt().atZone(ZoneId.systemDefault()));
+        }
+
+        return response
                 .contentType(type)
                 .contentLength(Files.size(path))
                 .body(resource);
     }
 
-    // ✅ Download extracted text
+    // ✅ Download extracted text (gzip-encoded straight from the stored blocks when the client accepts it)
     @GetMapping("/{id}/download")
-    public ResponseEntity<Resource> downloadText(@PathVariable Long id) throws IOException {
+    public ResponseEntity<Resource> downloadText(@PathVariable Long id,
+                                                 @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+            throws IOException {
         Document doc = documentRepository.findById(id).orElse(null);
         if (doc == null) return ResponseEntity.notFound().build();
 
-        Path path = Paths.get(doc.getTextFilePath());
-        if (!Files.exists(path)) return ResponseEntity.notFound().build();
+        if (doc.getStatus() != DocumentStatus.READY) return ResponseEntity.status(HttpStatus.CONFLICT).build();
 
-        ByteArrayResource resource = new ByteArrayResource(Files.readAllBytes(path));
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + path.getFileName() + "\"")
+        if (!textStoreService.exists(doc.getTextFilePath())) return ResponseEntity.notFound().build();
+
+        Resource gzip = acceptsGzip(acceptEncoding) ? textStoreService.gzipResource(doc.getTextFilePath()) : null;
+        Resource resource = metrics.metered(gzip != null ? gzip : textStoreService.resource(doc.getTextFilePath()),
+                "endpoint", "text", "encoding", gzip != null ? "gzip" : "identity");
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + doc.getFilename() + ".txt\"")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip != null) response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return response
                 .contentType(MediaType.TEXT_PLAIN)
-                .contentLength(Files.size(path))
+                .contentLength(resource.contentLength())
                 .body(resource);
     }
 
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.trim().split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ROOT);
+            if (!coding.equals("gzip") && !coding.equals("*")) continue;
+            boolean refused = false;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim().replace(" ", "");
+                if (param.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(param.substring(2)) == 0;
+                    } catch (NumberFormatException ignored) {
+                        // a malformed q-value does not refuse the coding
+                    }
+                }
+            }
+            if (!refused) return true;
+        }
+        return false;
+    }
+
     // ✅ Delete (Admin only)
     @PreAuthorize("hasRole('ADMIN')")
     @DeleteMapping("/{id}")
@@ -157,49 +394,260 @@ public class DocumentController {
 
         Document doc = optionalDoc.get();
         try {
-            if (doc.getPdfFilePath() != null) Files.deleteIfExists(Paths.get(doc.getPdfFilePath()));
-            if (doc.getTextFilePath() != null) Files.deleteIfExists(Paths.get(doc.getTextFilePath()));
-            documentRepository.delete(doc);
-            return ResponseEntity.ok("Document deleted successfully");
+            deleteRowAndReleaseFiles(doc);
         } catch (IOException e) {
             return ResponseEntity.status(500).body("Failed to delete files");
         }
+        try {
+            searchIndexService.removeDocument(id);
+        } catch (IOException e) {
+            return ResponseEntity.status(500).body("Document deleted, but the search index could not record it");
+        }
+        return ResponseEntity.ok("Document deleted successfully");
+    }
+
+    // Blobs and texts are shared between rows with identical content; remove them with the last reference
+    private void deleteRowAndReleaseFiles(Document doc) throws IOException {
+        synchronized (fileStorageService.lockFor(doc.getContentHash())) {
+            documentRepository.delete(doc);
+            if (doc.getPdfFilePath() != null && documentRepository.countByPdfFilePath(doc.getPdfFilePath()) == 0) {
+                Files.deleteIfExists(Paths.get(doc.getPdfFilePath()));
+            }
+            if (doc.getTextFilePath() != null && documentRepository.countByTextFilePath(doc.getTextFilePath()) == 0) {
+                textStoreService.delete(doc.getTextFilePath());
+            }
+        }
+    }
+
+    private void releaseIfUnreferenced(FileStorageService.StoredFile stored) throws IOException {
+        synchronized (fileStorageService.lockFor(stored.getSha256())) {
+            if (documentRepository.countByPdfFilePath(stored.getPath().toString()) == 0) {
+                Files.deleteIfExists(stored.getPath());
+            }
+        }
     }
 
-    // ✅ Search globally across files
+    // ✅ Search globally across files (answered from the indexes; repeated queries from the result cache)
+    // mode=substring (default, the original contains match): keyword occurs anywhere in the text, inside words too, ignoring case
+    // mode=query: keyword uses the query language in QueryParser: AND/OR/NOT, "phrases", prefix*, fuzzy~, field filters
+    // mode=fuzzy: the same, with every plain word matched as word~ (typos within 1-2 edits)
+    // mode=regex: keyword is a java.util.regex pattern matched case-insensitively
+    // facets=true: {"documents": [...], "facets": {"owner": {...}, "mimeType": {...}, "uploaded": {"2024-03": n}}}
     @GetMapping("/search")
-    public List<DocumentDTO> searchDocuments(@RequestParam String keyword) {
-        if (keyword == null || keyword.trim().isEmpty()) return List.of();
-        String searchKey = keyword.toLowerCase();
+    public ResponseEntity<?> searchDocuments(@RequestParam String keyword,
+                                             @RequestParam(value = "mode", defaultValue = "substring") String mode,
+                                             @RequestParam(value = "facets", defaultValue = "false") boolean facets) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            return ResponseEntity.ok(facets ? new FacetedSearchDTO(List.of(), Map.of()) : List.of());
+        }
 
-        return documentRepository.findAll().stream()
-                .filter(doc -> {
-                    try {
-                        String content = Files.readString(Paths.get(doc.getTextFilePath()));
-                        return content.toLowerCase().contains(searchKey);
-                    } catch (IOException e) {
-                        return false;
-                    }
-                })
-                .map(DocumentDTO::new)
+        try {
+            SearchResultCache.Hits<DocumentDTO> hits = switch (mode) {
+                case "query" -> searchResultCache.getHits("boolean", keyword,
+                        () -> searchIndexService.search(searchIndexService.parse(keyword)), this::toDtos);
+                case "fuzzy" -> searchResultCache.getHits("fuzzy", keyword,
+                        () -> searchIndexService.search(searchIndexService.parse(keyword, true)), this::toDtos);
+                case "substring" -> searchResultCache.getHitsVerbatim("substring", keyword,
+                        () -> searchIndexService.searchSubstring(keyword), this::toDtos);
+                case "regex" -> searchResultCache.getHitsVerbatim("regex", keyword,
+                        () -> searchIndexService.searchRegex(keyword), this::toDtos);
+                default -> null;
+            };
+            if (hits == null) return ResponseEntity.badRequest().body("Unknown search mode: " + mode);
+            if (!facets) return ResponseEntity.ok(hits.documents());
+
+            // The cached id set goes straight into the facet bitmaps
+            return ResponseEntity.ok(new FacetedSearchDTO(hits.documents(), searchIndexService.facetCounts(hits.ids(), maxFacetValues)));
+        } catch (QuerySyntaxException e) {
+            return ResponseEntity.badRequest().body("Invalid query: " + e.getMessage());
+        } catch (PatternSyntaxException e) {
+            return ResponseEntity.badRequest().body("Invalid regex: " + e.getDescription());
+        } catch (QueryTimeoutException e) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(e.getMessage());
+        }
+    }
+
+    private List<DocumentDTO> toDtos(DocIdSet ids) {
+        if (ids.isEmpty()) return List.of();
+
+        return documentRepository.findDtosByIdIn(ids.toList()).stream()
+                .sorted(Comparator.comparing(DocumentDTO::getId))
                 .collect(Collectors.toList());
     }
 
-    // ✅ Search inside one document
-    @GetMapping("/{id}/search")
-    public ResponseEntity<List<String>> searchInFile(@PathVariable Long id,
-                                                     @RequestParam String keyword) throws IOException {
-        Document doc = documentRepository.findById(id).orElse(null);
-        if (doc == null) return ResponseEntity.notFound().build();
+    // ✅ Ranked search: BM25 top-k with highlighted snippets
+    @GetMapping("/search/ranked")
+    public ResponseEntity<?> searchRanked(@RequestParam String keyword,
+                                          @RequestParam(value = "k", defaultValue = "20") int k) {
+        if (keyword == null || keyword.trim().isEmpty()) return ResponseEntity.ok(List.of());
 
-        Path path = Paths.get(doc.getTextFilePath());
-        if (!Files.exists(path)) return ResponseEntity.notFound().build();
+        Query query;
+        try {
+            query = searchIndexService.parse(keyword);
+        } catch (QuerySyntaxException e) {
+            return ResponseEntity.badRequest().body("Invalid query: " + e.getMessage());
+        }
 
-        List<String> lines = Files.readAllLines(path);
-        List<String> results = lines.stream()
-                .filter(line -> line.toLowerCase().contains(keyword.toLowerCase()))
-                .collect(Collectors.toList());
+        int topK = Math.max(1, Math.min(k, maxRankedResults));
+        return ResponseEntity.ok(searchResultCache.get("ranked", keyword, topK, () -> rankDocuments(query, topK)));
+    }
+
+    private List<SearchHitDTO> rankDocuments(Query query, int topK) {
+        List<InvertedIndex.ScoredDocument> ranked = searchIndexService.rank(query, topK, snippetsPerHit * 4);
+        if (ranked.isEmpty()) return List.of();
+
+        Map<Long, Document> docs = new HashMap<>();
+        for (Document doc : documentRepository.findWithOwnerByIdIn(
+                ranked.stream().map(InvertedIndex.ScoredDocument::getDocId).toList())) {
+            docs.put(doc.getId(), doc);
+        }
+
+        Set<String> terms = new HashSet<>();
+        query.collectTerms(terms);
+        List<SearchHitDTO> hits = new ArrayList<>();
+        for (InvertedIndex.ScoredDocument scored : ranked) {
+            Document doc = docs.get(scored.getDocId());
+            if (doc == null) continue;
+
+            hits.add(new SearchHitDTO(new DocumentDTO(doc), scored.getScore(), snippets(doc, scored.getOffsets(), terms)));
+        }
+        return hits;
+    }
+
+    private List<String> snippets(Document doc, int[] offsets, Set<String> terms) {
+        try {
+            return SnippetBuilder.build(offsets, snippetContext, snippetsPerHit, terms,
+                    (start, length) -> textStoreService.readRange(doc.getTextFilePath(), start, length));
+        } catch (IOException e) {
+            return List.of(); // a missing text file only costs the snippets, not the hit
+        }
+    }
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    // ✅ Streamed search: every hit (document + snippets, score 0, id order) is written as soon as it is
+    // confirmed, one JSON object per line, or as Server-Sent Events ("hit" / "end") for Accept: text/event-stream.
+    // The last record is {"count":n,"reason":"complete|limit|deadline"}. A client that disconnects
+    // stops the search at its next hit; limit and search.stream.timeout-ms bound the rest.
+    @GetMapping("/search/stream")
+    public ResponseEntity<StreamingResponseBody> streamSearch(@RequestParam String keyword,
+                                                              @RequestParam(value = "mode", defaultValue = "query") String mode,
+                                                              @RequestParam(value = "limit", defaultValue = "0") int limit,
+                                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (keyword == null || keyword.trim().isEmpty()) return plainBadRequest("Empty query");
+
+        // Everything that can be rejected is checked before the first byte goes out
+        Query query = null;
+        Pattern pattern = null;
+        Set<String> terms = new HashSet<>();
+        try {
+            switch (mode) {
+                case "query", "fuzzy" -> query = searchIndexService.parse(keyword, mode.equals("fuzzy"));
+                case "substring" -> terms.addAll(Tokenizer.terms(keyword));
+                case "regex" -> pattern = SearchIndexService.compileRegex(keyword);
+                default -> {
+                    return plainBadRequest("Unknown search mode: " + mode);
+                }
+            }
+        } catch (QuerySyntaxException e) {
+            return plainBadRequest("Invalid query: " + e.getMessage());
+        } catch (PatternSyntaxException e) {
+            return plainBadRequest("Invalid regex: " + e.getDescription());
+        }
+
+        boolean sse = accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE);
+        int max = limit <= 0 ? maxStreamResults : Math.min(limit, maxStreamResults);
+        long deadline = System.nanoTime() + streamTimeoutMs * 1_000_000;
+        Query parsed = query;
+        Pattern regex = pattern;
+
+        StreamingResponseBody body = out -> {
+            int[] count = {0};
+            boolean[] disconnected = {false};
+            SearchIndexService.HitListener listener = (doc, offsets) -> {
+                // Fuzzy and prefix terms are only known once the query has been evaluated
+                if (parsed != null && count[0] == 0) parsed.collectTerms(terms);
+                try {
+                    writeEvent(out, sse, "hit", new SearchHitDTO(new DocumentDTO(doc), 0, snippets(doc, offsets, terms)));
+                } catch (IOException e) {
+                    disconnected[0] = true;
+                    return false;
+                }
+                return ++count[0] < max;
+            };
+
+            SearchIndexService.StreamEnd end;
+            if (parsed != null) end = searchIndexService.streamQuery(parsed, snippetsPerHit * 4, deadline, listener);
+            else if (regex != null) end = searchIndexService.streamRegex(regex, deadline, listener);
+            else end = searchIndexService.streamSubstring(keyword, deadline, listener);
+
+            if (disconnected[0]) return;
+            String reason = switch (end) {
+                case COMPLETE -> "complete";
+                case STOPPED -> "limit";
+                case DEADLINE -> "deadline";
+            };
+            writeEvent(out, sse, "end", Map.of("count", count[0], "reason", reason));
+        };
+        return ResponseEntity.ok()
+                .contentType(sse ? MediaType.TEXT_EVENT_STREAM : NDJSON)
+                .cacheControl(CacheControl.noStore())
+                .header("X-Accel-Buffering", "no") // keep reverse proxies from holding the stream back
+                .body(body);
+    }
+
+    // The streaming handler only takes StreamingResponseBody bodies, so errors are written as one too
+    private static ResponseEntity<StreamingResponseBody> plainBadRequest(String message) {
+        return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN)
+                .body(out -> out.write(message.getBytes(StandardCharsets.UTF_8)));
+    }
 
+    private void writeEvent(OutputStream out, boolean sse, String event, Object payload) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(payload);
+        if (sse) out.write(("event: " + event + "\ndata: ").getBytes(StandardCharsets.UTF_8));
+        out.write(json);
+        out.write(sse ? "\n\n".getBytes(StandardCharsets.UTF_8) : "\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    // ✅ Search-box suggestions: completions of the last word (most common terms first), then matching filenames
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SuggestionDTO>> suggest(@RequestParam String prefix,
+                                                       @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        if (prefix == null || prefix.isBlank()) return ResponseEntity.ok(List.of());
+
+        SearchIndexService.Suggestions suggestions = searchIndexService.suggest(prefix,
+                Math.max(1, Math.min(limit, maxSuggestions)));
+        List<SuggestionDTO> out = new ArrayList<>();
+        suggestions.terms().forEach(c -> out.add(new SuggestionDTO(c.text(), "term", c.weight())));
+        suggestions.filenames().forEach(c -> out.add(new SuggestionDTO(c.text(), "filename", c.weight())));
+        return ResponseEntity.ok(out);
+    }
+
+    // ✅ Search inside one document — page number, offset and snippet per hit
+    @GetMapping("/{id}/search")
+    public ResponseEntity<List<PageHitDTO>> searchInFile(@PathVariable Long id,
+                                                         @RequestParam String keyword,
+                                                         @RequestParam(value = "limit", required = false) Integer limit)
+            throws IOException {
+        Document doc = documentRepository.findById(id).orElse(null);
+        if (doc == null) return ResponseEntity.notFound().build();
+        if (doc.getStatus() != DocumentStatus.READY) return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        if (!textStoreService.exists(doc.getTextFilePath())) return ResponseEntity.notFound().build();
+
+        int maxHits = (limit == null || limit <= 0) ? maxInDocumentHits : Math.min(limit, maxInDocumentHits);
+        int[] pageOffsets = textStoreService.pageOffsets(doc.getTextFilePath());
+        List<PageHitDTO> results = new ArrayList<>();
+
+        long start = metrics.start();
+        try (Reader reader = textStoreService.openReader(doc.getTextFilePath())) {
+            new TextScanner(snippetContext).scan(reader, keyword, (offset, snippet) -> {
+                results.add(new PageHitDTO(ExtractedText.pageOf(pageOffsets, offset), offset, snippet));
+                return results.size() < maxHits;
+            });
+        }
+        metrics.stop("pdfapp.search", start, "type", "in-document");
+        metrics.record("pdfapp.search.hits", results.size(), "type", "in-document");
         return ResponseEntity.ok(results);
     }
 }
@@ -0,0 +1,20 @@
+package com.pdfapp.pdfapp.dto;
+
+public class BatchFileResultDTO {
+    private String filename;
+    private String outcome; // CREATED, DUPLICATE (text reused), FAILED or SKIPPED
+    private DocumentDTO document; // null unless a row was created
+    private String error;
+
+    public BatchFileResultDTO(String filename, String outcome, DocumentDTO document, String error) {
+        this.filename = filename;
+        this.outcome = outcome;
+        this.document = document;
+        this.error = error;
+    }
+
+    public String getFilename() { return filename; }
+    public String getOutcome() { return outcome; }
+    public DocumentDTO getDocument() { return document; }
+    public String getError() { return error; }
+}
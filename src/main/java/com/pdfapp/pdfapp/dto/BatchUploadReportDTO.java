@@ -0,0 +1,25 @@
+package com.pdfapp.pdfapp.dto;
+
+import java.util.List;
+
+public class BatchUploadReportDTO {
+    private int total;
+    private int ready;
+    private int pending;
+    private int failed; // rejected files plus documents whose extraction failed
+    private List<BatchFileResultDTO> files;
+
+    public BatchUploadReportDTO(int total, int ready, int pending, int failed, List<BatchFileResultDTO> files) {
+        this.total = total;
+        this.ready = ready;
+        this.pending = pending;
+        this.failed = failed;
+        this.files = files;
+    }
+
+    public int getTotal() { return total; }
+    public int getReady() { return ready; }
+    public int getPending() { return pending; }
+    public int getFailed() { return failed; }
+    public List<BatchFileResultDTO> getFiles() { return files; }
+}
@@ -1,6 +1,9 @@
 package com.pdfapp.pdfapp.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.pdfapp.pdfapp.model.Document;
+import com.pdfapp.pdfapp.model.DocumentStatus;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 public class DocumentDTO {
@@ -10,15 +13,33 @@ public class DocumentDTO {
     private String ownerName;
     private Long ownerId;
     private String uploadedAt;
+    private String status;
+    private String statusMessage;
+
+    @JsonIgnore
+    private LocalDateTime uploadedAtValue; // unformatted, used for listing cursors
+
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     public DocumentDTO(Document doc) {
-        this.id = doc.getId();
-        this.filename = doc.getFilename();
-        this.mimeType = doc.getMimeType();
-        this.ownerId = (doc.getOwner() != null) ? doc.getOwner().getId() : null;
-        this.ownerName = (doc.getOwner() != null) ? doc.getOwner().getUsername() : "N/A";
-        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        this.uploadedAt = doc.getUploadedAt() != null ? doc.getUploadedAt().format(fmt) : "N/A";
+        this(doc.getId(), doc.getFilename(), doc.getMimeType(),
+                doc.getOwner() != null ? doc.getOwner().getId() : null,
+                doc.getOwner() != null ? doc.getOwner().getUsername() : null,
+                doc.getUploadedAt(), doc.getStatus(), doc.getStatusMessage());
+    }
+
+    // Constructor expression target for the projection queries in DocumentRepository
+    public DocumentDTO(Long id, String filename, String mimeType, Long ownerId, String ownerName,
+                       LocalDateTime uploadedAt, DocumentStatus status, String statusMessage) {
+        this.id = id;
+        this.filename = filename;
+        this.mimeType = mimeType;
+        this.ownerId = ownerId;
+        this.ownerName = ownerName != null ? ownerName : "N/A";
+        this.uploadedAtValue = uploadedAt;
+        this.uploadedAt = uploadedAt != null ? uploadedAt.format(FORMAT) : "N/A";
+        this.status = (status != null ? status : DocumentStatus.READY).name();
+        this.statusMessage = statusMessage;
     }
 
     public Long getId() { return id; }
@@ -27,4 +48,7 @@ public class DocumentDTO {
     public String getOwnerName() { return ownerName; }
     public Long getOwnerId() { return ownerId; }
     public String getUploadedAt() { return uploadedAt; }
+    public String getStatus() { return status; }
+    public String getStatusMessage() { return statusMessage; }
+    public LocalDateTime getUploadedAtValue() { return uploadedAtValue; }
 }
@@ -0,0 +1,16 @@
+package com.pdfapp.pdfapp.dto;
+
+import java.util.List;
+
+public class DocumentPageDTO {
+    private List<DocumentDTO> items;
+    private String nextCursor; // null on the last page
+
+    public DocumentPageDTO(List<DocumentDTO> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<DocumentDTO> getItems() { return items; }
+    public String getNextCursor() { return nextCursor; }
+}
@@ -0,0 +1,17 @@
+package com.pdfapp.pdfapp.dto;
+
+import java.util.List;
+import java.util.Map;
+
+public class FacetedSearchDTO {
+    private List<DocumentDTO> documents;
+    private Map<String, Map<String, Integer>> facets; // facet -> value -> hits, most common first
+
+    public FacetedSearchDTO(List<DocumentDTO> documents, Map<String, Map<String, Integer>> facets) {
+        this.documents = documents;
+        this.facets = facets;
+    }
+
+    public List<DocumentDTO> getDocuments() { return documents; }
+    public Map<String, Map<String, Integer>> getFacets() { return facets; }
+}
@@ -0,0 +1,17 @@
+package com.pdfapp.pdfapp.dto;
+
+public class PageHitDTO {
+    private int page;
+    private long offset;
+    private String snippet;
+
+    public PageHitDTO(int page, long offset, String snippet) {
+        this.page = page;
+        this.offset = offset;
+        this.snippet = snippet;
+    }
+
+    public int getPage() { return page; }
+    public long getOffset() { return offset; }
+    public String getSnippet() { return snippet; }
+}
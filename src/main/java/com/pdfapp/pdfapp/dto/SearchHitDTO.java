@@ -0,0 +1,19 @@
+package com.pdfapp.pdfapp.dto;
+
+import java.util.List;
+
+public class SearchHitDTO {
+    private DocumentDTO document;
+    private double score;
+    private List<String> snippets; // HTML-escaped, matches wrapped in <mark>
+
+    public SearchHitDTO(DocumentDTO document, double score, List<String> snippets) {
+        this.document = document;
+        this.score = score;
+        this.snippets = snippets;
+    }
+
+    public DocumentDTO getDocument() { return document; }
+    public double getScore() { return score; }
+    public List<String> getSnippets() { return snippets; }
+}
@@ -0,0 +1,17 @@
+package com.pdfapp.pdfapp.dto;
+
+public class SuggestionDTO {
+    private String text;
+    private String type; // "term" (completes the last word of the input) or "filename"
+    private int weight;  // documents containing the term / carrying the filename
+
+    public SuggestionDTO(String text, String type, int weight) {
+        this.text = text;
+        this.type = type;
+        this.weight = weight;
+    }
+
+    public String getText() { return text; }
+    public String getType() { return type; }
+    public int getWeight() { return weight; }
+}
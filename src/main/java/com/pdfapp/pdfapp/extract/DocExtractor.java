@@ -0,0 +1,73 @@
+package com.pdfapp.pdfapp.extract;
+
+import org.apache.poi.hwpf.HWPFDocument;
+import org.apache.poi.hwpf.OldWordFileFormatException;
+import org.apache.poi.hwpf.extractor.WordExtractor;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Legacy binary Word (.doc, Word 97 and later) through HWPF: body text with headers
+ * and footers, then footnotes, endnotes and comments. The OLE2 container is opened
+ * read-only from the file, but HWPF still reads the text streams whole, so unlike
+ * the OOXML extractors this one is not constant-memory; each part goes to the sink
+ * as HWPF returns it rather than being joined first. Single page, like DOCX.
+ */
+public class DocExtractor implements Extractor {
+
+    private static final byte[] OLE2_MAGIC = {
+            (byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1};
+
+    @Override
+    public String name() {
+        return "doc";
+    }
+
+    @Override
+    public String mimeType() {
+        return "application/msword";
+    }
+
+    // OLE2 is also the container of .xls, .ppt and .msg: only a WordDocument stream makes it Word
+    @Override
+    public boolean detect(Path file, byte[] head) throws IOException {
+        if (!Extractor.startsWith(head, OLE2_MAGIC)) return false;
+        try (POIFSFileSystem fs = new POIFSFileSystem(file.toFile(), true)) {
+            return fs.getRoot().hasEntry("WordDocument");
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void extract(Path file, TextSink sink) throws IOException {
+        try (POIFSFileSystem fs = new POIFSFileSystem(file.toFile(), true);
+             HWPFDocument doc = new HWPFDocument(fs.getRoot())) {
+            WordExtractor words = new WordExtractor(doc);
+            sink.startPage();
+            String body = words.getText();
+            sink.append(body);
+            boolean newline = body.isEmpty() || body.endsWith("\n");
+            newline = appendAll(sink, words.getFootnoteText(), newline);
+            newline = appendAll(sink, words.getEndnoteText(), newline);
+            appendAll(sink, words.getCommentsText(), newline);
+        } catch (OldWordFileFormatException e) {
+            throw new IOException("Word 6/95 documents are not supported", e);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Not a valid Word document: " + e.getMessage(), e); // POIFS rejects non-OLE2 files
+        }
+    }
+
+    // Each part on a line of its own; returns whether the output now ends a line
+    private static boolean appendAll(TextSink sink, String[] parts, boolean newline) throws IOException {
+        for (String part : parts) {
+            if (part == null || part.isBlank()) continue;
+            if (!newline) sink.append("\n");
+            sink.append(part);
+            newline = part.endsWith("\n");
+        }
+        return newline;
+    }
+}
@@ -0,0 +1,87 @@
+package com.pdfapp.pdfapp.extract;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.PackagePart;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Word (DOCX/DOCM): the body in document order, tables included, followed by
+ * footnotes, endnotes, comments, headers and footers. Text boxes are read once
+ * (the mc:Fallback copy is skipped), as are deleted revisions and field codes.
+ * A DOCX has no fixed pagination, so the result is a single page.
+ */
+public class DocxExtractor extends OoxmlExtractor {
+
+    private static final String[] RELATED_PARTS = {"footnotes", "endnotes", "comments", "header", "footer"};
+
+    // Subtrees whose content is not document text: duplicate fallbacks, deletions, field codes, tab stops
+    private static final Set<String> SKIPPED = Set.of("Fallback", "delText", "delInstrText", "instrText", "tabs");
+
+    private static final Pattern MAIN_CONTENT_TYPE = Pattern.compile("(wordprocessingml|ms-word)\\.[\\w.]*main\\+xml", Pattern.CASE_INSENSITIVE);
+
+    @Override
+    public String name() {
+        return "docx";
+    }
+
+    @Override
+    public String mimeType() {
+        return "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+    }
+
+    @Override
+    protected Pattern mainContentType() {
+        return MAIN_CONTENT_TYPE;
+    }
+
+    @Override
+    protected String formatName() {
+        return "Word";
+    }
+
+    @Override
+    protected void read(PackagePart main, TextOutput out) throws IOException, OpenXML4JException, XMLStreamException {
+        out.startPage();
+        parse(main, xml -> readText(xml, out));
+        for (String type : RELATED_PARTS) {
+            for (PackagePart part : related(main, type)) parse(part, xml -> readText(xml, out));
+        }
+    }
+
+    private static void readText(XMLStreamReader xml, TextOutput out) throws XMLStreamException {
+        int skipDepth = 0;
+        boolean inText = false;
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = xml.getLocalName();
+                if (skipDepth > 0 || SKIPPED.contains(name)) {
+                    skipDepth++;
+                    continue;
+                }
+                switch (name) {
+                    case "t" -> inText = true;
+                    case "tab" -> out.append('\t');
+                    case "br", "cr" -> out.append('\n');
+                    default -> { }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (skipDepth > 0) {
+                    skipDepth--;
+                    continue;
+                }
+                String name = xml.getLocalName();
+                if (name.equals("t")) inText = false;
+                else if (name.equals("p")) out.newline();
+            } else if (inText && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)) {
+                out.append(xml.getText());
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.pdfapp.pdfapp.extract;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+// Extracted text plus the character offset at which each page starts
+public class ExtractedText {
+    private final String text;
+    private final int[] pageOffsets;
+
+    public ExtractedText(String text, int[] pageOffsets) {
+        this.text = text;
+        this.pageOffsets = pageOffsets.length == 0 ? new int[]{0} : pageOffsets;
+    }
+
+    // Formats without pages (DOCX, plain text) are treated as a single page
+    public static ExtractedText singlePage(String text) {
+        return new ExtractedText(text, new int[]{0});
+    }
+
+    // Replays the pages into a sink, as if they were being extracted
+    public void writeTo(TextSink sink) throws IOException {
+        for (int page = 0; page < pageOffsets.length; page++) {
+            int end = page + 1 < pageOffsets.length ? pageOffsets[page + 1] : text.length();
+            sink.startPage();
+            if (end > pageOffsets[page]) sink.append(text.substring(pageOffsets[page], end));
+        }
+    }
+
+    public String getText() { return text; }
+    public int[] getPageOffsets() { return pageOffsets; }
+    public int getPageCount() { return pageOffsets.length; }
+
+    // 1-based page number containing the given character offset
+    public static int pageOf(int[] pageOffsets, long offset) {
+        int idx = Arrays.binarySearch(pageOffsets, (int) Math.min(offset, Integer.MAX_VALUE));
+        return idx >= 0 ? lastWithSameOffset(pageOffsets, idx) + 1 : -idx - 1;
+    }
+
+    // Empty pages share an offset with the next page; report the last of them
+    private static int lastWithSameOffset(int[] pageOffsets, int idx) {
+        while (idx + 1 < pageOffsets.length && pageOffsets[idx + 1] == pageOffsets[idx]) idx++;
+        return idx;
+    }
+}
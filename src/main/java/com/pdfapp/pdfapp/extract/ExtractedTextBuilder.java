@@ -0,0 +1,25 @@
+package com.pdfapp.pdfapp.extract;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// TextSink that collects everything into an ExtractedText
+public class ExtractedTextBuilder implements TextSink {
+
+    private final StringBuilder text = new StringBuilder();
+    private final List<Integer> pageOffsets = new ArrayList<>();
+
+    @Override
+    public void startPage() {
+        pageOffsets.add(text.length());
+    }
+
+    @Override
+    public void append(CharSequence chars) {
+        text.append(chars);
+    }
+
+    public ExtractedText build() {
+        return new ExtractedText(text.toString(), pageOffsets.stream().mapToInt(Integer::intValue).toArray());
+    }
+}
@@ -0,0 +1,11 @@
+package com.pdfapp.pdfapp.extract;
+
+import java.io.IOException;
+
+// A file was refused or abandoned because it went over one of its extractor's ExtractionLimits
+public class ExtractionLimitException extends IOException {
+
+    public ExtractionLimitException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,9 @@
+package com.pdfapp.pdfapp.extract;
+
+import java.time.Duration;
+
+// Per-extractor resource limits; 0 (or a zero duration) means unlimited
+public record ExtractionLimits(long maxBytes, int maxPages, Duration timeout) {
+
+    public static final ExtractionLimits NONE = new ExtractionLimits(0, 0, Duration.ZERO);
+}
@@ -0,0 +1,38 @@
+package com.pdfapp.pdfapp.extract;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * One file format's text extraction. Implementations are registered with the
+ * ExtractorRegistry, which picks one by looking at the file's bytes (detect())
+ * rather than trusting the uploaded content type.
+ */
+public interface Extractor {
+
+    // Short format name ("pdf", "docx", ...): the registry key, metric tag and limits config key
+    String name();
+
+    // Canonical content type of the format, recorded on documents whose upload was mislabelled
+    String mimeType();
+
+    // Whether the file is in this format; head holds its first bytes (all of them for short files)
+    boolean detect(Path file, byte[] head) throws IOException;
+
+    // Streams the file's text into sink in document order
+    void extract(Path file, TextSink sink) throws IOException;
+
+    default ExtractedText extract(Path file) throws IOException {
+        ExtractedTextBuilder builder = new ExtractedTextBuilder();
+        extract(file, builder);
+        return builder.build();
+    }
+
+    static boolean startsWith(byte[] head, byte[] magic) {
+        if (head.length < magic.length) return false;
+        for (int i = 0; i < magic.length; i++) {
+            if (head[i] != magic[i]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,46 @@
+package com.pdfapp.pdfapp.extract;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The known extractors, asked in registration order whether they recognise a file.
+ * Register specific formats before catch-alls (plain text goes last).
+ */
+public class ExtractorRegistry {
+
+    static final int HEAD_BYTES = 1024;
+
+    private final Map<String, Extractor> extractors = new LinkedHashMap<>();
+
+    public ExtractorRegistry register(Extractor extractor) {
+        extractors.put(extractor.name(), extractor);
+        return this;
+    }
+
+    public Extractor get(String name) {
+        return extractors.get(name);
+    }
+
+    public Collection<Extractor> all() {
+        return Collections.unmodifiableCollection(extractors.values());
+    }
+
+    // The first extractor whose detect() accepts the file, or null when none does
+    public Extractor detect(Path file) throws IOException {
+        byte[] head;
+        try (InputStream in = Files.newInputStream(file)) {
+            head = in.readNBytes(HEAD_BYTES);
+        }
+        for (Extractor extractor : extractors.values()) {
+            if (extractor.detect(file, head)) return extractor;
+        }
+        return null;
+    }
+}
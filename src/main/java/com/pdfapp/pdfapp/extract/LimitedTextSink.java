@@ -0,0 +1,59 @@
+package com.pdfapp.pdfapp.extract;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Passes text through to another sink while enforcing the page and time limits.
+ * The time limit is cooperative: it is checked whenever the extractor emits a page
+ * or a piece of text, which for every format here happens many times per second.
+ * The same checks notice an interrupt (the job watchdog, a shutdown), which the
+ * parsers themselves never look at.
+ */
+public class LimitedTextSink implements TextSink {
+
+    private final TextSink target;
+    private final ExtractionLimits limits;
+    private final String extractor;
+    private final long deadline;
+    private int pages;
+
+    public LimitedTextSink(TextSink target, ExtractionLimits limits, String extractor) {
+        this.target = target;
+        this.limits = limits;
+        this.extractor = extractor;
+        this.deadline = limits.timeout().isZero() ? Long.MAX_VALUE : System.nanoTime() + limits.timeout().toNanos();
+    }
+
+    @Override
+    public void expectPages(int pages) throws IOException {
+        checkPages(pages);
+        target.expectPages(pages);
+    }
+
+    @Override
+    public void startPage() throws IOException {
+        checkPages(++pages);
+        checkTime();
+        target.startPage();
+    }
+
+    @Override
+    public void append(CharSequence text) throws IOException {
+        checkTime();
+        target.append(text);
+    }
+
+    private void checkPages(int count) throws ExtractionLimitException {
+        if (limits.maxPages() > 0 && count > limits.maxPages()) {
+            throw new ExtractionLimitException("More than " + limits.maxPages() + " pages (" + extractor + " limit)");
+        }
+    }
+
+    private void checkTime() throws IOException {
+        if (Thread.interrupted()) throw new InterruptedIOException("Extraction interrupted");
+        if (System.nanoTime() > deadline) {
+            throw new ExtractionLimitException("Took longer than " + limits.timeout().toSeconds() + "s (" + extractor + " limit)");
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.pdfapp.pdfapp.extract;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
+import org.apache.poi.util.XMLHelper;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Base for the Office Open XML formats (DOCX, PPTX, XLSX). The package is opened
+ * read-only from the file, so zip entries are read on demand, and each XML part is
+ * pulled through StAX instead of being built into a DOM: memory stays flat however
+ * large the document is, and the text goes straight to the sink.
+ * All three formats are zips; they are told apart by the content type of the main
+ * part declared in [Content_Types].xml.
+ */
+public abstract class OoxmlExtractor implements Extractor {
+
+    // XMLHelper's factory has DTDs and external entities disabled
+    private static final XMLInputFactory XML = XMLHelper.newXMLInputFactory();
+
+    private static final byte[] ZIP_MAGIC = {'P', 'K', 3, 4};
+    private static final int MAX_CONTENT_TYPES_BYTES = 1 << 20;
+
+    // Matches the main part's content type, e.g. "...wordprocessingml.document.main+xml"
+    protected abstract Pattern mainContentType();
+
+    @Override
+    public boolean detect(Path file, byte[] head) throws IOException {
+        if (!Extractor.startsWith(head, ZIP_MAGIC)) return false;
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            ZipEntry entry = zip.getEntry("[Content_Types].xml");
+            if (entry == null) return false;
+            try (InputStream in = zip.getInputStream(entry)) {
+                String types = new String(in.readNBytes(MAX_CONTENT_TYPES_BYTES), StandardCharsets.UTF_8);
+                return mainContentType().matcher(types).find();
+            }
+        } catch (ZipException e) {
+            return false; // starts like a zip but isn't one
+        }
+    }
+
+    @Override
+    public void extract(Path file, TextSink sink) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            read(mainPart(pkg), new TextOutput(sink));
+        } catch (SinkException e) {
+            throw (IOException) e.getNestedException();
+        } catch (OpenXML4JException | XMLStreamException | IllegalArgumentException e) {
+            // IllegalArgumentException: POI's NotOfficeXmlFileException for files that are not zips at all
+            throw new IOException("Not a valid " + formatName() + " file: " + e.getMessage(), e);
+        }
+    }
+
+    protected abstract String formatName();
+
+    protected abstract void read(PackagePart main, TextOutput out)
+            throws IOException, OpenXML4JException, XMLStreamException;
+
+    private PackagePart mainPart(OPCPackage pkg) throws InvalidFormatException {
+        List<PackageRelationship> rels = new ArrayList<>();
+        pkg.getRelationshipsByType(PackageRelationshipTypes.CORE_DOCUMENT).forEach(rels::add);
+        pkg.getRelationshipsByType(PackageRelationshipTypes.STRICT_CORE_DOCUMENT).forEach(rels::add);
+        if (rels.isEmpty()) throw new InvalidFormatException("no main document part");
+        return pkg.getPart(rels.get(0));
+    }
+
+    // Parts related to part by type, e.g. "header"; matched on the last path segment so Strict OOXML works too
+    protected static List<PackagePart> related(PackagePart part, String type) throws InvalidFormatException {
+        List<PackagePart> parts = new ArrayList<>();
+        for (PackageRelationship rel : part.getRelationships()) {
+            if (rel.getRelationshipType().endsWith("/" + type)) {
+                PackagePart target = part.getRelatedPart(rel);
+                if (target != null) parts.add(target);
+            }
+        }
+        return parts;
+    }
+
+    // The part a relationship id (r:id="rId3") points to, or null
+    protected static PackagePart target(PackagePart part, String relationshipId) throws InvalidFormatException {
+        PackageRelationship rel = part.getRelationship(relationshipId);
+        return rel != null ? part.getRelatedPart(rel) : null;
+    }
+
+    // Hands a streaming reader over the part's XML to reader; closed afterwards
+    protected static void parse(PackagePart part, PartReader reader) throws IOException, XMLStreamException {
+        try (InputStream in = part.getInputStream()) {
+            XMLStreamReader xml = XML.createXMLStreamReader(in);
+            try {
+                reader.read(xml);
+            } finally {
+                xml.close();
+            }
+        }
+    }
+
+    // The r:id attribute of the current element (sldId, sheet), whatever its prefix
+    protected static String relationshipId(XMLStreamReader xml) {
+        for (int i = 0; i < xml.getAttributeCount(); i++) {
+            String ns = xml.getAttributeNamespace(i);
+            if ("id".equals(xml.getAttributeLocalName(i)) && ns != null && ns.endsWith("/relationships")) {
+                return xml.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    protected interface PartReader {
+        void read(XMLStreamReader xml) throws XMLStreamException;
+    }
+
+    /**
+     * The sink plus the last character written, so newline() can avoid blank lines.
+     * StAX callbacks cannot throw IOException, so sink failures (e.g. a limit) are
+     * carried out as XMLStreamException and unwrapped again in extract().
+     */
+    protected static class TextOutput {
+        private final TextSink sink;
+        private char last = '\n';
+
+        TextOutput(TextSink sink) {
+            this.sink = sink;
+        }
+
+        public void append(String text) throws XMLStreamException {
+            if (text.isEmpty()) return;
+            write(text);
+            last = text.charAt(text.length() - 1);
+        }
+
+        public void append(char c) throws XMLStreamException {
+            append(String.valueOf(c));
+        }
+
+        // Ends the current line unless it is already empty
+        public void newline() throws XMLStreamException {
+            if (last != '\n') append('\n');
+        }
+
+        public void startPage() throws XMLStreamException {
+            newline();
+            try {
+                sink.startPage();
+            } catch (IOException e) {
+                throw new SinkException(e);
+            }
+        }
+
+        private void write(String text) throws XMLStreamException {
+            try {
+                sink.append(text);
+            } catch (IOException e) {
+                throw new SinkException(e);
+            }
+        }
+    }
+
+    private static class SinkException extends XMLStreamException {
+        SinkException(IOException cause) {
+            super(cause);
+        }
+    }
+}
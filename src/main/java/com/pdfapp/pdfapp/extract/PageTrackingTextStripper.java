@@ -0,0 +1,69 @@
+package com.pdfapp.pdfapp.extract;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.IOException;
+import java.io.Writer;
+
+// PDFTextStripper that writes into a TextSink, marking where each page begins
+public class PageTrackingTextStripper extends PDFTextStripper {
+
+    private TextSink sink;
+
+    public PageTrackingTextStripper() throws IOException {
+        super();
+    }
+
+    public ExtractedText extract(PDDocument document) throws IOException {
+        return extract(document, 1, Integer.MAX_VALUE);
+    }
+
+    // Only pages first..last (1-based, inclusive); offsets are relative to the returned text
+    public ExtractedText extract(PDDocument document, int first, int last) throws IOException {
+        ExtractedTextBuilder builder = new ExtractedTextBuilder();
+        extract(document, first, last, builder);
+        return builder.build();
+    }
+
+    public void extract(PDDocument document, int first, int last, TextSink sink) throws IOException {
+        setStartPage(first);
+        setEndPage(last);
+        this.sink = sink;
+        writeText(document, new SinkWriter(sink));
+    }
+
+    @Override
+    protected void startPage(PDPage page) throws IOException {
+        sink.startPage();
+        super.startPage(page);
+    }
+
+    // The stripper writes its output unbuffered, so page starts line up with the text around them
+    private static class SinkWriter extends Writer {
+        private final TextSink sink;
+
+        SinkWriter(TextSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void write(char[] chars, int off, int len) throws IOException {
+            sink.append(new String(chars, off, len));
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            sink.append(str.substring(off, off + len));
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.pdfapp.pdfapp.extract;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * PDF through PDFBox, loaded from the file with at most maxMainMemoryBytes of it in
+ * heap. Documents with at least parallelPageThreshold pages are split into page
+ * ranges: the calling thread streams the first range into the sink with the document
+ * it already has open, while each other range is stripped on rangeWorkers with its
+ * own PDDocument and replayed into the sink in page order once the ones before it are done.
+ */
+public class PdfExtractor implements Extractor {
+
+    private static final byte[] MAGIC = "%PDF-".getBytes();
+
+    private final long maxMainMemoryBytes;
+    private final Path scratchDir; // null = the JVM temp dir
+    private final int parallelPageThreshold;
+    private final int ranges;
+    private final ExecutorService rangeWorkers; // null when parallel extraction is off
+
+    public PdfExtractor(long maxMainMemoryBytes, Path scratchDir, int parallelPageThreshold,
+                        int ranges, ExecutorService rangeWorkers) {
+        this.maxMainMemoryBytes = maxMainMemoryBytes;
+        this.scratchDir = scratchDir;
+        this.parallelPageThreshold = parallelPageThreshold;
+        this.ranges = ranges;
+        this.rangeWorkers = rangeWorkers;
+    }
+
+    @Override
+    public String name() {
+        return "pdf";
+    }
+
+    @Override
+    public String mimeType() {
+        return "application/pdf";
+    }
+
+    // Readers accept the header anywhere in the first KB, and some generators do put junk before it
+    @Override
+    public boolean detect(Path file, byte[] head) {
+        outer:
+        for (int i = 0; i + MAGIC.length <= head.length; i++) {
+            for (int j = 0; j < MAGIC.length; j++) {
+                if (head[i + j] != MAGIC[j]) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void extract(Path file, TextSink sink) throws IOException {
+        try (PDDocument pdfDoc = PDDocument.load(file.toFile(), memoryUsage())) {
+            int pages = pdfDoc.getNumberOfPages();
+            sink.expectPages(pages);
+            if (rangeWorkers == null || ranges < 2 || pages < Math.max(parallelPageThreshold, 2)) {
+                new PageTrackingTextStripper().extract(pdfDoc, 1, Integer.MAX_VALUE, sink);
+            } else {
+                extractRanges(file, pdfDoc, pages, sink);
+            }
+        }
+    }
+
+    private void extractRanges(Path file, PDDocument pdfDoc, int pages, TextSink sink) throws IOException {
+        int count = Math.min(ranges, pages);
+
+        List<Future<ExtractedText>> others = new ArrayList<>();
+        for (int r = 1; r < count; r++) {
+            int first = r * pages / count + 1;
+            int last = (r + 1) * pages / count;
+            others.add(rangeWorkers.submit(() -> {
+                try (PDDocument own = PDDocument.load(file.toFile(), memoryUsage())) {
+                    return new PageTrackingTextStripper().extract(own, first, last);
+                }
+            }));
+        }
+
+        try {
+            new PageTrackingTextStripper().extract(pdfDoc, 1, pages / count, sink);
+            for (Future<ExtractedText> part : others) part.get().writeTo(sink);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // the job watchdog; the job reports the timeout
+            throw new InterruptedIOException("PDF extraction interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException("PDF extraction failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            for (Future<ExtractedText> part : others) part.cancel(true);
+        }
+    }
+
+    private MemoryUsageSetting memoryUsage() throws IOException {
+        MemoryUsageSetting setting = MemoryUsageSetting.setupMixed(maxMainMemoryBytes);
+        if (scratchDir != null) {
+            File dir = Files.createDirectories(scratchDir).toFile();
+            setting.setTempDir(dir);
+        }
+        return setting;
+    }
+}
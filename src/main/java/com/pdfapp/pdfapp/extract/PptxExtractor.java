@@ -0,0 +1,88 @@
+package com.pdfapp.pdfapp.extract;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.PackagePart;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+// PowerPoint (PPTX/PPTM): one page per slide in presentation order, the slide's text followed by its speaker notes
+public class PptxExtractor extends OoxmlExtractor {
+
+    private static final Pattern MAIN_CONTENT_TYPE = Pattern.compile("(presentationml|ms-powerpoint)\\.[\\w.]*main\\+xml", Pattern.CASE_INSENSITIVE);
+
+    @Override
+    public String name() {
+        return "pptx";
+    }
+
+    @Override
+    public String mimeType() {
+        return "application/vnd.openxmlformats-officedocument.presentationml.presentation";
+    }
+
+    @Override
+    protected Pattern mainContentType() {
+        return MAIN_CONTENT_TYPE;
+    }
+
+    @Override
+    protected String formatName() {
+        return "PowerPoint";
+    }
+
+    @Override
+    protected void read(PackagePart main, TextOutput out) throws IOException, OpenXML4JException, XMLStreamException {
+        List<String> slideIds = new ArrayList<>();
+        parse(main, xml -> {
+            while (xml.hasNext()) {
+                if (xml.next() == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("sldId")) {
+                    String id = relationshipId(xml);
+                    if (id != null) slideIds.add(id);
+                }
+            }
+        });
+
+        for (String id : slideIds) {
+            PackagePart slide = target(main, id);
+            if (slide == null) continue;
+            out.startPage();
+            parse(slide, xml -> readText(xml, out));
+            for (PackagePart notes : related(slide, "notesSlide")) parse(notes, xml -> readText(xml, out));
+        }
+    }
+
+    // DrawingML text: a:t runs, a line per a:p paragraph and a:br break; Fallback copies skipped
+    private static void readText(XMLStreamReader xml, TextOutput out) throws XMLStreamException {
+        int skipDepth = 0;
+        boolean inText = false;
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = xml.getLocalName();
+                if (skipDepth > 0 || name.equals("Fallback")) {
+                    skipDepth++;
+                } else if (name.equals("t")) {
+                    inText = true;
+                } else if (name.equals("br")) {
+                    out.append('\n');
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (skipDepth > 0) {
+                    skipDepth--;
+                    continue;
+                }
+                String name = xml.getLocalName();
+                if (name.equals("t")) inText = false;
+                else if (name.equals("p")) out.newline();
+            } else if (inText && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)) {
+                out.append(xml.getText());
+            }
+        }
+    }
+}
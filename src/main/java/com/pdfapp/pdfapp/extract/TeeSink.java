@@ -0,0 +1,33 @@
+package com.pdfapp.pdfapp.extract;
+
+import java.io.IOException;
+
+// TextSink that hands everything to two sinks, e.g. the text store and the indexer
+public class TeeSink implements TextSink {
+
+    private final TextSink first;
+    private final TextSink second;
+
+    public TeeSink(TextSink first, TextSink second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    @Override
+    public void startPage() throws IOException {
+        first.startPage();
+        second.startPage();
+    }
+
+    @Override
+    public void append(CharSequence text) throws IOException {
+        first.append(text);
+        second.append(text);
+    }
+
+    @Override
+    public void expectPages(int pages) throws IOException {
+        first.expectPages(pages);
+        second.expectPages(pages);
+    }
+}
@@ -0,0 +1,60 @@
+package com.pdfapp.pdfapp.extract;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Plain UTF-8 (or ASCII) text, streamed through in chunks as a single page.
+ * Detection is the weakest of all formats, so register this extractor last.
+ */
+public class TextFileExtractor implements Extractor {
+
+    private static final int CHUNK_CHARS = 8192;
+
+    @Override
+    public String name() {
+        return "txt";
+    }
+
+    @Override
+    public String mimeType() {
+        return "text/plain";
+    }
+
+    // No NUL bytes and valid UTF-8, allowing for a multi-byte sequence cut off at the end of head
+    @Override
+    public boolean detect(Path file, byte[] head) {
+        if (head.length == 0) return false;
+        for (byte b : head) {
+            if (b == 0) return false;
+        }
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer in = ByteBuffer.wrap(head);
+        boolean wholeFile = head.length < ExtractorRegistry.HEAD_BYTES;
+        if (decoder.decode(in, CharBuffer.allocate(head.length), wholeFile).isError()) return false;
+        return wholeFile ? !decoder.flush(CharBuffer.allocate(1)).isError() : head.length - in.position() < 4;
+    }
+
+    @Override
+    public void extract(Path file, TextSink sink) throws IOException {
+        sink.startPage();
+        // Lenient from here on: a stray invalid byte past the sniffed head becomes U+FFFD
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8)) {
+            char[] chunk = new char[CHUNK_CHARS];
+            int read;
+            while ((read = reader.read(chunk)) != -1) {
+                sink.append(new String(chunk, 0, read));
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.pdfapp.pdfapp.extract;
+
+import java.io.IOException;
+
+/**
+ * Receives text from an Extractor as it is produced, in document order. Extractors
+ * call startPage() before each page's text (formats without pages call it once).
+ */
+public interface TextSink {
+
+    void startPage() throws IOException;
+
+    void append(CharSequence text) throws IOException;
+
+    // Page count announced up front by formats that know it, so limits can fail before any work
+    default void expectPages(int pages) throws IOException {
+    }
+}
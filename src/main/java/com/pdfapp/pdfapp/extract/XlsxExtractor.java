@@ -0,0 +1,142 @@
+package com.pdfapp.pdfapp.extract;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.PackagePart;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Excel (XLSX/XLSM): one page per worksheet in workbook order, a line per row with
+ * cells separated by tabs. Cells show their stored value (formulas are not
+ * evaluated). Only the shared string table is held in memory; sheets are streamed.
+ */
+public class XlsxExtractor extends OoxmlExtractor {
+
+    private static final Pattern MAIN_CONTENT_TYPE = Pattern.compile("(spreadsheetml|ms-excel)\\.[\\w.]*main\\+xml", Pattern.CASE_INSENSITIVE);
+
+    @Override
+    public String name() {
+        return "xlsx";
+    }
+
+    @Override
+    public String mimeType() {
+        return "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    }
+
+    @Override
+    protected Pattern mainContentType() {
+        return MAIN_CONTENT_TYPE;
+    }
+
+    @Override
+    protected String formatName() {
+        return "Excel";
+    }
+
+    @Override
+    protected void read(PackagePart main, TextOutput out) throws IOException, OpenXML4JException, XMLStreamException {
+        List<String> sharedStrings = new ArrayList<>();
+        for (PackagePart part : related(main, "sharedStrings")) parse(part, xml -> readSharedStrings(xml, sharedStrings));
+
+        List<String> sheetIds = new ArrayList<>();
+        parse(main, xml -> {
+            while (xml.hasNext()) {
+                if (xml.next() == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("sheet")) {
+                    String id = relationshipId(xml);
+                    if (id != null) sheetIds.add(id);
+                }
+            }
+        });
+
+        for (String id : sheetIds) {
+            PackagePart sheet = target(main, id);
+            if (sheet == null || !sheet.getPartName().getName().contains("/worksheets/")) continue; // chart sheets
+            out.startPage();
+            parse(sheet, xml -> readSheet(xml, sharedStrings, out));
+        }
+    }
+
+    // Each si entry, its t runs joined; phonetic guides (rPh) skipped
+    private static void readSharedStrings(XMLStreamReader xml, List<String> strings) throws XMLStreamException {
+        StringBuilder current = new StringBuilder();
+        int phonetic = 0;
+        boolean inText = false;
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = xml.getLocalName();
+                if (name.equals("rPh")) phonetic++;
+                else if (name.equals("si")) current.setLength(0);
+                else if (name.equals("t") && phonetic == 0) inText = true;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                String name = xml.getLocalName();
+                if (name.equals("rPh")) phonetic--;
+                else if (name.equals("t")) inText = false;
+                else if (name.equals("si")) strings.add(current.toString());
+            } else if (inText && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)) {
+                current.append(xml.getText());
+            }
+        }
+    }
+
+    private static void readSheet(XMLStreamReader xml, List<String> sharedStrings, TextOutput out)
+            throws XMLStreamException {
+        StringBuilder value = new StringBuilder();
+        String cellType = null;
+        boolean inValue = false;
+        boolean rowStarted = false;
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                switch (xml.getLocalName()) {
+                    case "c" -> {
+                        cellType = xml.getAttributeValue(null, "t");
+                        value.setLength(0);
+                    }
+                    case "v", "t" -> inValue = true; // t: inline string
+                    default -> { }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                switch (xml.getLocalName()) {
+                    case "v", "t" -> inValue = false;
+                    case "c" -> {
+                        String text = cellText(cellType, value.toString(), sharedStrings);
+                        if (!text.isEmpty()) {
+                            if (rowStarted) out.append('\t');
+                            out.append(text);
+                            rowStarted = true;
+                        }
+                    }
+                    case "row" -> {
+                        if (rowStarted) out.newline();
+                        rowStarted = false;
+                    }
+                    default -> { }
+                }
+            } else if (inValue && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)) {
+                value.append(xml.getText());
+            }
+        }
+    }
+
+    private static String cellText(String type, String value, List<String> sharedStrings) {
+        if (value.isEmpty()) return "";
+        if ("s".equals(type)) {
+            try {
+                int index = Integer.parseInt(value.trim());
+                return index >= 0 && index < sharedStrings.size() ? sharedStrings.get(index) : "";
+            } catch (NumberFormatException e) {
+                return "";
+            }
+        }
+        if ("b".equals(type)) return "1".equals(value) ? "TRUE" : "FALSE";
+        return value;
+    }
+}
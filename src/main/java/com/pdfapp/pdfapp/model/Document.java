@@ -4,11 +4,16 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "documents")
+@Table(name = "documents", indexes = {
+        @Index(name = "IDX_DOCUMENTS_UPLOADED_AT", columnList = "UPLOADED_AT, id"),
+        @Index(name = "IDX_DOCUMENTS_OWNER_KEYSET", columnList = "owner_id, UPLOADED_AT, id")
+})
 public class Document {
 
+    // Sequence ids (not IDENTITY) let Hibernate batch inserts; 50 ids are reserved per round trip
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "documents_seq")
+    @SequenceGenerator(name = "documents_seq", sequenceName = "DOCUMENTS_SEQ", allocationSize = 50)
     private Long id;
 
     @Column(name = "FILENAME")
@@ -26,7 +31,17 @@ public class Document {
     @Column(name = "UPLOADED_AT")
     private LocalDateTime uploadedAt;
 
-    @ManyToOne
+    @Column(name = "CONTENT_HASH", length = 64)
+    private String contentHash;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "STATUS", length = 20)
+    private DocumentStatus status;
+
+    @Column(name = "STATUS_MESSAGE", length = 1000)
+    private String statusMessage;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id")
     private User owner;
 
@@ -55,4 +70,14 @@ public class Document {
 
     public LocalDateTime getUploadedAt() { return uploadedAt; }
     public void setUploadedAt(LocalDateTime uploadedAt) { this.uploadedAt = uploadedAt; }
+
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
+    // Rows created before extraction became asynchronous have no status and are complete
+    public DocumentStatus getStatus() { return status != null ? status : DocumentStatus.READY; }
+    public void setStatus(DocumentStatus status) { this.status = status; }
+
+    public String getStatusMessage() { return statusMessage; }
+    public void setStatusMessage(String statusMessage) { this.statusMessage = statusMessage; }
 }
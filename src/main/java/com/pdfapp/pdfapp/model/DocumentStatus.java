@@ -0,0 +1,9 @@
+package com.pdfapp.pdfapp.model;
+
+// Lifecycle of a document's text extraction
+public enum DocumentStatus {
+    PENDING,
+    PROCESSING,
+    READY,
+    FAILED
+}
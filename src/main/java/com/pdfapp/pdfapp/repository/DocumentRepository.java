@@ -1,10 +1,17 @@
 package com.pdfapp.pdfapp.repository;
 
+import com.pdfapp.pdfapp.dto.DocumentDTO;
 import com.pdfapp.pdfapp.model.Document;
+import com.pdfapp.pdfapp.model.DocumentStatus;
 import com.pdfapp.pdfapp.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -16,5 +23,63 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
     // Fetch all documents by owner ID directly
     List<Document> findByOwnerId(Long ownerId);
 
-    // ❌ Removed custom SQL query — searching is now done from text files in DocumentController
+    // Documents whose extraction has not finished (used to resume jobs after a restart)
+    List<Document> findByStatusIn(Collection<DocumentStatus> statuses);
+
+    // DTO projection with the owner joined in the same query (no per-row owner fetch)
+    String DTO_SELECT = "select new com.pdfapp.pdfapp.dto.DocumentDTO(d.id, d.filename, d.mimeType, "
+            + "o.id, o.username, d.uploadedAt, d.status, d.statusMessage) "
+            + "from Document d left join d.owner o ";
+
+    // Newest first, read off IDX_DOCUMENTS_UPLOADED_AT (UPLOADED_AT, id); bound it with a PageRequest
+    @Query(DTO_SELECT + "order by d.uploadedAt desc, d.id desc")
+    List<DocumentDTO> findListing(Pageable pageable);
+
+    // Keyset continuation of findListing: rows strictly after the (uploadedAt, id) cursor
+    @Query(DTO_SELECT + "where d.uploadedAt < :uploadedAt or (d.uploadedAt = :uploadedAt and d.id < :id) "
+            + "order by d.uploadedAt desc, d.id desc")
+    List<DocumentDTO> findListingAfter(@Param("uploadedAt") LocalDateTime uploadedAt,
+                                       @Param("id") Long id,
+                                       Pageable pageable);
+
+    // One owner's documents, newest first, as a range scan of IDX_DOCUMENTS_OWNER_KEYSET (owner_id, UPLOADED_AT, id)
+    @Query(DTO_SELECT + "where d.owner.id = :ownerId "
+            + "order by d.uploadedAt desc, d.id desc")
+    List<DocumentDTO> findListingByOwner(@Param("ownerId") Long ownerId, Pageable pageable);
+
+    @Query(DTO_SELECT + "where d.owner.id = :ownerId "
+            + "and (d.uploadedAt < :uploadedAt or (d.uploadedAt = :uploadedAt and d.id < :id)) "
+            + "order by d.uploadedAt desc, d.id desc")
+    List<DocumentDTO> findListingByOwnerAfter(@Param("ownerId") Long ownerId,
+                                              @Param("uploadedAt") LocalDateTime uploadedAt,
+                                              @Param("id") Long id,
+                                              Pageable pageable);
+
+    @Query(DTO_SELECT + "where d.id in :ids")
+    List<DocumentDTO> findDtosByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Entities with their owner in one query (for building DTOs without per-row owner fetches)
+    @Query("select d from Document d left join fetch d.owner where d.id in :ids")
+    List<Document> findWithOwnerByIdIn(@Param("ids") Collection<Long> ids);
+
+    // (id, textFilePath) pairs, for scanning the stored texts of search candidates
+    @Query("select d.id, d.textFilePath from Document d where d.id in :ids")
+    List<Object[]> findTextRefsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select d from Document d left join fetch d.owner")
+    List<Document> findAllWithOwner();
+
+    // Reference counts for shared (content-addressed) blobs and texts
+    long countByPdfFilePath(String pdfFilePath);
+
+    long countByTextFilePath(String textFilePath);
+
+    // Documents with identical content whose text is already extracted
+    @Query("select d from Document d where d.contentHash = :hash "
+            + "and (d.status = com.pdfapp.pdfapp.model.DocumentStatus.READY or d.status is null) order by d.id")
+    List<Document> findReadyByContentHash(@Param("hash") String hash);
+
+    @Query("select d from Document d where d.contentHash in :hashes "
+            + "and (d.status = com.pdfapp.pdfapp.model.DocumentStatus.READY or d.status is null) order by d.id")
+    List<Document> findReadyByContentHashIn(@Param("hashes") Collection<String> hashes);
 }
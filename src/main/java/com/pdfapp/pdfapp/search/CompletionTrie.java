@@ -0,0 +1,177 @@
+package com.pdfapp.pdfapp.search;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Weighted keys for prefix completion ("inv" -> invoice, invoices, inventory, ...).
+ * The trie lives in parallel int/char arrays, one slot per node, with children as a
+ * sibling list sorted by character: no per-node objects and no stored strings. Every
+ * node also keeps the best weight anywhere below it, so the top k completions are
+ * found best-first in O(k * depth) node visits however many keys share the prefix.
+ * Weights change in place; keys whose weight drops to 0 stay as dead nodes until the
+ * owner rebuilds the trie (see garbage()).
+ */
+public class CompletionTrie {
+
+    private static final int NONE = -1;
+
+    private char[] label = new char[64];
+    private int[] parent = new int[64];
+    private int[] firstChild = new int[64];
+    private int[] nextSibling = new int[64];
+    private int[] weight = new int[64];
+    private int[] best = new int[64];
+    private int size;
+    private int liveKeys;
+    private int deadKeys;
+    private final BitSet dead = new BitSet();
+    private final Map<Integer, String> surfaces = new HashMap<>(); // display form, when it differs from the key
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public CompletionTrie() {
+        size = 1; // root
+        parent[0] = NONE;
+        firstChild[0] = NONE;
+        nextSibling[0] = NONE;
+    }
+
+    public record Completion(String text, int weight) {}
+
+    // ✅ Adds delta to the key's weight (negative to take it back); surface is what suggestions show
+    public void add(String key, String surface, int delta) {
+        if (key.isEmpty() || delta == 0) return;
+        lock.writeLock().lock();
+        try {
+            int node = 0;
+            for (int i = 0; i < key.length(); i++) node = child(node, key.charAt(i), true);
+
+            int before = weight[node];
+            weight[node] = Math.max(0, before + delta);
+            if (before == 0 && weight[node] > 0) {
+                liveKeys++;
+                if (dead.get(node)) {
+                    dead.clear(node);
+                    deadKeys--;
+                }
+            } else if (before > 0 && weight[node] == 0) {
+                liveKeys--;
+                dead.set(node);
+                deadKeys++;
+            }
+            if (weight[node] > 0 && surface != null && !surface.equals(key)) surfaces.put(node, surface);
+            else if (weight[node] == 0 || surface != null) surfaces.remove(node);
+            propagate(node);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void add(String key, int delta) {
+        add(key, null, delta);
+    }
+
+    /**
+     * Up to k keys starting with prefix, highest weight first.
+     * The queue holds whole subtrees keyed by their best weight next to finished keys;
+     * a subtree's best bounds everything in it, so keys come off the queue in order.
+     */
+    public List<Completion> complete(String prefix, int k) {
+        if (k <= 0) return List.of();
+        lock.readLock().lock();
+        try {
+            int node = 0;
+            for (int i = 0; i < prefix.length() && node != NONE; i++) node = child(node, prefix.charAt(i), false);
+            if (node == NONE || best[node] == 0) return List.of();
+
+            // entry: {weight, node, 1 = key / 0 = subtree}; keys before subtrees of equal weight
+            PriorityQueue<int[]> queue = new PriorityQueue<>((a, b) -> a[0] != b[0] ? Integer.compare(b[0], a[0])
+                    : a[2] != b[2] ? Integer.compare(b[2], a[2]) : Integer.compare(a[1], b[1]));
+            queue.add(new int[]{best[node], node, 0});
+            List<Completion> out = new ArrayList<>(k);
+            while (!queue.isEmpty() && out.size() < k) {
+                int[] entry = queue.poll();
+                int n = entry[1];
+                if (entry[2] == 1) {
+                    out.add(new Completion(surfaces.getOrDefault(n, key(n)), weight[n]));
+                    continue;
+                }
+                if (weight[n] > 0) queue.add(new int[]{weight[n], n, 1});
+                for (int c = firstChild[n]; c != NONE; c = nextSibling[c]) {
+                    if (best[c] > 0) queue.add(new int[]{best[c], c, 0});
+                }
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int keyCount() {
+        lock.readLock().lock();
+        try {
+            return liveKeys;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Keys whose weight went back to 0; their nodes are only reclaimed by building a new trie
+    public int garbage() {
+        lock.readLock().lock();
+        try {
+            return deadKeys;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private String key(int node) {
+        StringBuilder sb = new StringBuilder();
+        for (int n = node; n > 0; n = parent[n]) sb.append(label[n]);
+        return sb.reverse().toString();
+    }
+
+    // Child of node labelled c, inserted in character order when create is set
+    private int child(int node, char c, boolean create) {
+        int previous = NONE;
+        int n = firstChild[node];
+        while (n != NONE && label[n] < c) {
+            previous = n;
+            n = nextSibling[n];
+        }
+        if (n != NONE && label[n] == c) return n;
+        if (!create) return NONE;
+
+        if (size == label.length) grow();
+        int created = size++;
+        label[created] = c;
+        parent[created] = node;
+        firstChild[created] = NONE;
+        nextSibling[created] = n;
+        if (previous == NONE) firstChild[node] = created;
+        else nextSibling[previous] = created;
+        return created;
+    }
+
+    // Recomputes best from node up to the root, stopping where it no longer changes
+    private void propagate(int node) {
+        for (int n = node; n != NONE; n = parent[n]) {
+            int max = weight[n];
+            for (int c = firstChild[n]; c != NONE; c = nextSibling[c]) max = Math.max(max, best[c]);
+            if (max == best[n] && n != node) return;
+            best[n] = max;
+        }
+    }
+
+    private void grow() {
+        int capacity = label.length * 2;
+        label = Arrays.copyOf(label, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        weight = Arrays.copyOf(weight, capacity);
+        best = Arrays.copyOf(best, capacity);
+    }
+}
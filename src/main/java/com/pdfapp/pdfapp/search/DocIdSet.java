@@ -0,0 +1,97 @@
+package com.pdfapp.pdfapp.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable ascending set of document ids with skip pointers.
+ * Intersections walk the smaller set and advance through the larger one in
+ * jumps of sqrt(n) entries before scanning linearly, so AND-ing a rare term
+ * with a common one costs roughly O(small * sqrt(large)) comparisons at worst
+ * and far less when the ids cluster.
+ */
+public class DocIdSet {
+
+    public static final DocIdSet EMPTY = new DocIdSet(new long[0]);
+
+    private final long[] ids;
+    private final int skip;
+
+    // ids must already be sorted ascending and free of duplicates
+    public DocIdSet(long[] ids) {
+        this.ids = ids;
+        this.skip = Math.max(1, (int) Math.sqrt(ids.length));
+    }
+
+    public static DocIdSet fromUnsorted(long[] ids) {
+        long[] copy = ids.clone();
+        Arrays.sort(copy);
+        int n = 0;
+        for (int i = 0; i < copy.length; i++) {
+            if (i == 0 || copy[i] != copy[i - 1]) copy[n++] = copy[i];
+        }
+        return new DocIdSet(Arrays.copyOf(copy, n));
+    }
+
+    public int size() { return ids.length; }
+    public boolean isEmpty() { return ids.length == 0; }
+    public long get(int i) { return ids[i]; }
+
+    public boolean contains(long id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    public List<Long> toList() {
+        List<Long> list = new ArrayList<>(ids.length);
+        for (long id : ids) list.add(id);
+        return list;
+    }
+
+    // First index >= from whose id is >= target, using the skip pointers
+    int advance(int from, long target) {
+        int i = from;
+        while (i + skip < ids.length && ids[i + skip] <= target) i += skip;
+        while (i < ids.length && ids[i] < target) i++;
+        return i;
+    }
+
+    public DocIdSet and(DocIdSet other) {
+        DocIdSet small = size() <= other.size() ? this : other;
+        DocIdSet large = small == this ? other : this;
+
+        long[] out = new long[small.size()];
+        int n = 0;
+        int j = 0;
+        for (int i = 0; i < small.ids.length && j < large.ids.length; i++) {
+            long id = small.ids[i];
+            j = large.advance(j, id);
+            if (j < large.ids.length && large.ids[j] == id) out[n++] = id;
+        }
+        return new DocIdSet(Arrays.copyOf(out, n));
+    }
+
+    public DocIdSet or(DocIdSet other) {
+        long[] out = new long[ids.length + other.ids.length];
+        int i = 0, j = 0, n = 0;
+        while (i < ids.length || j < other.ids.length) {
+            long next;
+            if (j >= other.ids.length || (i < ids.length && ids[i] < other.ids[j])) next = ids[i++];
+            else if (i >= ids.length || other.ids[j] < ids[i]) next = other.ids[j++];
+            else { next = ids[i++]; j++; }
+            out[n++] = next;
+        }
+        return new DocIdSet(Arrays.copyOf(out, n));
+    }
+
+    public DocIdSet andNot(DocIdSet other) {
+        long[] out = new long[ids.length];
+        int n = 0;
+        int j = 0;
+        for (long id : ids) {
+            j = other.advance(j, id);
+            if (j >= other.ids.length || other.ids[j] != id) out[n++] = id;
+        }
+        return new DocIdSet(Arrays.copyOf(out, n));
+    }
+}
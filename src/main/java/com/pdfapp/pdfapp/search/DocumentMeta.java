@@ -0,0 +1,60 @@
+package com.pdfapp.pdfapp.search;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Document fields the query language can filter on (filename:, owner:, mimeType:, uploaded:).
+ * Kept in the index next to the postings so field filters never hit the database.
+ */
+public class DocumentMeta {
+
+    public static final DocumentMeta EMPTY = new DocumentMeta(null, null, null, null, 0L);
+
+    private final String filename;
+    private final Long ownerId;
+    private final String ownerName;
+    private final String mimeType;
+    private final long uploadedAt; // epoch millis, 0 when unknown
+
+    public DocumentMeta(String filename, Long ownerId, String ownerName, String mimeType, long uploadedAt) {
+        this.filename = filename;
+        this.ownerId = ownerId;
+        this.ownerName = ownerName;
+        this.mimeType = mimeType;
+        this.uploadedAt = uploadedAt;
+    }
+
+    public String getFilename() { return filename; }
+    public Long getOwnerId() { return ownerId; }
+    public String getOwnerName() { return ownerName; }
+    public String getMimeType() { return mimeType; }
+    public long getUploadedAt() { return uploadedAt; }
+
+    void write(DataOutputStream out) throws IOException {
+        writeNullable(filename, out);
+        out.writeLong(ownerId != null ? ownerId : -1L);
+        writeNullable(ownerName, out);
+        writeNullable(mimeType, out);
+        out.writeLong(uploadedAt);
+    }
+
+    static DocumentMeta read(DataInputStream in) throws IOException {
+        String filename = readNullable(in);
+        long ownerId = in.readLong();
+        String ownerName = readNullable(in);
+        String mimeType = readNullable(in);
+        long uploadedAt = in.readLong();
+        return new DocumentMeta(filename, ownerId >= 0 ? ownerId : null, ownerName, mimeType, uploadedAt);
+    }
+
+    private static void writeNullable(String value, DataOutputStream out) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,116 @@
+package com.pdfapp.pdfapp.search;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * One RoaringBitmap of document ids per facet value: owner (username), mimeType and
+ * uploaded (yyyy-MM, in the server's zone like the uploaded: filter). Counting a result
+ * set's facets is then one intersection cardinality per value, with no pass over the
+ * documents and no database query.
+ */
+public class FacetIndex {
+
+    public static final List<String> FACETS = List.of("owner", "mimeType", "uploaded");
+    // Hit containers at least this full are turned into bitmaps before counting
+    private static final int DENSE_HITS = 1024;
+
+    private final Map<String, Map<String, RoaringBitmap>> bitmaps = new LinkedHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public FacetIndex() {
+        for (String facet : FACETS) bitmaps.put(facet, new HashMap<>());
+    }
+
+    public void add(long docId, DocumentMeta meta) {
+        lock.writeLock().lock();
+        try {
+            String[] values = values(meta);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) bitmaps.get(FACETS.get(i)).computeIfAbsent(values[i], v -> new RoaringBitmap()).add(docId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // meta must be what the document was added with
+    public void remove(long docId, DocumentMeta meta) {
+        lock.writeLock().lock();
+        try {
+            String[] values = values(meta);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null) continue;
+                Map<String, RoaringBitmap> facet = bitmaps.get(FACETS.get(i));
+                RoaringBitmap bitmap = facet.get(values[i]);
+                if (bitmap != null && bitmap.remove(docId) && bitmap.isEmpty()) facet.remove(values[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * For each facet, its values with the number of hits carrying them, most common first,
+     * at most maxValues per facet; values no hit carries are left out.
+     */
+    public Map<String, Map<String, Integer>> counts(RoaringBitmap hits, int maxValues) {
+        lock.readLock().lock();
+        try {
+            Map<String, Map<String, Integer>> out = new LinkedHashMap<>();
+            RoaringBitmap probe = hits.withBitmapContainers(DENSE_HITS);
+            for (Map.Entry<String, Map<String, RoaringBitmap>> facet : bitmaps.entrySet()) {
+                List<Map.Entry<String, Integer>> counts = new ArrayList<>();
+                if (!hits.isEmpty()) {
+                    for (Map.Entry<String, RoaringBitmap> value : facet.getValue().entrySet()) {
+                        int n = probe.andCardinality(value.getValue());
+                        if (n > 0) counts.add(Map.entry(value.getKey(), n));
+                    }
+                }
+                counts.sort(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+                Map<String, Integer> top = new LinkedHashMap<>();
+                for (int i = 0; i < counts.size() && i < maxValues; i++) top.put(counts.get(i).getKey(), counts.get(i).getValue());
+                out.put(facet.getKey(), top);
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int valueCount() {
+        lock.readLock().lock();
+        try {
+            int n = 0;
+            for (Map<String, RoaringBitmap> facet : bitmaps.values()) n += facet.size();
+            return n;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long sizeInBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Map<String, RoaringBitmap> facet : bitmaps.values()) {
+                for (RoaringBitmap bitmap : facet.values()) bytes += bitmap.sizeInBytes();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // In FACETS order; null where the document has no value
+    private static String[] values(DocumentMeta meta) {
+        String month = meta.getUploadedAt() != 0
+                ? YearMonth.from(Instant.ofEpochMilli(meta.getUploadedAt()).atZone(ZoneId.systemDefault())).toString()
+                : null;
+        return new String[]{meta.getOwnerName(), meta.getMimeType(), month};
+    }
+}
@@ -0,0 +1,645 @@
+package com.pdfapp.pdfapp.search;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Term -> posting list index over extracted document text.
+ * Posting lists are kept sorted by document id so lookups can merge them without sorting.
+ * The snapshot format is term-major (dictionary followed by each term's postings);
+ * single documents are serialized separately so they can be appended to a journal.
+ * The dictionary is sorted so prefix queries are a range scan; each document also
+ * carries the metadata that query field filters match against.
+ */
+public class InvertedIndex {
+
+    private static final int SNAPSHOT_MAGIC = 0x50444649; // "PDFI"
+    private static final int SNAPSHOT_VERSION = 2;
+
+    private final NavigableMap<String, List<Posting>> postings = new TreeMap<>();
+    private final Map<Long, DocInfo> docs = new HashMap<>();
+    private long totalLength; // sum of document lengths, for BM25's average document length
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Per-document bookkeeping needed to remove a document without scanning the dictionary
+    private static class DocInfo {
+        final int length;
+        final String[] terms;
+        final DocumentMeta meta;
+
+        DocInfo(int length, String[] terms, DocumentMeta meta) {
+            this.length = length;
+            this.terms = terms;
+            this.meta = meta;
+        }
+    }
+
+    public void add(long docId, List<Token> tokens) {
+        add(docId, DocumentMeta.EMPTY, tokens);
+    }
+
+    // ✅ Add (or replace) a document
+    public void add(long docId, DocumentMeta meta, List<Token> tokens) {
+        Map<String, List<Token>> byTerm = new LinkedHashMap<>();
+        for (Token token : tokens) {
+            byTerm.computeIfAbsent(token.getTerm(), t -> new ArrayList<>()).add(token);
+        }
+
+        Map<String, Posting> docPostings = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Token>> entry : byTerm.entrySet()) {
+            List<Token> occurrences = entry.getValue();
+            int[] positions = new int[occurrences.size()];
+            int[] offsets = new int[occurrences.size()];
+            for (int i = 0; i < occurrences.size(); i++) {
+                positions[i] = occurrences.get(i).getPosition();
+                offsets[i] = occurrences.get(i).getOffset();
+            }
+            docPostings.put(entry.getKey(), new Posting(docId, positions, offsets));
+        }
+        put(docId, tokens.size(), meta, docPostings);
+    }
+
+    // ✅ Index a document with identical content under a new id, sharing the occurrence arrays
+    public boolean copy(long fromDocId, long toDocId, DocumentMeta meta) {
+        Map<String, Posting> docPostings = new LinkedHashMap<>();
+        int length;
+        lock.readLock().lock();
+        try {
+            DocInfo info = docs.get(fromDocId);
+            if (info == null) return false;
+            length = info.length;
+            for (String term : info.terms) {
+                Posting from = postings.get(term).get(indexOf(postings.get(term), fromDocId));
+                docPostings.put(term, new Posting(toDocId, from.getPositions(), from.getOffsets()));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        put(toDocId, length, meta, docPostings);
+        return true;
+    }
+
+    private void put(long docId, int length, DocumentMeta meta, Map<String, Posting> docPostings) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(docId);
+            for (Map.Entry<String, Posting> entry : docPostings.entrySet()) {
+                insertSorted(postings.computeIfAbsent(entry.getKey(), t -> new ArrayList<>()), entry.getValue());
+            }
+            docs.put(docId, new DocInfo(length, docPostings.keySet().toArray(new String[0]), meta));
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ✅ Remove a document; only the posting lists of its own terms are touched
+    public boolean remove(long docId) {
+        lock.writeLock().lock();
+        try {
+            return removeLocked(docId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean removeLocked(long docId) {
+        DocInfo info = docs.remove(docId);
+        if (info == null) return false;
+        totalLength -= info.length;
+
+        for (String term : info.terms) {
+            List<Posting> list = postings.get(term);
+            if (list == null) continue;
+            int idx = indexOf(list, docId);
+            if (idx >= 0) list.remove(idx);
+            if (list.isEmpty()) postings.remove(term);
+        }
+        return true;
+    }
+
+    // New ids are normally the largest seen, so this is usually an append
+    private static void insertSorted(List<Posting> list, Posting posting) {
+        if (list.isEmpty() || list.get(list.size() - 1).getDocId() < posting.getDocId()) {
+            list.add(posting);
+            return;
+        }
+        int idx = indexOf(list, posting.getDocId());
+        if (idx >= 0) list.set(idx, posting);
+        else list.add(-idx - 1, posting);
+    }
+
+    private static int indexOf(List<Posting> list, long docId) {
+        int lo = 0, hi = list.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long midId = list.get(mid).getDocId();
+            if (midId < docId) lo = mid + 1;
+            else if (midId > docId) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * Returns ids (ascending) of documents containing the given terms as a consecutive phrase.
+     * A single term is a plain posting list lookup.
+     */
+    public List<Long> searchPhrase(List<String> terms) {
+        if (terms.isEmpty()) return List.of();
+
+        lock.readLock().lock();
+        try {
+            List<List<Posting>> lists = new ArrayList<>();
+            for (String term : terms) {
+                List<Posting> list = postings.get(term);
+                if (list == null) return List.of();
+                lists.add(list);
+            }
+
+            List<Long> result = new ArrayList<>();
+            List<Posting> first = lists.get(0);
+            candidates:
+            for (Posting candidate : first) {
+                Posting[] row = new Posting[lists.size()];
+                row[0] = candidate;
+                for (int i = 1; i < lists.size(); i++) {
+                    int idx = indexOf(lists.get(i), candidate.getDocId());
+                    if (idx < 0) continue candidates;
+                    row[i] = lists.get(i).get(idx);
+                }
+                if (row.length == 1 || hasPhrase(row)) result.add(candidate.getDocId());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean hasPhrase(Posting[] row) {
+        for (int start : row[0].getPositions()) {
+            boolean match = true;
+            for (int i = 1; i < row.length && match; i++) {
+                match = Arrays.binarySearch(row[i].getPositions(), start + i) >= 0;
+            }
+            if (match) return true;
+        }
+        return false;
+    }
+
+    // ---------------------------------------------------------------------
+    // Query building blocks; every result is an ascending DocIdSet
+    // ---------------------------------------------------------------------
+
+    public DocIdSet termDocs(String term) {
+        lock.readLock().lock();
+        try {
+            return toDocIdSet(postings.get(term));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public DocIdSet phraseDocs(List<String> terms) {
+        if (terms.size() == 1) return termDocs(terms.get(0));
+        List<Long> ids = searchPhrase(terms);
+        long[] out = new long[ids.size()];
+        for (int i = 0; i < out.length; i++) out[i] = ids.get(i);
+        return new DocIdSet(out);
+    }
+
+    // Union of the posting lists of (at most maxTerms) dictionary terms starting with prefix
+    public DocIdSet prefixDocs(String prefix, int maxTerms) {
+        lock.readLock().lock();
+        try {
+            long[] ids = new long[16];
+            int n = 0;
+            int expanded = 0;
+            for (Map.Entry<String, List<Posting>> entry : postings.tailMap(prefix, true).entrySet()) {
+                if (!entry.getKey().startsWith(prefix) || expanded++ >= maxTerms) break;
+                for (Posting posting : entry.getValue()) {
+                    if (n == ids.length) ids = Arrays.copyOf(ids, n * 2);
+                    ids[n++] = posting.getDocId();
+                }
+            }
+            return DocIdSet.fromUnsorted(Arrays.copyOf(ids, n));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Dictionary terms the automaton accepts, closest first and then most frequent, at most
+     * maxTerms of them. The sorted dictionary is walked like a trie: terms sharing a prefix
+     * with the previous one reuse its automaton states, and once a prefix reaches a dead
+     * state the walk seeks straight to the next prefix the automaton can still extend.
+     */
+    public List<String> fuzzyTerms(LevenshteinAutomaton automaton, int maxTerms) {
+        lock.readLock().lock();
+        try {
+            List<String> matches = new ArrayList<>();
+            List<Integer> distances = new ArrayList<>();
+            int[][] states = new int[Tokenizer.MAX_TERM_LENGTH + 1][];
+            states[0] = automaton.start();
+            String previous = "";
+            int valid = 0; // states[0..valid] hold the states after each prefix of previous
+
+            String term = postings.isEmpty() ? null : postings.firstKey();
+            while (term != null) {
+                int depth = 0;
+                int shared = Math.min(valid, Math.min(previous.length(), term.length()));
+                while (depth < shared && previous.charAt(depth) == term.charAt(depth)) depth++;
+
+                int dead = -1;
+                while (depth < term.length() && depth < Tokenizer.MAX_TERM_LENGTH) {
+                    states[depth + 1] = automaton.step(states[depth], term.charAt(depth));
+                    depth++;
+                    if (!automaton.canMatch(states[depth])) {
+                        dead = depth;
+                        break;
+                    }
+                }
+                previous = term;
+                valid = depth;
+
+                if (dead > 0) {
+                    String target = nextLive(automaton, states, term, dead);
+                    term = target == null ? null : postings.ceilingKey(target);
+                    continue;
+                }
+                int distance = automaton.distance(states[depth]);
+                if (distance >= 0) {
+                    matches.add(term);
+                    distances.add(distance);
+                }
+                term = postings.higherKey(term);
+            }
+
+            Integer[] order = new Integer[matches.size()];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, Comparator.<Integer>comparingInt(distances::get)
+                    .thenComparing(i -> -postings.get(matches.get(i)).size()));
+            List<String> result = new ArrayList<>(Math.min(maxTerms, order.length));
+            for (int i = 0; i < order.length && i < maxTerms; i++) result.add(matches.get(order[i]));
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Smallest string above term whose prefixes are all live, given that term's first dead chars are not
+    private static String nextLive(LevenshteinAutomaton automaton, int[][] states, String term, int dead) {
+        for (int depth = dead - 1; depth >= 0; depth--) {
+            int c = automaton.nextLiveChar(states[depth], term.charAt(depth));
+            if (c >= 0) return term.substring(0, depth) + (char) c;
+        }
+        return null;
+    }
+
+    // Union of the posting lists of the given terms
+    public DocIdSet anyTermDocs(Collection<String> terms) {
+        lock.readLock().lock();
+        try {
+            long[] ids = new long[16];
+            int n = 0;
+            for (String term : terms) {
+                List<Posting> list = postings.get(term);
+                if (list == null) continue;
+                for (Posting posting : list) {
+                    if (n == ids.length) ids = Arrays.copyOf(ids, n * 2);
+                    ids[n++] = posting.getDocId();
+                }
+            }
+            return DocIdSet.fromUnsorted(Arrays.copyOf(ids, n));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public DocIdSet allDocs() {
+        return filter(meta -> true);
+    }
+
+    // Documents whose metadata matches; a linear pass over the document table
+    public DocIdSet filter(Predicate<DocumentMeta> predicate) {
+        lock.readLock().lock();
+        try {
+            long[] out = new long[docs.size()];
+            int n = 0;
+            for (Map.Entry<Long, DocInfo> entry : docs.entrySet()) {
+                if (predicate.test(entry.getValue().meta)) out[n++] = entry.getKey();
+            }
+            return DocIdSet.fromUnsorted(Arrays.copyOf(out, n));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public DocumentMeta meta(long docId) {
+        lock.readLock().lock();
+        try {
+            DocInfo info = docs.get(docId);
+            return info != null ? info.meta : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static DocIdSet toDocIdSet(List<Posting> list) {
+        if (list == null) return DocIdSet.EMPTY;
+        long[] ids = new long[list.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = list.get(i).getDocId();
+        return new DocIdSet(ids);
+    }
+
+    // A ranked hit: BM25 score plus the character offsets of the first matching terms
+    public static class ScoredDocument {
+        private final long docId;
+        private final double score;
+        private int[] offsets = new int[0];
+
+        public ScoredDocument(long docId, double score) {
+            this.docId = docId;
+            this.score = score;
+        }
+
+        public long getDocId() { return docId; }
+        public double getScore() { return score; }
+        public int[] getOffsets() { return offsets; }
+    }
+
+    /**
+     * Scores every document containing at least one of the terms with Okapi BM25 and
+     * returns the best k, highest first. Document frequencies come from posting list
+     * sizes and lengths from the per-document table, so nothing is re-read from disk;
+     * only a k-sized min-heap is kept instead of sorting all candidates.
+     */
+    public List<ScoredDocument> rankBm25(Collection<String> terms, int k, double k1, double b, int maxOffsets) {
+        return rankBm25(terms, null, k, k1, b, maxOffsets);
+    }
+
+    // Same, restricted to the documents in filter (e.g. the matches of a boolean query); null means all.
+    // Filter documents containing none of the terms still compete, with score 0.
+    public List<ScoredDocument> rankBm25(Collection<String> terms, DocIdSet filter, int k, double k1, double b,
+                                         int maxOffsets) {
+        if (terms.isEmpty() || k <= 0) return List.of();
+
+        lock.readLock().lock();
+        try {
+            int n = docs.size();
+            if (n == 0) return List.of();
+            double avgLength = Math.max(1.0, (double) totalLength / n);
+
+            Set<String> unique = new LinkedHashSet<>(terms);
+            Map<Long, Double> scores = new HashMap<>();
+            for (String term : unique) {
+                List<Posting> list = postings.get(term);
+                if (list == null) continue;
+
+                int df = list.size();
+                double idf = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+                for (Posting posting : list) {
+                    if (filter != null && !filter.contains(posting.getDocId())) continue;
+                    int tf = posting.getFrequency();
+                    double norm = k1 * (1 - b + b * docs.get(posting.getDocId()).length / avgLength);
+                    scores.merge(posting.getDocId(), idf * tf * (k1 + 1) / (tf + norm), Double::sum);
+                }
+            }
+
+            if (filter != null) {
+                for (int i = 0; i < filter.size(); i++) scores.putIfAbsent(filter.get(i), 0.0);
+            }
+
+            PriorityQueue<ScoredDocument> heap = new PriorityQueue<>(
+                    Comparator.comparingDouble(ScoredDocument::getScore).thenComparing(d -> -d.getDocId()));
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                if (heap.size() < k) {
+                    heap.add(new ScoredDocument(entry.getKey(), entry.getValue()));
+                } else if (entry.getValue() > heap.peek().getScore()) {
+                    heap.poll();
+                    heap.add(new ScoredDocument(entry.getKey(), entry.getValue()));
+                }
+            }
+
+            List<ScoredDocument> top = new ArrayList<>(heap);
+            top.sort(Comparator.comparingDouble(ScoredDocument::getScore).reversed()
+                    .thenComparing(ScoredDocument::getDocId));
+            for (ScoredDocument hit : top) hit.offsets = matchOffsets(hit.docId, unique, maxOffsets);
+            return top;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Character offsets (ascending, at most max) of the document's occurrences of the terms
+    public int[] offsets(long docId, Collection<String> terms, int max) {
+        lock.readLock().lock();
+        try {
+            return matchOffsets(docId, terms, max);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int[] matchOffsets(long docId, Collection<String> terms, int max) {
+        TreeSet<Integer> offsets = new TreeSet<>();
+        for (String term : terms) {
+            List<Posting> list = postings.get(term);
+            if (list == null) continue;
+            int idx = indexOf(list, docId);
+            if (idx < 0) continue;
+            for (int offset : list.get(idx).getOffsets()) {
+                offsets.add(offset);
+                if (offsets.size() > max) offsets.pollLast();
+            }
+        }
+        return offsets.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Distinct terms of a document, or null if it is not indexed
+    public String[] terms(long docId) {
+        lock.readLock().lock();
+        try {
+            DocInfo info = docs.get(docId);
+            return info != null ? info.terms.clone() : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Every dictionary term with its document frequency, in term order
+    public void forEachTerm(ObjIntConsumer<String> action) {
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, List<Posting>> entry : postings.entrySet()) action.accept(entry.getKey(), entry.getValue().size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(long docId) {
+        lock.readLock().lock();
+        try {
+            return docs.containsKey(docId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Set<Long> documentIds() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(docs.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int documentCount() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Serialization
+    // ---------------------------------------------------------------------
+
+    // Writes one document's postings; used for journal records
+    public boolean writeDocument(long docId, DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            DocInfo info = docs.get(docId);
+            if (info == null) return false;
+
+            info.meta.write(out);
+            out.writeInt(info.length);
+            out.writeInt(info.terms.length);
+            for (String term : info.terms) {
+                out.writeUTF(term);
+                writeOccurrences(postings.get(term).get(indexOf(postings.get(term), docId)), out);
+            }
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void readDocument(long docId, DataInputStream in) throws IOException {
+        DocumentMeta meta = DocumentMeta.read(in);
+        int length = in.readInt();
+        int termCount = in.readInt();
+        Map<String, Posting> docPostings = new LinkedHashMap<>();
+        for (int i = 0; i < termCount; i++) {
+            String term = in.readUTF();
+            docPostings.put(term, readOccurrences(docId, in));
+        }
+        put(docId, length, meta, docPostings);
+    }
+
+    public void writeSnapshot(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+
+            out.writeInt(docs.size());
+            for (Map.Entry<Long, DocInfo> entry : docs.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                entry.getValue().meta.write(out);
+            }
+
+            out.writeInt(postings.size());
+            for (Map.Entry<String, List<Posting>> entry : postings.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (Posting posting : entry.getValue()) {
+                    out.writeLong(posting.getDocId());
+                    writeOccurrences(posting, out);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static InvertedIndex readSnapshot(DataInputStream in) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC) throw new IOException("Not an index snapshot");
+        int version = in.readInt();
+        if (version != SNAPSHOT_VERSION) throw new IOException("Unsupported index snapshot version " + version);
+
+        InvertedIndex index = new InvertedIndex();
+        Map<Long, Integer> lengths = new HashMap<>();
+        Map<Long, DocumentMeta> metas = new HashMap<>();
+        Map<Long, List<String>> docTerms = new HashMap<>();
+
+        int docCount = in.readInt();
+        for (int i = 0; i < docCount; i++) {
+            long docId = in.readLong();
+            lengths.put(docId, in.readInt());
+            metas.put(docId, DocumentMeta.read(in));
+            docTerms.put(docId, new ArrayList<>());
+        }
+
+        int termCount = in.readInt();
+        for (int i = 0; i < termCount; i++) {
+            String term = in.readUTF();
+            int postingCount = in.readInt();
+            List<Posting> list = new ArrayList<>(postingCount);
+            for (int j = 0; j < postingCount; j++) {
+                long docId = in.readLong();
+                list.add(readOccurrences(docId, in));
+                docTerms.computeIfAbsent(docId, id -> new ArrayList<>()).add(term);
+            }
+            index.postings.put(term, list);
+        }
+
+        for (Map.Entry<Long, List<String>> entry : docTerms.entrySet()) {
+            int length = lengths.getOrDefault(entry.getKey(), 0);
+            index.docs.put(entry.getKey(), new DocInfo(length, entry.getValue().toArray(new String[0]),
+                    metas.getOrDefault(entry.getKey(), DocumentMeta.EMPTY)));
+            index.totalLength += length;
+        }
+        return index;
+    }
+
+    private static void writeOccurrences(Posting posting, DataOutputStream out) throws IOException {
+        int[] positions = posting.getPositions();
+        int[] offsets = posting.getOffsets();
+        out.writeInt(positions.length);
+        for (int i = 0; i < positions.length; i++) {
+            out.writeInt(positions[i]);
+            out.writeInt(offsets[i]);
+        }
+    }
+
+    private static Posting readOccurrences(long docId, DataInputStream in) throws IOException {
+        int freq = in.readInt();
+        int[] positions = new int[freq];
+        int[] offsets = new int[freq];
+        for (int i = 0; i < freq; i++) {
+            positions[i] = in.readInt();
+            offsets[i] = in.readInt();
+        }
+        return new Posting(docId, positions, offsets);
+    }
+}
@@ -0,0 +1,76 @@
+package com.pdfapp.pdfapp.search;
+
+/**
+ * Accepts the strings within maxEdits insertions, deletions or substitutions of a term.
+ * A state is one row of the edit-distance table (the distance from each prefix of the
+ * term to the input read so far), with values capped at maxEdits + 1 so the states
+ * stay few; a state from which no accepted string is reachable is dead, which is what
+ * lets InvertedIndex.fuzzyTerms skip whole ranges of the sorted dictionary.
+ */
+public final class LevenshteinAutomaton {
+
+    private final char[] term;
+    private final char[] alphabet; // the term's distinct characters, ascending
+    private final int maxEdits;
+
+    public LevenshteinAutomaton(String term, int maxEdits) {
+        this.term = term.toCharArray();
+        this.alphabet = term.chars().distinct().sorted().collect(StringBuilder::new,
+                StringBuilder::appendCodePoint, StringBuilder::append).toString().toCharArray();
+        this.maxEdits = maxEdits;
+    }
+
+    public int getMaxEdits() { return maxEdits; }
+
+    public int[] start() {
+        int[] state = new int[term.length + 1];
+        for (int i = 0; i < state.length; i++) state[i] = Math.min(i, maxEdits + 1);
+        return state;
+    }
+
+    public int[] step(int[] state, char c) {
+        return step(state, c, true);
+    }
+
+    // matching = false steps on a character that occurs nowhere in the term
+    private int[] step(int[] state, char c, boolean matching) {
+        int[] next = new int[state.length];
+        next[0] = Math.min(state[0] + 1, maxEdits + 1);
+        for (int i = 1; i < state.length; i++) {
+            int substitute = state[i - 1] + (matching && term[i - 1] == c ? 0 : 1);
+            int insert = state[i] + 1;
+            int delete = next[i - 1] + 1;
+            next[i] = Math.min(Math.min(substitute, insert), Math.min(delete, maxEdits + 1));
+        }
+        return next;
+    }
+
+    // Edit distance of the input read so far, or -1 if it is over maxEdits
+    public int distance(int[] state) {
+        int d = state[state.length - 1];
+        return d <= maxEdits ? d : -1;
+    }
+
+    /**
+     * Smallest character after the given one whose transition from state is not dead, or -1.
+     * Characters outside the term all behave alike, so only the term's own characters and
+     * the "any other character" case need checking; this lets the dictionary walk seek past
+     * every dead sibling at once.
+     */
+    public int nextLiveChar(int[] state, char after) {
+        if (after == Character.MAX_VALUE) return -1;
+        if (canMatch(step(state, after, false))) return after + 1;
+        for (char c : alphabet) {
+            if (c > after && canMatch(step(state, c))) return c;
+        }
+        return -1;
+    }
+
+    // Whether some continuation of the input can still be accepted
+    public boolean canMatch(int[] state) {
+        for (int d : state) {
+            if (d <= maxEdits) return true;
+        }
+        return false;
+    }
+}
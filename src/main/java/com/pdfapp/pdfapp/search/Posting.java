@@ -0,0 +1,19 @@
+package com.pdfapp.pdfapp.search;
+
+// Occurrences of one term inside one document (positions and offsets are ascending)
+public class Posting {
+    private final long docId;
+    private final int[] positions;
+    private final int[] offsets;
+
+    public Posting(long docId, int[] positions, int[] offsets) {
+        this.docId = docId;
+        this.positions = positions;
+        this.offsets = offsets;
+    }
+
+    public long getDocId() { return docId; }
+    public int[] getPositions() { return positions; }
+    public int[] getOffsets() { return offsets; }
+    public int getFrequency() { return positions.length; }
+}
@@ -0,0 +1,189 @@
+package com.pdfapp.pdfapp.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Parsed search query (see QueryParser). Evaluation works purely on DocIdSets:
+ * AND intersects its positive clauses smallest-first and subtracts its negated
+ * ones, so "a AND NOT b" never materializes the complement of b.
+ */
+public abstract class Query {
+
+    public abstract DocIdSet evaluate(InvertedIndex index);
+
+    // Terms that should drive ranking; negated clauses contribute none
+    public void collectTerms(Collection<String> terms) {
+    }
+
+    // ✅ A single term, or a phrase when the text tokenized into several terms
+    public static class Terms extends Query {
+        private final List<String> terms;
+
+        public Terms(List<String> terms) {
+            this.terms = terms;
+        }
+
+        public List<String> getTerms() { return terms; }
+
+        @Override
+        public DocIdSet evaluate(InvertedIndex index) {
+            return index.phraseDocs(terms);
+        }
+
+        @Override
+        public void collectTerms(Collection<String> out) {
+            out.addAll(terms);
+        }
+    }
+
+    public static class Prefix extends Query {
+        private final String prefix;
+        private final int maxTerms;
+
+        public Prefix(String prefix, int maxTerms) {
+            this.prefix = prefix;
+            this.maxTerms = maxTerms;
+        }
+
+        public String getPrefix() { return prefix; }
+
+        @Override
+        public DocIdSet evaluate(InvertedIndex index) {
+            return index.prefixDocs(prefix, maxTerms);
+        }
+    }
+
+    // ✅ term~ / term~1 / term~2: any dictionary term within that many edits
+    public static class Fuzzy extends Query {
+        private final String term;
+        private final int maxEdits;
+        private final int maxTerms;
+        private volatile List<String> expanded; // set by evaluate, so ranking scores the terms that matched
+
+        public Fuzzy(String term, int maxEdits, int maxTerms) {
+            this.term = term;
+            this.maxEdits = maxEdits;
+            this.maxTerms = maxTerms;
+        }
+
+        public String getTerm() { return term; }
+        public int getMaxEdits() { return maxEdits; }
+
+        @Override
+        public DocIdSet evaluate(InvertedIndex index) {
+            List<String> terms = index.fuzzyTerms(new LevenshteinAutomaton(term, maxEdits), maxTerms);
+            expanded = terms;
+            return index.anyTermDocs(terms);
+        }
+
+        @Override
+        public void collectTerms(Collection<String> out) {
+            List<String> terms = expanded;
+            if (terms != null) out.addAll(terms);
+            else out.add(term);
+        }
+    }
+
+    // ✅ filename:, owner:, mimeType:, uploaded: — matched against the metadata stored in the index
+    public static class Field extends Query {
+        private final String field;
+        private final Predicate<DocumentMeta> predicate;
+
+        public Field(String field, Predicate<DocumentMeta> predicate) {
+            this.field = field;
+            this.predicate = predicate;
+        }
+
+        public String getField() { return field; }
+
+        @Override
+        public DocIdSet evaluate(InvertedIndex index) {
+            return index.filter(predicate);
+        }
+    }
+
+    public static class Not extends Query {
+        private final Query clause;
+
+        public Not(Query clause) {
+            this.clause = clause;
+        }
+
+        public Query getClause() { return clause; }
+
+        // Only reached for a top-level or OR-ed NOT; inside AND it becomes a subtraction
+        @Override
+        public DocIdSet evaluate(InvertedIndex index) {
+            return index.allDocs().andNot(clause.evaluate(index));
+        }
+    }
+
+    public static class And extends Query {
+        private final List<Query> clauses;
+
+        public And(List<Query> clauses) {
+            this.clauses = clauses;
+        }
+
+        public List<Query> getClauses() { return clauses; }
+
+        @Override
+        public DocIdSet evaluate(InvertedIndex index) {
+            List<DocIdSet> include = new ArrayList<>();
+            List<Query> exclude = new ArrayList<>();
+            for (Query clause : clauses) {
+                if (clause instanceof Not) {
+                    exclude.add(((Not) clause).clause);
+                    continue;
+                }
+                DocIdSet docs = clause.evaluate(index);
+                if (docs.isEmpty()) return DocIdSet.EMPTY;
+                include.add(docs);
+            }
+
+            DocIdSet result;
+            if (include.isEmpty()) {
+                result = index.allDocs();
+            } else {
+                include.sort(Comparator.comparingInt(DocIdSet::size));
+                result = include.get(0);
+                for (int i = 1; i < include.size() && !result.isEmpty(); i++) result = result.and(include.get(i));
+            }
+            for (int i = 0; i < exclude.size() && !result.isEmpty(); i++) {
+                result = result.andNot(exclude.get(i).evaluate(index));
+            }
+            return result;
+        }
+
+        @Override
+        public void collectTerms(Collection<String> out) {
+            for (Query clause : clauses) clause.collectTerms(out);
+        }
+    }
+
+    public static class Or extends Query {
+        private final List<Query> clauses;
+
+        public Or(List<Query> clauses) {
+            this.clauses = clauses;
+        }
+
+        public List<Query> getClauses() { return clauses; }
+
+        @Override
+        public DocIdSet evaluate(InvertedIndex index) {
+            DocIdSet result = DocIdSet.EMPTY;
+            for (Query clause : clauses) result = result.or(clause.evaluate(index));
+            return result;
+        }
+
+        @Override
+        public void collectTerms(Collection<String> out) {
+            for (Query clause : clauses) clause.collectTerms(out);
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.pdfapp.pdfapp.search;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the /api/documents/search query language:
+ *
+ *   invoice 2024                  both terms (AND is implicit)
+ *   invoice OR receipt            either term
+ *   invoice AND NOT draft         "-draft" is shorthand for NOT draft
+ *   "net amount due"              phrase
+ *   inv*                          prefix
+ *   invoise~  invoise~1           fuzzy: terms within 2 (or the given 0-2) edits
+ *   (a OR b) c                    grouping
+ *   filename:report  owner:alice  mimeType:pdf
+ *   uploaded:2024-03-01  uploaded:[2024-01-01 TO 2024-06-30]  ("*" leaves an end open)
+ *
+ * filename: and mimeType: match case-insensitive substrings (filename values with "*"
+ * are globs), owner: matches the username exactly. A bare "~" allows one edit for
+ * terms of 3-5 characters and two for longer ones; shorter terms must match exactly. Operators are upper-case so the
+ * lower-case words "and", "or" and "not" stay searchable. Unknown "xyz:" prefixes are
+ * searched as text.
+ */
+public class QueryParser {
+
+    private static final int MAX_DEPTH = 32;
+    private static final int MAX_EDITS = 2;
+    private static final int DEFAULT_MAX_FUZZY_TERMS = 50;
+
+    private static final Pattern FUZZY_SUFFIX = Pattern.compile("~\\d?");
+
+    private enum Kind { WORD, PHRASE, RANGE, FIELD, LPAREN, RPAREN, AND, OR, NOT }
+
+    private static class Tok {
+        final Kind kind;
+        final String text;
+
+        Tok(Kind kind, String text) {
+            this.kind = kind;
+            this.text = text;
+        }
+    }
+
+    private final int maxPrefixTerms;
+    private final int maxFuzzyTerms;
+    private final boolean fuzzyWords;
+    private List<Tok> tokens;
+    private int pos;
+    private int depth;
+
+    public QueryParser(int maxPrefixTerms) {
+        this(maxPrefixTerms, DEFAULT_MAX_FUZZY_TERMS, false);
+    }
+
+    // fuzzyWords: plain words are read as if written word~ (phrases and field values stay exact)
+    public QueryParser(int maxPrefixTerms, int maxFuzzyTerms, boolean fuzzyWords) {
+        this.maxPrefixTerms = maxPrefixTerms;
+        this.maxFuzzyTerms = maxFuzzyTerms;
+        this.fuzzyWords = fuzzyWords;
+    }
+
+    public Query parse(String query) {
+        if (query == null || query.isBlank()) throw new QuerySyntaxException("Empty query");
+        tokens = lex(query);
+        pos = 0;
+        depth = 0;
+
+        Query result = parseOr();
+        if (pos < tokens.size()) throw new QuerySyntaxException("Unexpected ')'");
+        if (result == null) throw new QuerySyntaxException("Query has no searchable terms");
+        return result;
+    }
+
+    // ---------------------------------------------------------------------
+    // Lexer
+    // ---------------------------------------------------------------------
+
+    private static List<Tok> lex(String q) {
+        List<Tok> out = new ArrayList<>();
+        int i = 0;
+        while (i < q.length()) {
+            char c = q.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(') {
+                out.add(new Tok(Kind.LPAREN, "("));
+                i++;
+            } else if (c == ')') {
+                out.add(new Tok(Kind.RPAREN, ")"));
+                i++;
+            } else if (c == '"') {
+                int end = q.indexOf('"', i + 1);
+                if (end < 0) throw new QuerySyntaxException("Unterminated phrase");
+                out.add(new Tok(Kind.PHRASE, q.substring(i + 1, end)));
+                i = end + 1;
+            } else if (c == '[') {
+                int end = q.indexOf(']', i + 1);
+                if (end < 0) throw new QuerySyntaxException("Unterminated range");
+                out.add(new Tok(Kind.RANGE, q.substring(i + 1, end).trim()));
+                i = end + 1;
+            } else if (c == '-' && i + 1 < q.length() && !Character.isWhitespace(q.charAt(i + 1))) {
+                out.add(new Tok(Kind.NOT, "-"));
+                i++;
+            } else {
+                int start = i;
+                while (i < q.length() && !Character.isWhitespace(q.charAt(i)) && "()\"".indexOf(q.charAt(i)) < 0
+                        && !(q.charAt(i) == '[' && q.charAt(i - 1) == ':')) i++;
+                lexWord(q.substring(start, i), out);
+            }
+        }
+        return out;
+    }
+
+    private static void lexWord(String word, List<Tok> out) {
+        if (word.equals("AND") || word.equals("&&")) {
+            out.add(new Tok(Kind.AND, word));
+        } else if (word.equals("OR") || word.equals("||")) {
+            out.add(new Tok(Kind.OR, word));
+        } else if (word.equals("NOT")) {
+            out.add(new Tok(Kind.NOT, word));
+        } else {
+            int colon = word.indexOf(':');
+            String field = colon > 0 ? canonicalField(word.substring(0, colon)) : null;
+            if (field == null) {
+                out.add(new Tok(Kind.WORD, word));
+                return;
+            }
+            out.add(new Tok(Kind.FIELD, field));
+            if (colon + 1 < word.length()) out.add(new Tok(Kind.WORD, word.substring(colon + 1)));
+        }
+    }
+
+    private static String canonicalField(String name) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "filename": return "filename";
+            case "owner": return "owner";
+            case "mimetype": return "mimeType";
+            case "uploaded": return "uploaded";
+            default: return null;
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Recursive descent: or := and (OR and)* ; and := unary (AND? unary)* ; unary := NOT unary | primary
+    // ---------------------------------------------------------------------
+
+    private Tok peek() {
+        return pos < tokens.size() ? tokens.get(pos) : null;
+    }
+
+    private boolean accept(Kind kind) {
+        Tok tok = peek();
+        if (tok == null || tok.kind != kind) return false;
+        pos++;
+        return true;
+    }
+
+    private Query parseOr() {
+        List<Query> clauses = new ArrayList<>();
+        Query first = parseAnd();
+        if (first != null) clauses.add(first);
+        while (accept(Kind.OR)) {
+            Query next = parseAnd();
+            if (next == null) throw new QuerySyntaxException("OR needs a clause on both sides");
+            clauses.add(next);
+        }
+        if (clauses.isEmpty()) return null;
+        return clauses.size() == 1 ? clauses.get(0) : new Query.Or(clauses);
+    }
+
+    private Query parseAnd() {
+        List<Query> clauses = new ArrayList<>();
+        while (true) {
+            Tok tok = peek();
+            if (tok == null || tok.kind == Kind.RPAREN || tok.kind == Kind.OR) break;
+            boolean explicit = accept(Kind.AND);
+            Query clause = parseUnary();
+            if (clause == null && explicit) throw new QuerySyntaxException("AND needs a clause on both sides");
+            if (clause != null) clauses.add(clause);
+        }
+        if (clauses.isEmpty()) return null;
+        return clauses.size() == 1 ? clauses.get(0) : new Query.And(clauses);
+    }
+
+    private Query parseUnary() {
+        if (accept(Kind.NOT)) {
+            Query clause = parseUnary();
+            if (clause == null) throw new QuerySyntaxException("NOT needs a clause");
+            return new Query.Not(clause);
+        }
+        return parsePrimary();
+    }
+
+    private Query parsePrimary() {
+        Tok tok = peek();
+        if (tok == null) return null;
+        pos++;
+
+        switch (tok.kind) {
+            case LPAREN: {
+                if (++depth > MAX_DEPTH) throw new QuerySyntaxException("Query is nested too deeply");
+                Query inner = parseOr();
+                if (!accept(Kind.RPAREN)) throw new QuerySyntaxException("Missing ')'");
+                depth--;
+                return inner;
+            }
+            case FIELD: {
+                Tok value = peek();
+                if (value == null || (value.kind != Kind.WORD && value.kind != Kind.PHRASE && value.kind != Kind.RANGE)) {
+                    throw new QuerySyntaxException("Missing value for " + tok.text + ":");
+                }
+                pos++;
+                return fieldQuery(tok.text, value);
+            }
+            case PHRASE:
+                return termsQuery(Tokenizer.terms(tok.text));
+            case WORD:
+                return wordQuery(tok.text);
+            case RANGE:
+                throw new QuerySyntaxException("Ranges are only supported for uploaded:");
+            default:
+                throw new QuerySyntaxException("Unexpected '" + tok.text + "'");
+        }
+    }
+
+    private Query wordQuery(String word) {
+        int tilde = word.lastIndexOf('~');
+        if (tilde > 0 && FUZZY_SUFFIX.matcher(word.substring(tilde)).matches()) {
+            int edits = tilde + 1 < word.length() ? Integer.parseInt(word.substring(tilde + 1)) : -1;
+            if (edits > MAX_EDITS) throw new QuerySyntaxException("Fuzzy terms allow at most " + MAX_EDITS + " edits");
+            return fuzzyQuery(Tokenizer.terms(word.substring(0, tilde)), edits);
+        }
+        if (!word.endsWith("*")) return fuzzyWords ? fuzzyQuery(Tokenizer.terms(word), -1) : termsQuery(Tokenizer.terms(word));
+
+        List<String> terms = Tokenizer.terms(word.substring(0, word.length() - 1));
+        if (terms.isEmpty()) throw new QuerySyntaxException("Prefix query needs at least one letter or digit");
+        Query prefix = new Query.Prefix(terms.get(terms.size() - 1), maxPrefixTerms);
+        if (terms.size() == 1) return prefix;
+        // "ab-c*" -> phrase "ab" followed by anything starting with "c" (approximated as AND)
+        return new Query.And(List.of(new Query.Terms(terms.subList(0, terms.size() - 1)), prefix));
+    }
+
+    // "ab-cd~" -> both terms fuzzy (approximated as AND, like prefixes); edits < 0 picks by term length
+    private Query fuzzyQuery(List<String> terms, int edits) {
+        List<Query> clauses = new ArrayList<>();
+        for (String term : terms) {
+            int maxEdits = edits >= 0 ? edits : term.length() < 3 ? 0 : term.length() < 6 ? 1 : 2;
+            clauses.add(maxEdits == 0 ? new Query.Terms(List.of(term)) : new Query.Fuzzy(term, maxEdits, maxFuzzyTerms));
+        }
+        if (clauses.isEmpty()) return null;
+        return clauses.size() == 1 ? clauses.get(0) : new Query.And(clauses);
+    }
+
+    private static Query termsQuery(List<String> terms) {
+        return terms.isEmpty() ? null : new Query.Terms(terms);
+    }
+
+    // ---------------------------------------------------------------------
+    // Field filters
+    // ---------------------------------------------------------------------
+
+    private static Query fieldQuery(String field, Tok value) {
+        if (value.kind == Kind.RANGE && !field.equals("uploaded")) {
+            throw new QuerySyntaxException("Ranges are only supported for uploaded:");
+        }
+        String text = value.text.toLowerCase(Locale.ROOT);
+
+        switch (field) {
+            case "filename": {
+                if (text.contains("*")) {
+                    Pattern glob = globPattern(text);
+                    return new Query.Field(field, m -> m.getFilename() != null
+                            && glob.matcher(m.getFilename().toLowerCase(Locale.ROOT)).matches());
+                }
+                return new Query.Field(field, m -> m.getFilename() != null
+                        && m.getFilename().toLowerCase(Locale.ROOT).contains(text));
+            }
+            case "owner":
+                return new Query.Field(field, m -> m.getOwnerName() != null && m.getOwnerName().equalsIgnoreCase(text));
+            case "mimeType":
+                return new Query.Field(field, m -> m.getMimeType() != null
+                        && m.getMimeType().toLowerCase(Locale.ROOT).contains(text));
+            default:
+                return uploadedQuery(value);
+        }
+    }
+
+    private static Query uploadedQuery(Tok value) {
+        long from;
+        long to;
+        if (value.kind == Kind.RANGE) {
+            String[] bounds = value.text.split("\\s+TO\\s+");
+            if (bounds.length != 2) throw new QuerySyntaxException("Range must look like [from TO to]");
+            from = bounds[0].equals("*") ? Long.MIN_VALUE : startOfDay(bounds[0]);
+            to = bounds[1].equals("*") ? Long.MAX_VALUE : startOfDay(bounds[1]) + 86_400_000L - 1;
+        } else {
+            from = startOfDay(value.text);
+            to = from + 86_400_000L - 1;
+        }
+        if (from > to) throw new QuerySyntaxException("Range start is after its end");
+        return new Query.Field("uploaded", m -> m.getUploadedAt() != 0 && m.getUploadedAt() >= from && m.getUploadedAt() <= to);
+    }
+
+    // Upload times are stored as LocalDateTime in the server's zone, so day bounds use it too
+    private static long startOfDay(String date) {
+        try {
+            return LocalDate.parse(date).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new QuerySyntaxException("Invalid date '" + date + "', expected yyyy-MM-dd");
+        }
+    }
+
+    private static Pattern globPattern(String glob) {
+        String[] parts = glob.split("\\*", -1);
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) regex.append(".*");
+            if (!parts[i].isEmpty()) regex.append(Pattern.quote(parts[i]));
+        }
+        return Pattern.compile(regex.toString());
+    }
+}
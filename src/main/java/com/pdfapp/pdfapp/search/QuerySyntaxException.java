@@ -0,0 +1,8 @@
+package com.pdfapp.pdfapp.search;
+
+public class QuerySyntaxException extends IllegalArgumentException {
+
+    public QuerySyntaxException(String message) {
+        super(message);
+    }
+}
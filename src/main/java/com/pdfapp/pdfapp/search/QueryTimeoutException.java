@@ -0,0 +1,9 @@
+package com.pdfapp.pdfapp.search;
+
+// A query ran past its time budget (e.g. a regex with catastrophic backtracking)
+public class QueryTimeoutException extends RuntimeException {
+
+    public QueryTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,194 @@
+package com.pdfapp.pdfapp.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Literal text that every match of a java.util.regex pattern must contain, for
+ * narrowing regex searches with the TrigramIndex. The analysis is deliberately
+ * shallow: top-level alternatives are split, and within each one only plain
+ * characters outside groups and classes count; anything it does not understand
+ * ends the current literal, so the result may be weaker than possible but is
+ * never wrong.
+ */
+public final class RegexLiterals {
+
+    private static final Pattern COMMENTS_FLAG = Pattern.compile("\\(\\?[a-zA-Z]*x");
+
+    private RegexLiterals() {}
+
+    /**
+     * One list per top-level alternative: a match of that alternative contains every
+     * literal in its list. Null when some alternative has no literal at all (or the
+     * pattern uses constructs that defeat the analysis), i.e. anything may match.
+     */
+    public static List<List<String>> required(String regex) {
+        if (regex.contains("\\Q") || COMMENTS_FLAG.matcher(regex).find()) return null; // quoting, comments mode
+
+        List<List<String>> alternatives = new ArrayList<>();
+        for (String alternative : splitTopLevel(regex)) {
+            List<String> literals = literals(alternative);
+            if (literals.isEmpty()) return null;
+            alternatives.add(literals);
+        }
+        return alternatives;
+    }
+
+    private static List<String> splitTopLevel(String regex) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        boolean inClass = false;
+        int start = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                if (c == ']') inClass = false;
+            } else if (c == '[') {
+                inClass = true;
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') i++; // literal ] first in class
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                parts.add(regex.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(regex.substring(start));
+        return parts;
+    }
+
+    private static List<String> literals(String regex) {
+        List<String> literals = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            int next = i + 1;
+            Character literal = null;
+
+            if (c == '\\' && next < regex.length()) {
+                char e = regex.charAt(next);
+                next++;
+                if (!Character.isLetterOrDigit(e)) literal = e; // \. \- \\ ...
+                else if (e == 't') literal = '\t';
+                else if (e == 'n') literal = '\n';
+                // \d \w \s \b, classes, code points and back-references are not literals
+                else next = skipEscapeArgument(regex, e, next);
+            } else if (c == '[') {
+                next = skipClass(regex, i);
+            } else if (c == '(') {
+                next = skipGroup(regex, i);
+            } else if ("^$.".indexOf(c) < 0 && "*+?{|)".indexOf(c) < 0) {
+                literal = c;
+            }
+
+            // A quantifier applies to the character (or construct) just read
+            if (next < regex.length() && "*?{+".indexOf(regex.charAt(next)) >= 0) {
+                char q = regex.charAt(next);
+                boolean optional = q == '*' || q == '?' || (q == '{' && minRepeat(regex, next) == 0);
+                next = skipQuantifier(regex, next);
+                if (literal != null && !optional) run.append(literal); // required at least once
+                flush(run, literals);
+            } else if (literal != null) {
+                run.append(literal);
+            } else {
+                flush(run, literals);
+            }
+            i = next;
+        }
+        flush(run, literals);
+        return literals;
+    }
+
+    private static void flush(StringBuilder run, List<String> literals) {
+        if (run.length() > 0) literals.add(run.toString());
+        run.setLength(0);
+    }
+
+    // Past whatever the escape letter takes after it: \p{L} \x{41} \x41 \u0041 \0101 \cA \k<name> \12
+    private static int skipEscapeArgument(String regex, char escape, int i) {
+        int end = switch (escape) {
+            case 'p', 'P', 'N', 'x' -> i < regex.length() && regex.charAt(i) == '{'
+                    ? regex.indexOf('}', i) + 1 : i + (escape == 'x' ? 2 : escape == 'N' ? 0 : 1);
+            case 'u' -> i + 4;
+            case 'c' -> i + 1;
+            case 'k' -> regex.indexOf('>', i) + 1;
+            case '0' -> {
+                int j = i;
+                while (j < regex.length() && j < i + 3 && regex.charAt(j) >= '0' && regex.charAt(j) <= '7') j++;
+                yield j;
+            }
+            default -> {
+                int j = i;
+                if (Character.isDigit(escape)) {
+                    while (j < regex.length() && Character.isDigit(regex.charAt(j))) j++;
+                }
+                yield j;
+            }
+        };
+        return end <= 0 ? regex.length() : Math.min(end, regex.length());
+    }
+
+    private static int skipClass(String regex, int open) {
+        int i = open + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') i++;
+        if (i < regex.length() && regex.charAt(i) == ']') i++;
+        int depth = 1;
+        while (i < regex.length() && depth > 0) {
+            char c = regex.charAt(i);
+            if (c == '\\') i++;
+            else if (c == '[') depth++;
+            else if (c == ']') depth--;
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipGroup(String regex, int open) {
+        int depth = 0;
+        int i = open;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                i = skipClass(regex, i);
+                continue;
+            }
+            if (c == '(') depth++;
+            else if (c == ')' && --depth == 0) return i + 1;
+            i++;
+        }
+        return i;
+    }
+
+    private static int minRepeat(String regex, int open) {
+        int i = open + 1;
+        int n = 0;
+        boolean digits = false;
+        while (i < regex.length() && Character.isDigit(regex.charAt(i))) {
+            n = n * 10 + (regex.charAt(i++) - '0');
+            digits = true;
+        }
+        return digits ? n : 0;
+    }
+
+    // Past the quantifier and its lazy/possessive suffix
+    private static int skipQuantifier(String regex, int i) {
+        if (regex.charAt(i) == '{') {
+            int close = regex.indexOf('}', i);
+            i = close < 0 ? regex.length() : close + 1;
+        } else {
+            i++;
+        }
+        if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) i++;
+        return i;
+    }
+}
@@ -0,0 +1,316 @@
+package com.pdfapp.pdfapp.search;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of document ids in the Roaring layout: ids are split into a high part
+ * (id >>> 16), kept in a sorted key array, and a 16-bit low part stored in that key's
+ * container. A container holds a sorted char[] while it has at most 4096 values and a
+ * 1024-word bitmap beyond that, so sparse and dense id ranges both stay compact, and
+ * intersections work container by container (array/array merge, array/bitmap probe,
+ * bitmap/bitmap word AND with popcount). Not thread-safe; FacetIndex guards its own.
+ */
+public class RoaringBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int GALLOP_RATIO = 64;
+
+    private long[] keys = new long[4];
+    private Container[] containers = new Container[4];
+    private int size;
+
+    public static RoaringBitmap of(DocIdSet ids) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int i = 0; i < ids.size(); i++) bitmap.add(ids.get(i)); // ascending, so every add appends
+        return bitmap;
+    }
+
+    public void add(long id) {
+        long key = id >>> 16;
+        int idx = indexOf(key);
+        if (idx < 0) {
+            idx = -idx - 1;
+            insertContainer(idx, key, new ArrayContainer());
+        }
+        containers[idx] = containers[idx].add((char) id);
+    }
+
+    public boolean remove(long id) {
+        int idx = indexOf(id >>> 16);
+        if (idx < 0) return false;
+        Container container = containers[idx];
+        int before = container.cardinality();
+        containers[idx] = container.remove((char) id);
+        boolean removed = containers[idx].cardinality() != before;
+        if (containers[idx].cardinality() == 0) removeContainer(idx);
+        return removed;
+    }
+
+    public boolean contains(long id) {
+        int idx = indexOf(id >>> 16);
+        return idx >= 0 && containers[idx].contains((char) id);
+    }
+
+    public int cardinality() {
+        int n = 0;
+        for (int i = 0; i < size; i++) n += containers[i].cardinality();
+        return n;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // |this AND other| without building the intersection; what facet counting needs
+    public int andCardinality(RoaringBitmap other) {
+        int n = 0;
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) i++;
+            else if (keys[i] > other.keys[j]) j++;
+            else n += containers[i++].andCardinality(other.containers[j++]);
+        }
+        return n;
+    }
+
+    /**
+     * Copy whose array containers of at least minCardinality values are bitmaps. Worth it for
+     * a set that is intersected with many others (facet counting): each intersection then
+     * probes the other side's values in O(1) instead of merging through this side again.
+     */
+    RoaringBitmap withBitmapContainers(int minCardinality) {
+        RoaringBitmap copy = new RoaringBitmap();
+        copy.keys = Arrays.copyOf(keys, Math.max(size, 1));
+        copy.containers = new Container[copy.keys.length];
+        copy.size = size;
+        for (int i = 0; i < size; i++) {
+            copy.containers[i] = containers[i] instanceof ArrayContainer array && array.cardinality >= minCardinality
+                    ? array.toBitmap() : containers[i];
+        }
+        return copy;
+    }
+
+    public DocIdSet toDocIdSet() {
+        long[] ids = new long[cardinality()];
+        int n = 0;
+        for (int i = 0; i < size; i++) n = containers[i].copyTo(keys[i] << 16, ids, n);
+        return new DocIdSet(ids);
+    }
+
+    // Bytes held by the containers, roughly; for the gauge and the benchmark
+    public long sizeInBytes() {
+        long bytes = 12L * keys.length;
+        for (int i = 0; i < size; i++) bytes += containers[i].sizeInBytes();
+        return bytes;
+    }
+
+    private int indexOf(long key) {
+        if (size > 0 && keys[size - 1] == key) return size - 1; // appends hit the last container
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertContainer(int idx, long key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, idx, keys, idx + 1, size - idx);
+        System.arraycopy(containers, idx, containers, idx + 1, size - idx);
+        keys[idx] = key;
+        containers[idx] = container;
+        size++;
+    }
+
+    private void removeContainer(int idx) {
+        System.arraycopy(keys, idx + 1, keys, idx, size - idx - 1);
+        System.arraycopy(containers, idx + 1, containers, idx, size - idx - 1);
+        containers[--size] = null;
+    }
+
+    // ---------------------------------------------------------------------
+    // Containers: the 16-bit low parts under one key
+    // ---------------------------------------------------------------------
+
+    private abstract static class Container {
+        // Both return the container to use from now on (it may switch representation)
+        abstract Container add(char value);
+        abstract Container remove(char value);
+        abstract boolean contains(char value);
+        abstract int cardinality();
+        abstract int andCardinality(Container other);
+        abstract int copyTo(long base, long[] out, int pos);
+        abstract long sizeInBytes();
+    }
+
+    private static final class ArrayContainer extends Container {
+        char[] values = new char[4];
+        int cardinality;
+
+        @Override
+        Container add(char value) {
+            int idx = cardinality > 0 && values[cardinality - 1] < value ? -cardinality - 1
+                    : Arrays.binarySearch(values, 0, cardinality, value);
+            if (idx >= 0) return this;
+            if (cardinality == ARRAY_MAX) return toBitmap().add(value);
+            idx = -idx - 1;
+            if (cardinality == values.length) values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            System.arraycopy(values, idx, values, idx + 1, cardinality - idx);
+            values[idx] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int idx = Arrays.binarySearch(values, 0, cardinality, value);
+            if (idx < 0) return this;
+            System.arraycopy(values, idx + 1, values, idx, cardinality - idx - 1);
+            cardinality--;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof BitmapContainer bitmap) {
+                int n = 0;
+                for (int i = 0; i < cardinality; i++) {
+                    if (bitmap.contains(values[i])) n++;
+                }
+                return n;
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            if (cardinality * GALLOP_RATIO < array.cardinality) return probe(this, array);
+            if (array.cardinality * GALLOP_RATIO < cardinality) return probe(array, this);
+            int n = 0;
+            int i = 0, j = 0;
+            while (i < cardinality && j < array.cardinality) {
+                if (values[i] < array.values[j]) i++;
+                else if (values[i] > array.values[j]) j++;
+                else {
+                    n++;
+                    i++;
+                    j++;
+                }
+            }
+            return n;
+        }
+
+        // Binary-searches each of the few values of small in large, narrowing the range as it goes
+        private static int probe(ArrayContainer small, ArrayContainer large) {
+            int n = 0;
+            int from = 0;
+            for (int i = 0; i < small.cardinality && from < large.cardinality; i++) {
+                int idx = Arrays.binarySearch(large.values, from, large.cardinality, small.values[i]);
+                if (idx >= 0) {
+                    n++;
+                    from = idx + 1;
+                } else {
+                    from = -idx - 1;
+                }
+            }
+            return n;
+        }
+
+        @Override
+        int copyTo(long base, long[] out, int pos) {
+            for (int i = 0; i < cardinality; i++) out[pos++] = base | values[i];
+            return pos;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 16 + 2L * values.length;
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) bitmap.add(values[i]);
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        final long[] words = new long[1024];
+        int cardinality;
+
+        @Override
+        Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) return this;
+            words[value >>> 6] &= ~bit;
+            cardinality--;
+            return cardinality <= ARRAY_MAX ? toArray() : this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) return other.andCardinality(this);
+            long[] otherWords = ((BitmapContainer) other).words;
+            int n = 0;
+            for (int i = 0; i < words.length; i++) n += Long.bitCount(words[i] & otherWords[i]);
+            return n;
+        }
+
+        @Override
+        int copyTo(long base, long[] out, int pos) {
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    out[pos++] = base | ((long) i << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return pos;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 16 + 8L * words.length;
+        }
+
+        ArrayContainer toArray() {
+            ArrayContainer array = new ArrayContainer();
+            array.values = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    array.values[n++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            array.cardinality = n;
+            return array;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.pdfapp.pdfapp.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds highlighted snippets around known hit offsets.
+ * Text is HTML-escaped and every token whose normalized form is one of the
+ * query terms is wrapped in &lt;mark&gt;.
+ */
+public final class SnippetBuilder {
+
+    private SnippetBuilder() {}
+
+    public interface TextWindowReader {
+        String read(long start, int length) throws IOException;
+    }
+
+    // Merges nearby offsets into windows of +/- context characters and highlights each window
+    public static List<String> build(int[] offsets, int context, int maxSnippets, Set<String> terms,
+                                     TextWindowReader reader) throws IOException {
+        List<String> snippets = new ArrayList<>();
+        int i = 0;
+        while (i < offsets.length && snippets.size() < maxSnippets) {
+            long start = Math.max(0, offsets[i] - context);
+            long end = offsets[i] + context;
+            while (i + 1 < offsets.length && offsets[i + 1] - context <= end) {
+                end = offsets[++i] + context;
+            }
+            i++;
+
+            String window = reader.read(start, (int) (end - start));
+            if (!window.isBlank()) snippets.add(highlight(trimToWords(window, start > 0), terms));
+        }
+        return snippets;
+    }
+
+    // Drops the partial words cut off at the window edges
+    private static String trimToWords(String window, boolean cutAtStart) {
+        int from = 0;
+        if (cutAtStart) {
+            while (from < window.length() && Character.isLetterOrDigit(window.charAt(from))) from++;
+        }
+        int to = window.length();
+        while (to > from && Character.isLetterOrDigit(window.charAt(to - 1))) to--;
+        if (to <= from) return window.strip();
+        return window.substring(from, to).replaceAll("\\s+", " ").strip();
+    }
+
+    public static String highlight(String text, Set<String> terms) {
+        StringBuilder sb = new StringBuilder(text.length() + 32);
+        int last = 0;
+        for (Token token : Tokenizer.tokenize(text)) {
+            int end = token.getOffset() + token.getTerm().length();
+            if (!terms.contains(token.getTerm()) || end > text.length()) continue;
+            escape(text, last, token.getOffset(), sb);
+            sb.append("<mark>");
+            escape(text, token.getOffset(), end, sb);
+            sb.append("</mark>");
+            last = end;
+        }
+        escape(text, last, text.length(), sb);
+        return sb.toString();
+    }
+
+    private static void escape(String text, int from, int to, StringBuilder sb) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> sb.append("&lt;");
+                case '>' -> sb.append("&gt;");
+                case '&' -> sb.append("&amp;");
+                case '"' -> sb.append("&quot;");
+                default -> sb.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.pdfapp.pdfapp.search;
+
+import com.pdfapp.pdfapp.extract.TextSink;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tokenizer.tokenize() and TrigramIndex.trigrams() for a text that arrives in pieces, so
+ * it can be indexed without ever being held whole. The results are identical to running
+ * both over the concatenated text; trigram keys are deduplicated as they pile up, so they
+ * take memory in proportion to the distinct trigrams rather than the text length.
+ */
+public class TextAnalyzer implements TextSink {
+
+    private final List<Token> tokens = new ArrayList<>();
+    private final StringBuilder term = new StringBuilder(Tokenizer.MAX_TERM_LENGTH);
+    private boolean inTerm;
+    private int termStart;
+    private int offset;
+
+    private long[] keys = new long[1024];
+    private int keyCount;
+    private int distinctCount; // keys[0, distinctCount) are sorted and distinct
+    private int seen; // characters folded into a and b so far, capped at 2
+    private char a;
+    private char b;
+
+    @Override
+    public void startPage() {
+    }
+
+    @Override
+    public void append(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (!inTerm) {
+                    inTerm = true;
+                    termStart = offset;
+                }
+                if (term.length() < Tokenizer.MAX_TERM_LENGTH) term.append(Character.toLowerCase(c));
+            } else if (inTerm) {
+                endTerm();
+            }
+            offset++;
+
+            char folded = Character.toLowerCase(c);
+            if (seen == 2) {
+                if (keyCount == keys.length) compactKeys();
+                keys[keyCount++] = TrigramIndex.key(a, b, folded);
+            } else {
+                seen++;
+            }
+            a = b;
+            b = folded;
+        }
+    }
+
+    private void endTerm() {
+        tokens.add(new Token(term.toString(), tokens.size(), termStart));
+        term.setLength(0);
+        inTerm = false;
+    }
+
+    // Sorts and dedupes the keys, growing the buffer only when most of them are distinct
+    private void compactKeys() {
+        Arrays.sort(keys, 0, keyCount);
+        int distinct = 0;
+        for (int i = 0; i < keyCount; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) keys[distinct++] = keys[i];
+        }
+        keyCount = distinct;
+        distinctCount = distinct;
+        if (keyCount > keys.length / 2) keys = Arrays.copyOf(keys, keys.length * 2);
+    }
+
+    public List<Token> tokens() {
+        if (inTerm) endTerm();
+        return tokens;
+    }
+
+    // Distinct trigrams of the folded text, ascending
+    public long[] trigrams() {
+        if (keyCount > distinctCount) compactKeys();
+        return Arrays.copyOf(keys, keyCount);
+    }
+}
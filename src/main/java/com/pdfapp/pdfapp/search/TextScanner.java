@@ -0,0 +1,77 @@
+package com.pdfapp.pdfapp.search;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Case-insensitive substring scan over a character stream.
+ * Only a sliding window (chunk + snippet context) is held in memory, and the scan
+ * stops as soon as the listener has seen enough hits.
+ */
+public class TextScanner {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    public interface HitListener {
+        // Return false to stop scanning
+        boolean onHit(long offset, String snippet);
+    }
+
+    private final int contextChars;
+
+    public TextScanner(int contextChars) {
+        this.contextChars = contextChars;
+    }
+
+    public void scan(Reader reader, String keyword, HitListener listener) throws IOException {
+        String needle = lowerCase(keyword);
+        if (needle.isEmpty()) return;
+
+        StringBuilder window = new StringBuilder();
+        StringBuilder lower = new StringBuilder();
+        long windowStart = 0;
+        int searchFrom = 0;
+        char[] chunk = new char[CHUNK_SIZE];
+        boolean eof = false;
+
+        while (!eof) {
+            int read = reader.read(chunk);
+            if (read < 0) {
+                eof = true;
+            } else {
+                window.append(chunk, 0, read);
+                for (int i = 0; i < read; i++) lower.append(Character.toLowerCase(chunk[i]));
+            }
+
+            // Matches starting before this point have their full right-hand context loaded
+            int confirmedUpTo = eof ? window.length() : window.length() - needle.length() - contextChars;
+            int idx;
+            while ((idx = lower.indexOf(needle, searchFrom)) >= 0 && idx < confirmedUpTo) {
+                if (!listener.onHit(windowStart + idx, snippet(window, idx, needle.length()))) return;
+                searchFrom = idx + needle.length();
+            }
+            searchFrom = Math.max(searchFrom, Math.max(0, confirmedUpTo));
+
+            // Keep only what future matches may need as left-hand context
+            int drop = Math.max(0, searchFrom - contextChars);
+            if (drop > 0) {
+                window.delete(0, drop);
+                lower.delete(0, drop);
+                windowStart += drop;
+                searchFrom -= drop;
+            }
+        }
+    }
+
+    private String snippet(CharSequence window, int idx, int length) {
+        int from = Math.max(0, idx - contextChars);
+        int to = Math.min(window.length(), idx + length + contextChars);
+        return window.subSequence(from, to).toString().replaceAll("\\s+", " ").trim();
+    }
+
+    private static String lowerCase(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) sb.append(Character.toLowerCase(s.charAt(i)));
+        return sb.toString();
+    }
+}
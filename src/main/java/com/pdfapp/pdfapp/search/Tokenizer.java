@@ -0,0 +1,45 @@
+package com.pdfapp.pdfapp.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Splits text into lowercase letter/digit runs; used for both indexing and queries
+public final class Tokenizer {
+
+    public static final int MAX_TERM_LENGTH = 64;
+
+    private Tokenizer() {}
+
+    public static List<Token> tokenize(CharSequence text) {
+        List<Token> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+
+        int length = text.length();
+        int position = 0;
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) i++;
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) i++;
+            if (i > start) {
+                int end = Math.min(i, start + MAX_TERM_LENGTH);
+                tokens.add(new Token(normalize(text.subSequence(start, end)), position++, start));
+            }
+        }
+        return tokens;
+    }
+
+    public static List<String> terms(CharSequence text) {
+        List<String> terms = new ArrayList<>();
+        for (Token token : tokenize(text)) terms.add(token.getTerm());
+        return terms;
+    }
+
+    public static String normalize(CharSequence term) {
+        StringBuilder sb = new StringBuilder(term.length());
+        for (int i = 0; i < term.length(); i++) {
+            sb.append(Character.toLowerCase(term.charAt(i)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,392 @@
+package com.pdfapp.pdfapp.search;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Trigram -> document index over the raw extracted text, for substring and regex
+ * search. A document containing "ab-1234-x" has the trigrams "ab-", "b-1", "-12", ...,
+ * so any document containing a literal contains all of the literal's trigrams:
+ * intersecting their posting lists gives a candidate set with no false negatives,
+ * which the caller then verifies with an exact scan.
+ * Characters are folded with Character.toLowerCase one at a time, like TextScanner.
+ * Posting lists and each document's trigram list are delta-varint encoded. Removed
+ * documents are only tombstoned (filtered out of results) until purge() drops them
+ * from the posting lists they appear in.
+ */
+public class TrigramIndex {
+
+    private static final int SNAPSHOT_MAGIC = 0x50445447; // "PDTG"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final Map<Long, IdList> postings = new HashMap<>();
+    private final Map<Long, byte[]> docs = new HashMap<>();       // doc id -> its encoded trigrams
+    private final Map<Long, byte[]> tombstones = new HashMap<>(); // removed, still in postings
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Three UTF-16 units packed into the low 48 bits
+    static long key(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    // Distinct trigrams of the folded text, ascending
+    public static long[] trigrams(CharSequence text) {
+        int n = text.length() - 2;
+        if (n <= 0) return new long[0];
+        long[] keys = new long[n];
+        char a = Character.toLowerCase(text.charAt(0));
+        char b = Character.toLowerCase(text.charAt(1));
+        for (int i = 0; i < n; i++) {
+            char c = Character.toLowerCase(text.charAt(i + 2));
+            keys[i] = key(a, b, c);
+            a = b;
+            b = c;
+        }
+        Arrays.sort(keys);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) keys[distinct++] = keys[i];
+        }
+        return Arrays.copyOf(keys, distinct);
+    }
+
+    // ✅ Add (or replace) a document
+    public void add(long docId, CharSequence text) {
+        add(docId, trigrams(text));
+    }
+
+    // keys as returned by trigrams(); lets callers do that part outside their own locks
+    public void add(long docId, long[] keys) {
+        put(docId, encode(keys), keys);
+    }
+
+    // ✅ Index a document with identical content under a new id
+    public boolean copy(long fromDocId, long toDocId) {
+        byte[] encoded;
+        lock.readLock().lock();
+        try {
+            encoded = docs.get(fromDocId);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (encoded == null) return false;
+        put(toDocId, encoded, decode(encoded));
+        return true;
+    }
+
+    private void put(long docId, byte[] encoded, long[] keys) {
+        lock.writeLock().lock();
+        try {
+            // Replacing: the old postings must go now, the id is about to be live again
+            byte[] old = docs.remove(docId);
+            if (old == null) old = tombstones.remove(docId);
+            if (old != null) {
+                for (long key : decode(old)) {
+                    IdList list = postings.get(key);
+                    if (list != null && list.remove(docId) && list.count == 0) postings.remove(key);
+                }
+            }
+            for (long key : keys) postings.computeIfAbsent(key, k -> new IdList()).add(docId);
+            docs.put(docId, encoded);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(long docId) {
+        lock.writeLock().lock();
+        try {
+            byte[] encoded = docs.remove(docId);
+            if (encoded == null) return false;
+            tombstones.put(docId, encoded);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Drops tombstoned documents from the posting lists of their trigrams, rewriting each list once
+    public void purge() {
+        lock.writeLock().lock();
+        try {
+            if (tombstones.isEmpty()) return;
+            Set<Long> affected = new HashSet<>();
+            for (byte[] encoded : tombstones.values()) {
+                for (long key : decode(encoded)) affected.add(key);
+            }
+            for (long key : affected) {
+                IdList list = postings.get(key);
+                if (list == null) continue;
+                list.removeAll(tombstones.keySet());
+                if (list.count == 0) postings.remove(key);
+            }
+            tombstones.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Documents that may contain every one of the literals (case-insensitively),
+     * or null when none of them is long enough to have a trigram, meaning any
+     * document may match. Posting lists are intersected smallest first.
+     */
+    public DocIdSet candidates(Collection<String> literals) {
+        Set<Long> keys = new HashSet<>();
+        for (String literal : literals) {
+            for (long key : trigrams(literal)) keys.add(key);
+        }
+        if (keys.isEmpty()) return null;
+
+        lock.readLock().lock();
+        try {
+            List<IdList> lists = new ArrayList<>(keys.size());
+            for (long key : keys) {
+                IdList list = postings.get(key);
+                if (list == null) return DocIdSet.EMPTY;
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(list -> list.count));
+
+            DocIdSet result = lists.get(0).toDocIdSet();
+            for (int i = 1; i < lists.size() && !result.isEmpty(); i++) result = result.and(lists.get(i).toDocIdSet());
+            return tombstones.isEmpty() ? result : result.andNot(DocIdSet.fromUnsorted(
+                    tombstones.keySet().stream().mapToLong(Long::longValue).toArray()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(long docId) {
+        lock.readLock().lock();
+        try {
+            return docs.containsKey(docId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public DocIdSet allDocs() {
+        lock.readLock().lock();
+        try {
+            return DocIdSet.fromUnsorted(docs.keySet().stream().mapToLong(Long::longValue).toArray());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int documentCount() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int trigramCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Encoding
+    // ---------------------------------------------------------------------
+
+    // Ascending ids as varint deltas; appends are the common case (new ids are the largest)
+    private static class IdList {
+        byte[] data = new byte[4];
+        int size;
+        int count;
+        long last = -1;
+
+        void add(long id) {
+            if (id > last) {
+                append(id);
+                return;
+            }
+            long[] ids = toArray();
+            int idx = Arrays.binarySearch(ids, id);
+            if (idx >= 0) return;
+            int at = -idx - 1;
+            long[] grown = new long[ids.length + 1];
+            System.arraycopy(ids, 0, grown, 0, at);
+            grown[at] = id;
+            System.arraycopy(ids, at, grown, at + 1, ids.length - at);
+            rewrite(grown, grown.length);
+        }
+
+        boolean remove(long id) {
+            long[] ids = toArray();
+            int idx = Arrays.binarySearch(ids, id);
+            if (idx < 0) return false;
+            System.arraycopy(ids, idx + 1, ids, idx, ids.length - idx - 1);
+            rewrite(ids, ids.length - 1);
+            return true;
+        }
+
+        void removeAll(Set<Long> removed) {
+            long[] ids = toArray();
+            int n = 0;
+            for (long id : ids) {
+                if (!removed.contains(id)) ids[n++] = id;
+            }
+            if (n != ids.length) rewrite(ids, n);
+        }
+
+        private void rewrite(long[] ids, int n) {
+            data = new byte[Math.max(4, n * 2)];
+            size = 0;
+            count = 0;
+            last = -1;
+            for (int i = 0; i < n; i++) append(ids[i]);
+        }
+
+        private void append(long id) {
+            if (size + 10 > data.length) data = Arrays.copyOf(data, data.length * 2);
+            size = writeVarLong(data, size, last < 0 ? id : id - last);
+            last = id;
+            count++;
+        }
+
+        long[] toArray() {
+            long[] ids = new long[count];
+            long value = 0;
+            int pos = 0;
+            for (int i = 0; i < count; i++) {
+                long delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[pos++];
+                    delta |= (long) (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                value = i == 0 ? delta : value + delta;
+                ids[i] = value;
+            }
+            return ids;
+        }
+
+        DocIdSet toDocIdSet() {
+            return new DocIdSet(toArray());
+        }
+    }
+
+    private static int writeVarLong(byte[] buf, int pos, long value) {
+        while ((value & ~0x7fL) != 0) {
+            buf[pos++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+        return pos;
+    }
+
+    // Count followed by the ascending keys as varint deltas
+    static byte[] encode(long[] keys) {
+        byte[] buf = new byte[5 + keys.length * 7];
+        int pos = writeVarLong(buf, 0, keys.length);
+        long previous = 0;
+        for (long key : keys) {
+            pos = writeVarLong(buf, pos, key - previous);
+            previous = key;
+        }
+        return Arrays.copyOf(buf, pos);
+    }
+
+    static long[] decode(byte[] encoded) {
+        int[] pos = {0};
+        long[] keys = new long[(int) readVarLong(encoded, pos)];
+        long previous = 0;
+        for (int i = 0; i < keys.length; i++) {
+            previous += readVarLong(encoded, pos);
+            keys[i] = previous;
+        }
+        return keys;
+    }
+
+    private static long readVarLong(byte[] buf, int[] pos) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf[pos[0]++];
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    // ---------------------------------------------------------------------
+    // Serialization: document-major, the posting lists are rebuilt on load
+    // ---------------------------------------------------------------------
+
+    // Writes one document's trigrams; used for journal records
+    public boolean writeDocument(long docId, DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            byte[] encoded = docs.get(docId);
+            if (encoded == null) return false;
+            out.writeInt(encoded.length);
+            out.write(encoded);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void readDocument(long docId, DataInputStream in) throws IOException {
+        byte[] encoded = new byte[in.readInt()];
+        in.readFully(encoded);
+        put(docId, encoded, decode(encoded));
+    }
+
+    public void writeSnapshot(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(docs.size());
+            for (Map.Entry<Long, byte[]> entry : docs.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static TrigramIndex readSnapshot(DataInputStream in) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC) throw new IOException("Not a trigram snapshot");
+        int version = in.readInt();
+        if (version != SNAPSHOT_VERSION) throw new IOException("Unsupported trigram snapshot version " + version);
+
+        TreeMap<Long, byte[]> byId = new TreeMap<>();
+        int docCount = in.readInt();
+        for (int i = 0; i < docCount; i++) {
+            long docId = in.readLong();
+            byte[] encoded = new byte[in.readInt()];
+            in.readFully(encoded);
+            byId.put(docId, encoded);
+        }
+
+        // Ascending ids, so every posting list is built by appends
+        TrigramIndex index = new TrigramIndex();
+        for (Map.Entry<Long, byte[]> entry : byId.entrySet()) {
+            for (long key : decode(entry.getValue())) {
+                index.postings.computeIfAbsent(key, k -> new IdList()).append(entry.getKey());
+            }
+            index.docs.put(entry.getKey(), entry.getValue());
+        }
+        return index;
+    }
+}
@@ -4,6 +4,8 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -18,6 +20,8 @@ import java.util.List;
 @Component
 public class JwtFilter extends OncePerRequestFilter {
 
+    private static final Logger log = LoggerFactory.getLogger(JwtFilter.class);
+
     private final JwtUtil jwtUtil;
 
     // Public endpoints that don’t need authentication
@@ -45,33 +49,31 @@ public class JwtFilter extends OncePerRequestFilter {
         }
 
         final String authHeader = request.getHeader("Authorization");
-        String username = null;
-        String jwt = null;
+        JwtUtil.VerifiedToken token = null;
 
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            jwt = authHeader.substring(7);
             try {
-                username = jwtUtil.extractUsername(jwt);
+                // ✅ one verification per request (or none, when the token is cached)
+                token = jwtUtil.verify(authHeader.substring(7));
             } catch (Exception e) {
-                System.out.println("Invalid JWT: " + e.getMessage());
+                log.debug("Invalid JWT: {}", e.getMessage());
             }
         }
 
-        // Validate and set authentication
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            String role = jwtUtil.extractRole(jwt); // ✅ extract role from token
+        // Set authentication from the verified claims
+        if (token != null && token.getUsername() != null
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            String role = token.getRole() != null ? token.getRole() : "USER";
 
-            if (jwtUtil.validateToken(jwt, username)) {
-                // ✅ set authority based on JWT role
-                SimpleGrantedAuthority authority =
-                        new SimpleGrantedAuthority("ROLE_" + role.toUpperCase());
-                UsernamePasswordAuthenticationToken authToken =
-                        new UsernamePasswordAuthenticationToken(
-                                username, null, Collections.singleton(authority));
+            // ✅ set authority based on JWT role
+            SimpleGrantedAuthority authority =
+                    new SimpleGrantedAuthority("ROLE_" + role.toUpperCase());
+            UsernamePasswordAuthenticationToken authToken =
+                    new UsernamePasswordAuthenticationToken(
+                            token.getUsername(), null, Collections.singleton(authority));
 
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(authToken);
-            }
+            authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            SecurityContextHolder.getContext().setAuthentication(authToken);
         }
 
         filterChain.doFilter(request, response);
@@ -1,14 +1,25 @@
 package com.pdfapp.pdfapp.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 @Component
 public class JwtUtil {
@@ -18,16 +29,105 @@ public class JwtUtil {
             SignatureAlgorithm.HS256.getJcaName());
     private final long EXPIRATION = 1000 * 60 * 60 * 10;
 
+    // Wall-clock millis; a fake one in tests drives token expiry and cache expiry alike
+    private final LongSupplier clock;
+
+    // Built once; jjwt parsers are immutable and thread-safe
+    private final JwtParser parser;
+
+    // Tokens whose signature was already verified, keyed by SHA-256 of the token;
+    // each entry expires with its token, and the size bound is enforced by Caffeine
+    private Cache<String, VerifiedToken> verifiedTokens;
+
+    @Value("${jwt.cache.max-entries:10000}")
+    private long cacheMaxEntries = 10000;
+
+    public JwtUtil() {
+        this(System::currentTimeMillis);
+    }
+
+    JwtUtil(LongSupplier clock) {
+        this.clock = clock;
+        this.parser = Jwts.parserBuilder().setSigningKey(SECRET_KEY).setClock(() -> new Date(clock.getAsLong())).build();
+    }
+
+    @PostConstruct
+    public void init() {
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheMaxEntries)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, token.expiresAtMillis - clock.getAsLong()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, token, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.getAsLong()))
+                .build();
+    }
+
+    // ✅ The parts of a verified token the security filter needs
+    public static class VerifiedToken {
+        private final String username;
+        private final String role;
+        private final long expiresAtMillis;
+
+        public VerifiedToken(String username, String role, long expiresAtMillis) {
+            this.username = username;
+            this.role = role;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public String getUsername() { return username; }
+        public String getRole() { return role; }
+        public long getExpiresAtMillis() { return expiresAtMillis; }
+    }
+
     public String generateToken(String username, String role) {
         return Jwts.builder()
                 .setSubject(username)
                 .claim("role", role)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION))
+                .setIssuedAt(new Date(clock.getAsLong()))
+                .setExpiration(new Date(clock.getAsLong() + EXPIRATION))
                 .signWith(SECRET_KEY)
                 .compact();
     }
 
+    /**
+     * Verifies a token and returns its subject and role. A hit in the verified-token
+     * cache skips signature verification and JSON parsing entirely; entries are
+     * dropped once their token expires. Throws JwtException for invalid or expired tokens.
+     */
+    public VerifiedToken verify(String token) {
+        String key = cacheKey(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(key);
+        if (cached != null) return cached;
+
+        // parseClaimsJws checks signature and expiry in a single pass
+        Claims claims = extractAllClaims(token);
+        Date expiration = claims.getExpiration();
+        VerifiedToken verified = new VerifiedToken(claims.getSubject(), claims.get("role", String.class),
+                expiration != null ? expiration.getTime() : clock.getAsLong());
+
+        if (expiration != null) verifiedTokens.put(key, verified);
+        return verified;
+    }
+
+    // Entries currently cached (for tests; expired ones may linger until Caffeine's next maintenance)
+    long cachedTokens() {
+        verifiedTokens.cleanUp();
+        return verifiedTokens.estimatedSize();
+    }
+
     public String extractUsername(String token) {
         return extractAllClaims(token).getSubject();
     }
@@ -37,18 +137,25 @@ public class JwtUtil {
     }
 
     public boolean validateToken(String token, String username) {
-        return extractUsername(token).equals(username) && !isTokenExpired(token);
+        Claims claims = extractAllClaims(token);
+        return claims.getSubject().equals(username) && !claims.getExpiration().before(new Date(clock.getAsLong()));
+    }
+
+    private Claims extractAllClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractAllClaims(token).getExpiration().before(new Date());
+    // Package-private so the benchmarks can reproduce the per-call parser construction
+    Key getSigningKey() {
+        return SECRET_KEY;
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(SECRET_KEY)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    private static String cacheKey(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 }
@@ -0,0 +1,394 @@
+package com.pdfapp.pdfapp.service;
+
+import com.pdfapp.pdfapp.dto.BatchFileResultDTO;
+import com.pdfapp.pdfapp.dto.BatchUploadReportDTO;
+import com.pdfapp.pdfapp.dto.DocumentDTO;
+import com.pdfapp.pdfapp.extract.ExtractionLimits;
+import com.pdfapp.pdfapp.extract.Extractor;
+import com.pdfapp.pdfapp.model.Document;
+import com.pdfapp.pdfapp.model.DocumentStatus;
+import com.pdfapp.pdfapp.model.User;
+import com.pdfapp.pdfapp.repository.DocumentRepository;
+import com.pdfapp.pdfapp.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Ingests many files in one request (multipart files or a ZIP stream).
+ * Files are stored content-addressed as they arrive, all Document rows are then
+ * inserted with one saveAll (JDBC-batched thanks to sequence ids), and extraction
+ * runs in parallel on the extraction service's batch pool. Every input file gets
+ * an entry in the returned report. A ZIP is bounded three ways: its compressed size,
+ * each entry's size (the largest file any extractor accepts) and the total it expands to.
+ */
+@Service
+public class BatchUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchUploadService.class);
+
+    private final DocumentRepository documentRepository;
+    private final UserRepository userRepository;
+    private final FileStorageService fileStorageService;
+    private final TextStoreService textStoreService;
+    private final SearchIndexService searchIndexService;
+    private final ExtractionJobService extractionJobService;
+    private final ExtractionService extractionService;
+
+    @Value("${batch.max-files:1000}")
+    private int maxFiles;
+
+    // Compressed size of a ZIP upload (0 = unlimited)
+    @Value("${batch.max-archive-bytes:524288000}")
+    private long maxArchiveBytes;
+
+    // Everything one ZIP may expand to, entries that are skipped included (0 = unlimited)
+    @Value("${batch.max-total-bytes:2147483648}")
+    private long maxTotalBytes;
+
+    public BatchUploadService(DocumentRepository documentRepository, UserRepository userRepository,
+                              FileStorageService fileStorageService, TextStoreService textStoreService,
+                              SearchIndexService searchIndexService, ExtractionJobService extractionJobService,
+                              ExtractionService extractionService) {
+        this.documentRepository = documentRepository;
+        this.userRepository = userRepository;
+        this.fileStorageService = fileStorageService;
+        this.textStoreService = textStoreService;
+        this.searchIndexService = searchIndexService;
+        this.extractionJobService = extractionJobService;
+        this.extractionService = extractionService;
+    }
+
+    // A ZIP over its compressed or expanded size limit; nothing from it is kept
+    public static class ArchiveTooLargeException extends IOException {
+        public ArchiveTooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    // One input file on its way through the batch
+    private static class Item {
+        final String filename;
+        final String claimedType; // the client's label, if it gave one
+        String mimeType;
+        FileStorageService.StoredFile stored;
+        Document doc;
+        Document twin; // already extracted document with the same content
+        String outcome;
+        String error;
+
+        Item(String filename, String claimedType) {
+            this.filename = filename;
+            this.claimedType = claimedType;
+        }
+
+        void fail(String outcome, String error) {
+            this.outcome = outcome;
+            this.error = error;
+        }
+    }
+
+    public BatchUploadReportDTO ingestFiles(List<MultipartFile> files, Long ownerId, boolean wait) {
+        List<Item> items = new ArrayList<>();
+        for (MultipartFile file : files) {
+            Item item = new Item(file.getOriginalFilename(), file.getContentType());
+            items.add(item);
+
+            if (items.size() > maxFiles) {
+                item.fail("SKIPPED", "Batch limit of " + maxFiles + " files reached");
+            } else if (file.isEmpty()) {
+                item.fail("FAILED", "Empty file");
+            } else {
+                try {
+                    item.stored = fileStorageService.store(file);
+                    detect(item);
+                } catch (IOException e) {
+                    item.fail("FAILED", "Could not store file: " + e.getMessage());
+                }
+            }
+        }
+        return ingest(items, ownerId, wait);
+    }
+
+    // Reads the archive entry by entry; nothing is buffered beyond the file being stored.
+    // Throws ArchiveTooLargeException once the archive or its expanded content goes over its limit.
+    public BatchUploadReportDTO ingestZip(InputStream archive, Long ownerId, boolean wait) throws IOException {
+        long maxEntryBytes = maxEntryBytes();
+        List<Item> items = new ArrayList<>();
+        LimitedInputStream compressed = new LimitedInputStream(archive, maxArchiveBytes);
+        LimitedInputStream expanded = null;
+        try (ZipInputStream zip = new ZipInputStream(compressed)) {
+            expanded = new LimitedInputStream(zip, maxTotalBytes);
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                String filename = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+                if (entry.isDirectory() || name.startsWith("__MACOSX/") || filename.isEmpty() || filename.startsWith(".")) {
+                    expanded.transferTo(OutputStream.nullOutputStream());
+                    continue;
+                }
+
+                Item item = new Item(filename, null); // ZIP entries carry no content type
+                items.add(item);
+                if (items.size() > maxFiles) {
+                    item.fail("SKIPPED", "Batch limit of " + maxFiles + " files reached");
+                    expanded.transferTo(OutputStream.nullOutputStream());
+                    continue;
+                }
+
+                LimitedInputStream content = new LimitedInputStream(expanded, maxEntryBytes);
+                try {
+                    item.stored = fileStorageService.store(content);
+                } catch (IOException e) {
+                    if (compressed.exceeded() || expanded.exceeded()) throw e;
+                    if (content.exceeded()) {
+                        item.fail("FAILED", "File exceeds the " + maxEntryBytes + " byte limit");
+                        expanded.transferTo(OutputStream.nullOutputStream()); // the rest still counts towards the total
+                    } else {
+                        item.fail("FAILED", "Could not store file: " + e.getMessage());
+                    }
+                    continue;
+                }
+                if (item.stored.getSize() == 0) {
+                    item.fail("FAILED", "Empty file");
+                    releaseIfUnreferenced(item.stored);
+                    item.stored = null;
+                } else {
+                    detect(item);
+                }
+            }
+        } catch (IOException e) {
+            for (Item item : items) {
+                if (item.stored != null) releaseIfUnreferenced(item.stored);
+            }
+            if (compressed.exceeded()) throw new ArchiveTooLargeException("Archive is larger than " + maxArchiveBytes + " bytes");
+            if (expanded != null && expanded.exceeded()) {
+                throw new ArchiveTooLargeException("Archive expands to more than " + maxTotalBytes + " bytes");
+            }
+            throw e;
+        }
+        return ingest(items, ownerId, wait);
+    }
+
+    // The format is decided by the stored bytes, as for single uploads; unsupported or
+    // over-limit files fail on their own and their blob is released
+    private void detect(Item item) throws IOException {
+        String error = null;
+        try {
+            Extractor extractor = extractionService.detect(item.stored.getPath());
+            if (extractor == null) {
+                error = "Unsupported file format";
+            } else {
+                ExtractionLimits limits = extractionService.getLimits(extractor.name());
+                if (limits.maxBytes() > 0 && item.stored.getSize() > limits.maxBytes()) {
+                    error = "File exceeds the " + limits.maxBytes() + " byte limit for " + extractor.name() + " files";
+                } else {
+                    item.mimeType = extractionService.contentType(extractor, item.claimedType);
+                }
+            }
+        } catch (IOException e) {
+            error = "Could not read file: " + e.getMessage();
+        }
+        if (error != null) {
+            item.fail("FAILED", error);
+            releaseIfUnreferenced(item.stored);
+            item.stored = null;
+        }
+    }
+
+    // The largest file any extractor accepts, or 0 when one of them takes files of any size
+    private long maxEntryBytes() {
+        long max = 0;
+        for (Extractor extractor : extractionService.getRegistry().all()) {
+            long limit = extractionService.getLimits(extractor.name()).maxBytes();
+            if (limit <= 0) return 0;
+            max = Math.max(max, limit);
+        }
+        return max;
+    }
+
+    private BatchUploadReportDTO ingest(List<Item> items, Long ownerId, boolean wait) {
+        User owner = ownerId != null ? userRepository.findById(ownerId).orElse(null) : null;
+
+        List<Item> stored = items.stream().filter(i -> i.stored != null).toList();
+        List<String> hashes = stored.stream().map(i -> i.stored.getSha256()).distinct().toList();
+
+        // Primary: first copy of new content, extracted straight away. Follower: same content as a
+        // primary earlier in this batch; extracted afterwards, which then reuses the primary's text.
+        List<Long> primaries = new ArrayList<>();
+        List<Long> followers = new ArrayList<>();
+        if (stored.isEmpty()) return report(items);
+
+        try {
+            fileStorageService.withLocks(hashes, () -> {
+                Map<String, Document> twins = new HashMap<>();
+                for (Document twin : documentRepository.findReadyByContentHashIn(hashes)) {
+                    if (textStoreService.exists(twin.getTextFilePath())) twins.putIfAbsent(twin.getContentHash(), twin);
+                }
+
+                List<Document> rows = new ArrayList<>();
+                for (Item item : stored) {
+                    String hash = item.stored.getSha256();
+                    if (!Files.exists(item.stored.getPath())) {
+                        item.fail("FAILED", "File was removed by a concurrent delete, please retry");
+                        continue;
+                    }
+
+                    Document doc = new Document();
+                    doc.setFilename(item.filename);
+                    doc.setMimeType(item.mimeType);
+                    doc.setContentHash(hash);
+                    doc.setOwner(owner);
+                    doc.setPdfFilePath(item.stored.getPath().toString());
+
+                    Document twin = twins.get(hash);
+                    item.twin = twin;
+                    if (twin != null) {
+                        doc.setTextFilePath(twin.getTextFilePath());
+                        doc.setStatus(DocumentStatus.READY);
+                        item.outcome = "DUPLICATE";
+                    } else {
+                        doc.setTextFilePath(fileStorageService.textRef(hash));
+                        doc.setStatus(DocumentStatus.PENDING);
+                        item.outcome = "CREATED";
+                    }
+                    item.doc = doc;
+                    rows.add(doc);
+                }
+                documentRepository.saveAll(rows);
+
+                Set<String> seen = new HashSet<>();
+                for (Item item : stored) {
+                    if (item.doc == null || item.twin != null) continue;
+                    if (seen.add(item.doc.getContentHash())) primaries.add(item.doc.getId());
+                    else followers.add(item.doc.getId());
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Batch upload failed while saving documents", e);
+            for (Item item : stored) {
+                if (item.doc != null && item.doc.getId() != null) continue;
+                item.doc = null;
+                item.fail("FAILED", "Could not save document: " + e.getMessage());
+                try {
+                    releaseIfUnreferenced(item.stored);
+                } catch (IOException ignored) {
+                    // an orphaned blob only costs disk space
+                }
+            }
+        }
+
+        for (Item item : stored) {
+            if (item.doc == null || item.twin == null) continue;
+            try {
+                if (!searchIndexService.copyDocument(item.twin.getId(), item.doc)) {
+                    searchIndexService.indexDocument(item.doc, textStoreService.read(item.doc.getTextFilePath()));
+                }
+            } catch (Exception e) {
+                log.warn("Could not index duplicate document {}: {}", item.doc.getId(), e.getMessage());
+            }
+        }
+
+        List<List<Long>> groups = List.of(primaries, followers);
+        if (wait) extractionJobService.extractAll(groups);
+        else extractionJobService.submitAll(groups);
+
+        return report(items);
+    }
+
+    private BatchUploadReportDTO report(List<Item> items) {
+        List<Long> ids = items.stream().filter(i -> i.doc != null && i.doc.getId() != null)
+                .map(i -> i.doc.getId()).toList();
+        Map<Long, DocumentDTO> dtos = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (DocumentDTO dto : documentRepository.findDtosByIdIn(ids)) dtos.put(dto.getId(), dto);
+        }
+
+        List<BatchFileResultDTO> results = new ArrayList<>();
+        int ready = 0, pending = 0, failed = 0;
+        for (Item item : items) {
+            DocumentDTO dto = item.doc != null ? dtos.get(item.doc.getId()) : null;
+            if (dto == null && item.error == null && item.outcome != null) item.fail("FAILED", "Document was deleted");
+
+            if (dto == null) failed++;
+            else if (DocumentStatus.READY.name().equals(dto.getStatus())) ready++;
+            else if (DocumentStatus.FAILED.name().equals(dto.getStatus())) failed++;
+            else pending++;
+
+            results.add(new BatchFileResultDTO(item.filename, item.outcome, dto,
+                    item.error != null ? item.error : dto != null ? dto.getStatusMessage() : null));
+        }
+        return new BatchUploadReportDTO(items.size(), ready, pending, failed, results);
+    }
+
+    private void releaseIfUnreferenced(FileStorageService.StoredFile stored) throws IOException {
+        synchronized (fileStorageService.lockFor(stored.getSha256())) {
+            if (documentRepository.countByPdfFilePath(stored.getPath().toString()) == 0) {
+                Files.deleteIfExists(stored.getPath());
+            }
+        }
+    }
+
+    // Counts the bytes read through it and fails once more than max have gone by (0 = unlimited).
+    // Closing it leaves the source open: the ZIP stream outlives each entry's view of it.
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long max;
+        private long count;
+
+        LimitedInputStream(InputStream in, long max) {
+            super(in);
+            this.max = max;
+        }
+
+        boolean exceeded() {
+            return max > 0 && count > max;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) count(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) count(n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private void count(long n) throws IOException {
+            count += n;
+            if (exceeded()) throw new IOException("Size limit of " + max + " bytes exceeded");
+        }
+    }
+}
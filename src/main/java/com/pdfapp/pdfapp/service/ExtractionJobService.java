@@ -0,0 +1,282 @@
+package com.pdfapp.pdfapp.service;
+
+import com.pdfapp.pdfapp.extract.TeeSink;
+import com.pdfapp.pdfapp.model.Document;
+import com.pdfapp.pdfapp.model.DocumentStatus;
+import com.pdfapp.pdfapp.repository.DocumentRepository;
+import com.pdfapp.pdfapp.search.TextAnalyzer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs text extraction off the request thread.
+ * Jobs go to a fixed worker pool with a bounded queue; when the queue is full
+ * submit() throws RejectedExecutionException so callers can push back (HTTP 429).
+ * Each job gets a watchdog that interrupts it once the per-job timeout elapses.
+ * Batch uploads bypass the queue and run on a separate ForkJoinPool sized to the
+ * number of cores, so a large import neither overflows nor starves single uploads.
+ * That pool takes at most extraction.batch-max-pending batches at a time; past it
+ * isBatchSaturated() lets callers push back the same way.
+ */
+@Service
+public class ExtractionJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExtractionJobService.class);
+
+    private final DocumentRepository documentRepository;
+    private final ExtractionService extractionService;
+    private final SearchIndexService searchIndexService;
+    private final TextStoreService textStoreService;
+    private final MetricsService metrics;
+
+    @Value("${extraction.workers:2}")
+    private int workers;
+
+    @Value("${extraction.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${extraction.job-timeout-seconds:120}")
+    private long jobTimeoutSeconds;
+
+    // 0 = one thread per available core
+    @Value("${extraction.batch-parallelism:0}")
+    private int batchParallelism;
+
+    // Batches waiting for or running on the batch pool
+    @Value("${extraction.batch-max-pending:4}")
+    private int batchMaxPending;
+
+    private final AtomicInteger pendingBatches = new AtomicInteger();
+
+    private ThreadPoolExecutor executor;
+    private ForkJoinPool batchPool;
+    private ScheduledExecutorService watchdog;
+
+    public ExtractionJobService(DocumentRepository documentRepository,
+                                ExtractionService extractionService,
+                                SearchIndexService searchIndexService,
+                                TextStoreService textStoreService,
+                                MetricsService metrics) {
+        this.documentRepository = documentRepository;
+        this.extractionService = extractionService;
+        this.searchIndexService = searchIndexService;
+        this.textStoreService = textStoreService;
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadNo = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "extraction-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        int parallelism = batchParallelism > 0 ? batchParallelism : Runtime.getRuntime().availableProcessors();
+        ClassLoader appClassLoader = getClass().getClassLoader();
+        batchPool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("batch-extraction-" + t.getPoolIndex());
+            t.setContextClassLoader(appClassLoader); // pool threads default to the system loader
+            return t;
+        }, null, false);
+        watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "extraction-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+
+        metrics.gauge("pdfapp.extraction.queue.depth", "Extraction jobs waiting for a worker", executor, e -> e.getQueue().size(), "pool", "uploads");
+        metrics.gauge("pdfapp.extraction.active", "Extraction jobs running", executor, ThreadPoolExecutor::getActiveCount, "pool", "uploads");
+        metrics.gauge("pdfapp.extraction.queue.depth", "Extraction jobs waiting for a worker", batchPool, ForkJoinPool::getQueuedSubmissionCount, "pool", "batch");
+        metrics.gauge("pdfapp.extraction.active", "Extraction jobs running", batchPool, ForkJoinPool::getActiveThreadCount, "pool", "batch");
+        metrics.gauge("pdfapp.extraction.batches.pending", "Batches waiting for or running on the batch pool", pendingBatches, AtomicInteger::get);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+        batchPool.shutdownNow();
+        watchdog.shutdownNow();
+    }
+
+    // ✅ Re-queue documents that were pending when the application last stopped
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        List<Document> unfinished = documentRepository.findByStatusIn(
+                List.of(DocumentStatus.PENDING, DocumentStatus.PROCESSING));
+        for (Document doc : unfinished) {
+            try {
+                submit(doc.getId());
+            } catch (RejectedExecutionException e) {
+                log.warn("Extraction queue full while resuming; document {} stays pending", doc.getId());
+            }
+        }
+    }
+
+    public boolean isSaturated() {
+        return executor.getQueue().remainingCapacity() == 0;
+    }
+
+    public boolean isBatchSaturated() {
+        return pendingBatches.get() >= batchMaxPending;
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public void submit(Long documentId) {
+        long queued = metrics.start();
+        executor.execute(() -> {
+            metrics.stop("pdfapp.extraction.queue.wait", queued);
+            runJob(documentId);
+        });
+    }
+
+    /**
+     * Extracts the documents on the batch pool and returns once every job has finished.
+     * Groups run one after another: documents in a later group may share content with
+     * an earlier one and then reuse its text instead of being extracted again.
+     */
+    public void extractAll(List<List<Long>> groups) {
+        pendingBatches.incrementAndGet();
+        try {
+            runGroups(groups);
+        } finally {
+            pendingBatches.decrementAndGet();
+        }
+    }
+
+    // Same as extractAll without waiting
+    public void submitAll(List<List<Long>> groups) {
+        pendingBatches.incrementAndGet();
+        try {
+            batchPool.execute(() -> {
+                try {
+                    runGroups(groups);
+                } finally {
+                    pendingBatches.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingBatches.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void runGroups(List<List<Long>> groups) {
+        for (List<Long> group : groups) {
+            batchPool.invokeAll(group.stream().map(id -> (Callable<Void>) () -> {
+                runJob(id);
+                return null;
+            }).toList());
+        }
+    }
+
+    private void runJob(Long documentId) {
+        // Owner fetched eagerly: the index records the owner's name for owner: queries
+        Document doc = documentRepository.findWithOwnerByIdIn(List.of(documentId)).stream().findFirst().orElse(null);
+        if (doc == null) return; // deleted while queued
+
+        if (reuseTwin(doc)) {
+            metrics.increment("pdfapp.extraction.jobs", 1, "result", "reused");
+            return;
+        }
+
+        doc.setStatus(DocumentStatus.PROCESSING);
+        documentRepository.save(doc);
+
+        JobState state = new JobState(Thread.currentThread());
+        ScheduledFuture<?> timeout = watchdog.schedule(state::expire, jobTimeoutSeconds, TimeUnit.SECONDS);
+        // The text streams into the store and the analyzer as it is extracted; it is never held whole
+        try (TextStoreService.TextWriter writer = textStoreService.openWriter(doc.getTextFilePath())) {
+            TextAnalyzer analyzer = new TextAnalyzer();
+            extractionService.extractText(Paths.get(doc.getPdfFilePath()), new TeeSink(writer, analyzer));
+            if (state.finish()) throw new TimeoutException();
+
+            if (!documentRepository.existsById(documentId)) return; // deleted while extracting
+
+            writer.commit();
+            searchIndexService.indexDocument(doc, analyzer.tokens(), analyzer.trigrams());
+
+            doc.setStatus(DocumentStatus.READY);
+            doc.setStatusMessage(null);
+            metrics.increment("pdfapp.extraction.jobs", 1, "result", "ready");
+        } catch (Exception e) {
+            boolean timedOut = state.finish();
+            metrics.increment("pdfapp.extraction.jobs", 1, "result", timedOut ? "timeout" : "failed");
+            doc.setStatus(DocumentStatus.FAILED);
+            doc.setStatusMessage(timedOut
+                    ? "Extraction timed out after " + jobTimeoutSeconds + "s"
+                    : "Extraction failed: " + e.getMessage());
+            log.warn("Extraction of document {} failed: {}", documentId, doc.getStatusMessage());
+        } finally {
+            timeout.cancel(false);
+            Thread.interrupted(); // never leak a watchdog interrupt into the next job
+        }
+
+        if (documentRepository.existsById(documentId)) documentRepository.save(doc);
+    }
+
+    // Content already extracted for another document (e.g. the same file twice in one batch)
+    private boolean reuseTwin(Document doc) {
+        if (doc.getContentHash() == null) return false;
+        Document twin = documentRepository.findReadyByContentHash(doc.getContentHash()).stream()
+                .filter(d -> !d.getId().equals(doc.getId()) && textStoreService.exists(d.getTextFilePath()))
+                .findFirst().orElse(null);
+        if (twin == null) return false;
+
+        String ownTextPath = doc.getTextFilePath();
+        try {
+            doc.setTextFilePath(twin.getTextFilePath());
+            if (!searchIndexService.copyDocument(twin.getId(), doc)) {
+                searchIndexService.indexDocument(doc, textStoreService.read(doc.getTextFilePath()));
+            }
+        } catch (Exception e) {
+            doc.setTextFilePath(ownTextPath);
+            return false;
+        }
+        doc.setStatus(DocumentStatus.READY);
+        doc.setStatusMessage(null);
+        if (documentRepository.existsById(doc.getId())) documentRepository.save(doc);
+        return true;
+    }
+
+    // Guards the race between the watchdog firing and the job completing
+    private static class JobState {
+        private final Thread worker;
+        private boolean done;
+        private boolean timedOut;
+
+        JobState(Thread worker) {
+            this.worker = worker;
+        }
+
+        synchronized void expire() {
+            if (done) return;
+            timedOut = true;
+            worker.interrupt();
+        }
+
+        // Marks the job finished and reports whether the watchdog got there first
+        synchronized boolean finish() {
+            done = true;
+            return timedOut;
+        }
+    }
+}
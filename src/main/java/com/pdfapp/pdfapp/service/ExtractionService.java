@@ -0,0 +1,223 @@
+package com.pdfapp.pdfapp.service;
+
+import com.pdfapp.pdfapp.extract.DocExtractor;
+import com.pdfapp.pdfapp.extract.DocxExtractor;
+import com.pdfapp.pdfapp.extract.ExtractedText;
+import com.pdfapp.pdfapp.extract.ExtractedTextBuilder;
+import com.pdfapp.pdfapp.extract.ExtractionLimitException;
+import com.pdfapp.pdfapp.extract.ExtractionLimits;
+import com.pdfapp.pdfapp.extract.Extractor;
+import com.pdfapp.pdfapp.extract.ExtractorRegistry;
+import com.pdfapp.pdfapp.extract.LimitedTextSink;
+import com.pdfapp.pdfapp.extract.PdfExtractor;
+import com.pdfapp.pdfapp.extract.PptxExtractor;
+import com.pdfapp.pdfapp.extract.TextFileExtractor;
+import com.pdfapp.pdfapp.extract.TextSink;
+import com.pdfapp.pdfapp.extract.XlsxExtractor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Turns a stored upload into plain text, reading from disk rather than from in-memory copies.
+ * The extractor is chosen by sniffing the file (ExtractorRegistry), never by the client's
+ * content type, which is only kept when it agrees with the bytes. Each extractor runs
+ * under its own limits from extraction.limits.&lt;name&gt;.*, falling back to extraction.limits.*.
+ * Large PDFs are stripped in page ranges on a shared worker pool owned by this service.
+ */
+@Service
+public class ExtractionService {
+
+    // PDFBox keeps at most this much of a document in heap; the rest goes to scratch files
+    @Value("${extraction.pdf.max-main-memory-bytes:16777216}")
+    private long pdfMaxMainMemoryBytes;
+
+    @Value("${extraction.pdf.scratch-dir:}")
+    private String pdfScratchDir;
+
+    @Value("${extraction.pdf.parallel-page-threshold:200}")
+    private int parallelPageThreshold;
+
+    // Ranges per PDF, counting the calling thread; also caps the shared range workers. 0 = one per core
+    @Value("${extraction.pdf.parallelism:0}")
+    private int pdfParallelism;
+
+    private final MetricsService metrics;
+    private final Environment environment;
+    private final ExtractorRegistry registry = new ExtractorRegistry();
+    private final Map<String, ExtractionLimits> limits = new HashMap<>();
+    private ExecutorService rangeWorkers; // null when parallel extraction is off
+
+    public ExtractionService(MetricsService metrics, Environment environment) {
+        this.metrics = metrics;
+        this.environment = environment;
+    }
+
+    @PostConstruct
+    public void start() {
+        int rangesPerPdf = pdfParallelism > 0 ? pdfParallelism : Runtime.getRuntime().availableProcessors();
+        if (rangesPerPdf >= 2) {
+            AtomicInteger threadNo = new AtomicInteger();
+            rangeWorkers = Executors.newFixedThreadPool(rangesPerPdf - 1, r -> {
+                Thread t = new Thread(r, "pdf-range-" + threadNo.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        // Order matters: plain text accepts almost anything that is not binary, so it goes last
+        registry.register(new PdfExtractor(pdfMaxMainMemoryBytes,
+                        pdfScratchDir.isBlank() ? null : Paths.get(pdfScratchDir),
+                        parallelPageThreshold, rangesPerPdf, rangeWorkers))
+                .register(new DocxExtractor())
+                .register(new PptxExtractor())
+                .register(new XlsxExtractor())
+                .register(new DocExtractor())
+                .register(new TextFileExtractor());
+        for (Extractor extractor : registry.all()) limits.put(extractor.name(), limitsFor(extractor.name()));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (rangeWorkers != null) rangeWorkers.shutdownNow();
+    }
+
+    public ExtractorRegistry getRegistry() {
+        return registry;
+    }
+
+    public ExtractionLimits getLimits(String extractor) {
+        return limits.getOrDefault(extractor, ExtractionLimits.NONE);
+    }
+
+    private ExtractionLimits limitsFor(String name) {
+        return new ExtractionLimits(
+                limit(name, "max-bytes", Long.class, 0L),
+                limit(name, "max-pages", Integer.class, 0),
+                Duration.ofSeconds(limit(name, "timeout-seconds", Long.class, 0L)));
+    }
+
+    private <T> T limit(String extractor, String key, Class<T> type, T defaultValue) {
+        T global = environment.getProperty("extraction.limits." + key, type, defaultValue);
+        return environment.getProperty("extraction.limits." + extractor + "." + key, type, global);
+    }
+
+    // The extractor that recognises the file's bytes, or null when none does (unsupported)
+    public Extractor detect(Path file) throws IOException {
+        return registry.detect(file);
+    }
+
+    // The client's content type when it names the detected format (keeps e.g. macro-enabled variants), else the canonical one
+    public String contentType(Extractor extractor, String claimed) {
+        return extractor.name().equals(extractorFor(claimed)) ? claimed : extractor.mimeType();
+    }
+
+    // Name of the extractor a content type points at; only used to judge the client's label
+    static String extractorFor(String contentType) {
+        if (contentType == null) return "none";
+        String type = contentType.toLowerCase(Locale.ROOT);
+        if (type.contains("pdf")) return "pdf";
+        if (type.contains("msword")) return "doc";
+        if (type.contains("word")) return "docx"; // wordprocessingml, ms-word.document.macroEnabled
+        if (type.contains("presentationml") || type.contains("powerpoint.presentation.macroenabled")) return "pptx";
+        if (type.contains("spreadsheetml") || type.contains("excel.sheet.macroenabled")) return "xlsx";
+        if (type.startsWith("text/plain")) return "txt";
+        return "none";
+    }
+
+    public ExtractedText extractText(Path file) throws IOException {
+        ExtractedTextBuilder builder = new ExtractedTextBuilder();
+        extractText(file, builder);
+        return builder.build();
+    }
+
+    // Detects the format, then as extractText(file, extractor, sink); IOException when it is unsupported
+    public void extractText(Path file, TextSink sink) throws IOException {
+        Extractor extractor = detect(file);
+        if (extractor == null) {
+            metrics.increment("pdfapp.extraction.unsupported", 1);
+            throw new IOException("Unsupported file format");
+        }
+        extractText(file, extractor, sink);
+    }
+
+    public ExtractedText extractText(Path file, Extractor extractor) throws IOException {
+        ExtractedTextBuilder builder = new ExtractedTextBuilder();
+        extractText(file, extractor, builder);
+        return builder.build();
+    }
+
+    /**
+     * Streams the file's text into sink under the extractor's limits (ExtractionLimitException
+     * past one), timed per extractor with page count, input size and extracted length recorded alongside.
+     */
+    public void extractText(Path file, Extractor extractor, TextSink sink) throws IOException {
+        String type = extractor.name();
+        long start = metrics.start();
+        String outcome = "error";
+        try {
+            ExtractionLimits limit = getLimits(type);
+            long bytes = Files.size(file);
+            if (limit.maxBytes() > 0 && bytes > limit.maxBytes()) {
+                outcome = "limit";
+                throw new ExtractionLimitException("Larger than " + limit.maxBytes() + " bytes (" + type + " limit)");
+            }
+
+            CountingSink counted = new CountingSink(new LimitedTextSink(sink, limit, type));
+            try {
+                extractor.extract(file, counted);
+            } catch (ExtractionLimitException e) {
+                outcome = "limit";
+                throw e;
+            }
+            outcome = "success";
+            metrics.record("pdfapp.extraction.pages", counted.pages, "type", type);
+            metrics.record("pdfapp.extraction.input.bytes", bytes, "type", type);
+            metrics.record("pdfapp.extraction.chars", counted.chars, "type", type);
+        } finally {
+            metrics.stop("pdfapp.extraction", start, "type", type, "outcome", outcome);
+        }
+    }
+
+    // Page and character counts for the metrics, whatever the caller's sink does with the text
+    private static class CountingSink implements TextSink {
+        private final TextSink target;
+        int pages;
+        long chars;
+
+        CountingSink(TextSink target) {
+            this.target = target;
+        }
+
+        @Override
+        public void expectPages(int pages) throws IOException {
+            target.expectPages(pages);
+        }
+
+        @Override
+        public void startPage() throws IOException {
+            pages++;
+            target.startPage();
+        }
+
+        @Override
+        public void append(CharSequence text) throws IOException {
+            chars += text.length();
+            target.append(text);
+        }
+    }
+}
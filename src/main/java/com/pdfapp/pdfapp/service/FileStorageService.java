@@ -0,0 +1,154 @@
+package com.pdfapp.pdfapp.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+
+/**
+ * Content-addressed storage for uploads.
+ * Files are hashed (SHA-256) while they are streamed to a temp file and then
+ * moved to uploaded_pdfs/<first two hex chars>/<hash>; identical content is
+ * stored once. Extracted text is keyed by the same hash. Blobs are shared by
+ * every Document row that points at them, so callers delete a blob only once
+ * no row references it, holding lockFor(hash) across the check.
+ */
+@Service
+public class FileStorageService {
+
+    private static final int LOCK_STRIPES = 64;
+
+    @Value("${storage.pdf-dir:uploaded_pdfs}")
+    private String pdfDir;
+
+    @Value("${storage.text-dir:extracted_texts}")
+    private String textDir;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final MetricsService metrics;
+
+    public FileStorageService(MetricsService metrics) {
+        this.metrics = metrics;
+        for (int i = 0; i < LOCK_STRIPES; i++) locks[i] = new Object();
+    }
+
+    public static class StoredFile {
+        private final Path path;
+        private final String sha256;
+        private final long size;
+        private final boolean duplicate;
+
+        public StoredFile(Path path, String sha256, long size, boolean duplicate) {
+            this.path = path;
+            this.sha256 = sha256;
+            this.size = size;
+            this.duplicate = duplicate;
+        }
+
+        public Path getPath() { return path; }
+        public String getSha256() { return sha256; }
+        public long getSize() { return size; }
+        // True when a blob with the same content was already stored
+        public boolean isDuplicate() { return duplicate; }
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(Paths.get(pdfDir));
+        Files.createDirectories(Paths.get(textDir));
+    }
+
+    public StoredFile store(MultipartFile file) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            return store(in);
+        }
+    }
+
+    public StoredFile store(InputStream content) throws IOException {
+        Path tmpDir = Files.createDirectories(Paths.get(pdfDir, "tmp"));
+        Path tmp = Files.createTempFile(tmpDir, "upload-", ".part");
+        try {
+            long start = metrics.start();
+            MessageDigest digest = newDigest();
+            long size = Files.copy(new DigestInputStream(content, digest), tmp, StandardCopyOption.REPLACE_EXISTING);
+            String hash = HexFormat.of().formatHex(digest.digest());
+            metrics.stop("pdfapp.storage.store", start);
+            metrics.record("pdfapp.storage.store.bytes", size);
+
+            Path blob = blobPath(hash);
+            synchronized (lockFor(hash)) {
+                if (Files.exists(blob)) return new StoredFile(blob, hash, size, true);
+                Files.createDirectories(blob.getParent());
+                Files.move(tmp, blob, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return new StoredFile(blob, hash, size, false);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public Path blobPath(String sha256) {
+        return Paths.get(pdfDir, sha256.substring(0, 2), sha256);
+    }
+
+    // Extracted text is keyed by the content hash inside the segment store
+    public String textRef(String sha256) {
+        return TextStoreService.segmentRef(sha256);
+    }
+
+    // Serializes "is this blob still referenced?" checks against uploads of the same content
+    public Object lockFor(String key) {
+        return locks[stripeOf(key)];
+    }
+
+    // Runs action holding the locks of all keys; stripes are taken in index order so
+    // two batches with overlapping content cannot deadlock
+    public <T> T withLocks(Collection<String> keys, Callable<T> action) throws Exception {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (String key : keys) stripes.add(stripeOf(key));
+        return withStripes(stripes.toArray(new Integer[0]), 0, action);
+    }
+
+    private <T> T withStripes(Integer[] stripes, int i, Callable<T> action) throws Exception {
+        if (i == stripes.length) return action.call();
+        synchronized (locks[stripes[i]]) {
+            return withStripes(stripes, i + 1, action);
+        }
+    }
+
+    private static int stripeOf(String key) {
+        return Math.floorMod(key == null ? 0 : key.hashCode(), LOCK_STRIPES);
+    }
+
+    // Used for files stored before hashes were recorded
+    public String sha256(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.pdfapp.pdfapp.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Thin layer over Micrometer for the application's own meters (all named "pdfapp.*",
+ * exported through Actuator/Prometheus). Every timed operation is also checked
+ * against a slow-operation threshold and logged when it crosses it:
+ * metrics.slow-operation-ms is the default, metrics.slow-operation-ms.&lt;meter name&gt;
+ * overrides it per operation.
+ */
+@Service
+public class MetricsService {
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsService.class);
+
+    private final MeterRegistry registry;
+    private final Environment environment;
+    private final Map<String, Long> slowThresholds = new ConcurrentHashMap<>();
+
+    @Value("${metrics.slow-operation-ms:1000}")
+    private long defaultSlowThresholdMs;
+
+    public MetricsService(MeterRegistry registry, Environment environment) {
+        this.registry = registry;
+        this.environment = environment;
+    }
+
+    public long start() {
+        return System.nanoTime();
+    }
+
+    // Records the time since start (from start()) under a timer; tags are key/value pairs
+    public void stop(String name, long start, String... tags) {
+        long nanos = System.nanoTime() - start;
+        Timer.builder(name).tags(tags).register(registry).record(nanos, TimeUnit.NANOSECONDS);
+
+        long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+        if (ms >= slowThreshold(name)) {
+            log.warn("Slow operation {} {} took {} ms", name, Arrays.toString(tags), ms);
+        }
+    }
+
+    private long slowThreshold(String name) {
+        return slowThresholds.computeIfAbsent(name,
+                n -> environment.getProperty("metrics.slow-operation-ms." + n, Long.class, defaultSlowThresholdMs));
+    }
+
+    // One observation of a size (pages, bytes, hits, ...)
+    public void record(String name, double amount, String... tags) {
+        DistributionSummary.builder(name).tags(tags).register(registry).record(amount);
+    }
+
+    public void increment(String name, double amount, String... tags) {
+        Counter.builder(name).tags(tags).register(registry).increment(amount);
+    }
+
+    public <T> void gauge(String name, String description, T target, ToDoubleFunction<T> value, String... tags) {
+        Gauge.builder(name, target, value).description(description).tags(tags).register(registry);
+    }
+
+    // Hit/miss/eviction counts and size under the standard cache.* meters, tagged cache=name.
+    // The cache must be built with recordStats().
+    public void monitor(Cache<?, ?> cache, String name) {
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+    }
+
+    /**
+     * Wraps a download so the bytes actually written to clients (including partial
+     * range reads) are counted under pdfapp.download.bytes.
+     */
+    public Resource metered(Resource resource, String... tags) {
+        Counter bytes = Counter.builder("pdfapp.download.bytes").baseUnit("bytes").tags(tags).register(registry);
+        return new AbstractResource() {
+            @Override
+            public String getDescription() {
+                return resource.getDescription();
+            }
+
+            @Override
+            public String getFilename() {
+                return resource.getFilename();
+            }
+
+            @Override
+            public boolean exists() {
+                return resource.exists();
+            }
+
+            @Override
+            public long contentLength() throws IOException {
+                return resource.contentLength();
+            }
+
+            @Override
+            public long lastModified() throws IOException {
+                return resource.lastModified();
+            }
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return new FilterInputStream(resource.getInputStream()) {
+                    @Override
+                    public int read() throws IOException {
+                        int b = super.read();
+                        if (b >= 0) bytes.increment();
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] buf, int off, int len) throws IOException {
+                        int n = super.read(buf, off, len);
+                        if (n > 0) bytes.increment(n);
+                        return n;
+                    }
+                };
+            }
+        };
+    }
+}
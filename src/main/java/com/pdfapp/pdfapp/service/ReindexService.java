@@ -0,0 +1,410 @@
+package com.pdfapp.pdfapp.service;
+
+import com.pdfapp.pdfapp.extract.Extractor;
+import com.pdfapp.pdfapp.model.Document;
+import com.pdfapp.pdfapp.model.DocumentStatus;
+import com.pdfapp.pdfapp.model.User;
+import com.pdfapp.pdfapp.repository.DocumentRepository;
+import com.pdfapp.pdfapp.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Brings Document rows, extracted texts and the search index back in line with
+ * what is actually in the storage directories (used by the "reindex" profile).
+ *
+ * Every stored file is stat'ed in parallel; only files whose size or mtime differ
+ * from the manifest are hashed again, and only documents whose content hash changed,
+ * whose text is missing or whose extraction never finished are re-extracted.
+ * Files without a row are imported. The manifest is appended to after each file,
+ * so it doubles as the checkpoint: an interrupted run skips everything it already did.
+ * Texts still stored as one file per document are moved into the segment store.
+ */
+@Service
+public class ReindexService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReindexService.class);
+
+    private final DocumentRepository documentRepository;
+    private final UserRepository userRepository;
+    private final FileStorageService fileStorageService;
+    private final TextStoreService textStoreService;
+    private final SearchIndexService searchIndexService;
+    private final ExtractionJobService extractionJobService;
+    private final ExtractionService extractionService;
+
+    @Value("${storage.pdf-dir:uploaded_pdfs}")
+    private String pdfDir;
+
+    @Value("${storage.text-dir:extracted_texts}")
+    private String textDir;
+
+    @Value("${reindex.manifest:search_index/reindex.manifest}")
+    private String manifestFile;
+
+    // 0 = one thread per available core
+    @Value("${reindex.parallelism:0}")
+    private int parallelism;
+
+    @Value("${reindex.import-orphans:true}")
+    private boolean importOrphans;
+
+    // Username that imported files are assigned to; blank for none
+    @Value("${reindex.owner:admin}")
+    private String importOwner;
+
+    @Value("${reindex.prune-orphan-texts:false}")
+    private boolean pruneOrphanTexts;
+
+    @Value("${reindex.rebuild-index:true}")
+    private boolean rebuildIndex;
+
+    public ReindexService(DocumentRepository documentRepository, UserRepository userRepository,
+                          FileStorageService fileStorageService, TextStoreService textStoreService,
+                          SearchIndexService searchIndexService, ExtractionJobService extractionJobService,
+                          ExtractionService extractionService) {
+        this.documentRepository = documentRepository;
+        this.userRepository = userRepository;
+        this.fileStorageService = fileStorageService;
+        this.textStoreService = textStoreService;
+        this.searchIndexService = searchIndexService;
+        this.extractionJobService = extractionJobService;
+        this.extractionService = extractionService;
+    }
+
+    public static class Summary {
+        final AtomicInteger scanned = new AtomicInteger();
+        final AtomicInteger unchanged = new AtomicInteger();
+        final AtomicInteger hashed = new AtomicInteger();
+        final AtomicInteger imported = new AtomicInteger();
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        final AtomicInteger migrated = new AtomicInteger();
+        final AtomicInteger unsupported = new AtomicInteger();
+        int missing;
+        int orphanTexts;
+        int prunedTexts;
+
+        public int getErrors() { return errors.get(); }
+
+        @Override
+        public String toString() {
+            return "scanned=" + scanned + " unchanged=" + unchanged + " hashed=" + hashed
+                    + " imported=" + imported + " unsupported=" + unsupported + " re-extracted=" + queued + " migrated-texts=" + migrated + " missing-source=" + missing
+                    + " orphan-texts=" + orphanTexts + " pruned-texts=" + prunedTexts + " errors=" + errors;
+        }
+    }
+
+    public Summary run() throws Exception {
+        Summary summary = new Summary();
+        Manifest manifest = Manifest.open(Paths.get(manifestFile));
+        User owner = importOwner.isBlank() ? null : userRepository.findByUsername(importOwner).orElse(null);
+
+        Map<String, List<Document>> rowsByPdf = new HashMap<>();
+        for (Document doc : documentRepository.findAllWithOwner()) {
+            if (doc.getPdfFilePath() != null) rowsByPdf.computeIfAbsent(key(Paths.get(doc.getPdfFilePath())), k -> new ArrayList<>()).add(doc);
+        }
+
+        List<Path> files;
+        Path tmpDir = Paths.get(pdfDir, "tmp");
+        try (Stream<Path> walk = Files.walk(Paths.get(pdfDir))) {
+            files = walk.filter(Files::isRegularFile).filter(p -> !p.startsWith(tmpDir)).collect(Collectors.toList());
+        }
+        // Rows may point outside the storage directory (older layouts); scan those files too
+        Set<String> walked = files.stream().map(ReindexService::key).collect(Collectors.toSet());
+        for (String key : rowsByPdf.keySet()) {
+            if (!walked.contains(key) && Files.isRegularFile(Paths.get(key))) files.add(Paths.get(key));
+        }
+        log.info("Reindex: {} stored files, {} documents", files.size(), rowsByPdf.values().stream().mapToInt(List::size).sum());
+
+        // Phase 1: stat/hash every file in parallel and reconcile its rows; checkpointed per file
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        List<Long> toExtract = Collections.synchronizedList(new ArrayList<>());
+        ForkJoinPool pool = newPool();
+        try {
+            pool.submit(() -> files.parallelStream().forEach(file -> {
+                try {
+                    String key = key(file);
+                    seen.add(key);
+                    scanFile(file, key, rowsByPdf.getOrDefault(key, List.of()), owner, manifest, toExtract, summary);
+                } catch (Exception e) {
+                    summary.errors.incrementAndGet();
+                    log.warn("Reindex: could not process {}: {}", file, e.getMessage());
+                }
+            })).get();
+        } finally {
+            pool.shutdown();
+            manifest.close();
+        }
+
+        // Rows whose source file is gone cannot be extracted or served
+        for (Map.Entry<String, List<Document>> entry : rowsByPdf.entrySet()) {
+            if (seen.contains(entry.getKey())) continue;
+            for (Document doc : entry.getValue()) {
+                summary.missing++;
+                if (doc.getStatus() == DocumentStatus.FAILED) continue;
+                doc.setStatus(DocumentStatus.FAILED);
+                doc.setStatusMessage("Source file missing");
+                documentRepository.save(doc);
+                searchIndexService.removeDocument(doc.getId());
+            }
+        }
+
+        // Phase 2: extraction in parallel on the batch pool. One document per content hash goes
+        // first; the rest then reuse its text. Anything interrupted here stays PENDING and is
+        // picked up again by the next run (or by the normal startup resume).
+        Map<String, Long> firstByHash = new HashMap<>();
+        List<Long> followers = new ArrayList<>();
+        for (Document doc : documentRepository.findAllById(toExtract)) {
+            if (firstByHash.putIfAbsent(doc.getContentHash(), doc.getId()) != null) followers.add(doc.getId());
+        }
+        summary.queued.set(toExtract.size());
+        extractionJobService.extractAll(List.of(new ArrayList<>(firstByHash.values()), followers));
+
+        pruneTexts(summary);
+
+        if (rebuildIndex) searchIndexService.rebuild();
+        else searchIndexService.reconcile();
+
+        manifest.compact(seen);
+        return summary;
+    }
+
+    private void scanFile(Path file, String key, List<Document> docs, User owner, Manifest manifest,
+                          List<Long> toExtract, Summary summary) throws IOException {
+        summary.scanned.incrementAndGet();
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        long size = attrs.size();
+        long mtime = attrs.lastModifiedTime().toMillis();
+
+        Manifest.Entry previous = manifest.get(key);
+        String hash;
+        if (previous != null && previous.size == size && previous.mtime == mtime) {
+            hash = previous.hash;
+            summary.unchanged.incrementAndGet();
+        } else {
+            hash = fileStorageService.sha256(file);
+            summary.hashed.incrementAndGet();
+        }
+
+        if (docs.isEmpty()) {
+            if (importOrphans && size > 0) {
+                // Same rule as uploads: the bytes decide the format, and files no extractor reads are left alone
+                Extractor extractor = extractionService.detect(file);
+                if (extractor == null) {
+                    summary.unsupported.incrementAndGet();
+                } else {
+                    toExtract.add(importFile(file, hash, extractor, owner, mtime));
+                    summary.imported.incrementAndGet();
+                }
+            }
+        } else {
+            for (Document doc : docs) {
+                if (reconcileRow(doc, hash, summary)) toExtract.add(doc.getId());
+            }
+        }
+        manifest.record(key, size, mtime, hash);
+    }
+
+    // Returns true when the document has to be (re-)extracted
+    private boolean reconcileRow(Document doc, String hash, Summary summary) throws IOException {
+        boolean contentChanged = doc.getContentHash() != null && !doc.getContentHash().equals(hash);
+        boolean textMissing = !textStoreService.exists(doc.getTextFilePath());
+        boolean unfinished = doc.getStatus() == DocumentStatus.PENDING || doc.getStatus() == DocumentStatus.PROCESSING;
+
+        if (!contentChanged && !textMissing && !unfinished) {
+            boolean dirty = doc.getContentHash() == null;
+            doc.setContentHash(hash);
+            if (!TextStoreService.isSegmentRef(doc.getTextFilePath())) {
+                migrateText(doc, hash);
+                summary.migrated.incrementAndGet();
+                dirty = true;
+            }
+            if (dirty) documentRepository.save(doc);
+            return false;
+        }
+
+        doc.setContentHash(hash);
+        doc.setTextFilePath(fileStorageService.textRef(hash));
+        doc.setStatus(DocumentStatus.PENDING);
+        doc.setStatusMessage(null);
+        documentRepository.save(doc);
+        return true;
+    }
+
+    private Long importFile(Path file, String hash, Extractor extractor, User owner, long mtime) throws IOException {
+        String name = file.getFileName().toString();
+
+        Document doc = new Document();
+        // Content-addressed blobs are named by their hash; the original name is lost with the row
+        doc.setFilename(name.equals(hash) ? hash + "." + extractor.name() : name);
+        doc.setMimeType(extractor.mimeType());
+        doc.setContentHash(hash);
+        doc.setPdfFilePath(file.toString());
+        doc.setTextFilePath(fileStorageService.textRef(hash));
+        doc.setStatus(DocumentStatus.PENDING);
+        doc.setOwner(owner);
+        doc.setUploadedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(mtime), ZoneId.systemDefault()));
+        return documentRepository.save(doc).getId();
+    }
+
+    // Copies a per-document text file into the segment store; the old file is left for pruneTexts
+    private void migrateText(Document doc, String hash) throws IOException {
+        String legacy = doc.getTextFilePath();
+        String ref = fileStorageService.textRef(hash);
+        synchronized (fileStorageService.lockFor(hash)) {
+            if (!textStoreService.exists(ref)) {
+                textStoreService.copy(legacy, ref);
+            }
+        }
+        doc.setTextFilePath(ref);
+    }
+
+    // Texts that no row points at: legacy files (e.g. left behind by the old filename-based
+    // layout or already migrated) and segment entries
+    private void pruneTexts(Summary summary) throws IOException {
+        Set<String> referenced = new HashSet<>();
+        Set<String> referencedSegments = new HashSet<>();
+        for (Document doc : documentRepository.findAll()) {
+            String ref = doc.getTextFilePath();
+            if (ref == null) continue;
+            if (TextStoreService.isSegmentRef(ref)) referencedSegments.add(ref);
+            else referenced.add(key(Paths.get(ref)));
+        }
+
+        for (String ref : textStoreService.segmentRefs()) {
+            if (referencedSegments.contains(ref)) continue;
+            summary.orphanTexts++;
+            if (!pruneOrphanTexts) continue;
+            synchronized (fileStorageService.lockFor(ref.substring(TextStoreService.SEGMENT_PREFIX.length()))) {
+                if (documentRepository.countByTextFilePath(ref) > 0) continue;
+                textStoreService.delete(ref);
+                summary.prunedTexts++;
+            }
+        }
+
+        List<Path> texts;
+        try (Stream<Path> list = Files.list(Paths.get(textDir))) {
+            texts = list.filter(p -> p.getFileName().toString().endsWith(".txt")).collect(Collectors.toList());
+        }
+        for (Path text : texts) {
+            if (referenced.contains(key(text))) continue;
+            summary.orphanTexts++;
+            if (!pruneOrphanTexts) continue;
+            synchronized (fileStorageService.lockFor(text.getFileName().toString().replace(".txt", ""))) {
+                if (documentRepository.countByTextFilePath(text.toString()) > 0) continue;
+                textStoreService.delete(text.toString());
+                summary.prunedTexts++;
+            }
+        }
+    }
+
+    private ForkJoinPool newPool() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        ClassLoader appClassLoader = getClass().getClassLoader();
+        return new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("reindex-" + t.getPoolIndex());
+            t.setContextClassLoader(appClassLoader);
+            return t;
+        }, null, false);
+    }
+
+    private static String key(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Append-only "size \t mtime \t sha256 \t path" lines, last line per path wins.
+     * A line is written as soon as a file is processed; compact() rewrites it with only
+     * the files that still exist at the end of a completed run.
+     */
+    static class Manifest implements Closeable {
+
+        static class Entry {
+            final long size;
+            final long mtime;
+            final String hash;
+
+            Entry(long size, long mtime, String hash) {
+                this.size = size;
+                this.mtime = mtime;
+                this.hash = hash;
+            }
+        }
+
+        private final Path path;
+        private final Map<String, Entry> entries;
+        private BufferedWriter out;
+
+        private Manifest(Path path, Map<String, Entry> entries) {
+            this.path = path;
+            this.entries = entries;
+        }
+
+        static Manifest open(Path path) throws IOException {
+            Map<String, Entry> entries = new ConcurrentHashMap<>();
+            if (Files.exists(path)) {
+                for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                    String[] parts = line.split("\t", 4);
+                    if (parts.length < 4) continue; // torn last line from an interrupted run
+                    try {
+                        entries.put(parts[3], new Entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]));
+                    } catch (NumberFormatException ignored) {
+                        // skip damaged line
+                    }
+                }
+            }
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            Manifest manifest = new Manifest(path, entries);
+            manifest.out = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            return manifest;
+        }
+
+        Entry get(String key) {
+            return entries.get(key);
+        }
+
+        synchronized void record(String key, long size, long mtime, String hash) throws IOException {
+            entries.put(key, new Entry(size, mtime, hash));
+            out.write(size + "\t" + mtime + "\t" + hash + "\t" + key);
+            out.newLine();
+            out.flush();
+        }
+
+        synchronized void compact(Set<String> live) throws IOException {
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    if (!live.contains(e.getKey())) continue;
+                    w.write(e.getValue().size + "\t" + e.getValue().mtime + "\t" + e.getValue().hash + "\t" + e.getKey());
+                    w.newLine();
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,805 @@
+package com.pdfapp.pdfapp.service;
+
+import com.pdfapp.pdfapp.model.Document;
+import com.pdfapp.pdfapp.model.DocumentStatus;
+import com.pdfapp.pdfapp.repository.DocumentRepository;
+import com.pdfapp.pdfapp.search.CompletionTrie;
+import com.pdfapp.pdfapp.search.DocIdSet;
+import com.pdfapp.pdfapp.search.DocumentMeta;
+import com.pdfapp.pdfapp.search.FacetIndex;
+import com.pdfapp.pdfapp.search.InvertedIndex;
+import com.pdfapp.pdfapp.search.Query;
+import com.pdfapp.pdfapp.search.QueryParser;
+import com.pdfapp.pdfapp.search.QueryTimeoutException;
+import com.pdfapp.pdfapp.search.RegexLiterals;
+import com.pdfapp.pdfapp.search.RoaringBitmap;
+import com.pdfapp.pdfapp.search.TextScanner;
+import com.pdfapp.pdfapp.search.Token;
+import com.pdfapp.pdfapp.search.Tokenizer;
+import com.pdfapp.pdfapp.search.TrigramIndex;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Owns the on-disk inverted index and, beside it, the trigram index that keeps
+ * substring and regex search from scanning every stored text.
+ * Both are stored as snapshots plus one append-only journal of per-document
+ * add/remove records; the journal is folded into new snapshots on startup and
+ * whenever it grows past the configured threshold. Past the threshold a background
+ * task captures the snapshots in memory, sets the journal aside and writes them out,
+ * so index updates only wait for the in-memory copy, never for the disk. The journal
+ * starts with a format header; a journal written in another format is discarded and
+ * the startup reconcile re-indexes whatever it held (as it does documents missing
+ * from either index). A journal record that cannot be written fails the update.
+ * Search-box suggestions come from two in-memory completion tries, one over indexed
+ * terms weighted by document frequency and one over filenames, and facet counts from
+ * per-value bitmaps; all three are derived from the index on load and kept current by
+ * the same add/remove calls.
+ */
+@Service
+public class SearchIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexService.class);
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+
+    private static final int JOURNAL_MAGIC = 0x50444a4c; // "PDJL"
+    private static final int JOURNAL_VERSION = 3;
+
+    // Text reference lookups per database round trip (Oracle caps IN lists at 1000)
+    private static final int REF_BATCH = 1000;
+
+    // Documents loaded per round trip while streaming; small, so the first hit goes out early
+    private static final int STREAM_BATCH = 100;
+
+    private final DocumentRepository documentRepository;
+    private final TextStoreService textStoreService;
+    private final MetricsService metrics;
+
+    @Value("${search.index-dir:search_index}")
+    private String indexDir;
+
+    @Value("${search.journal-compact-threshold:500}")
+    private int journalCompactThreshold;
+
+    @Value("${search.bm25.k1:1.2}")
+    private double bm25K1;
+
+    @Value("${search.bm25.b:0.75}")
+    private double bm25B;
+
+    @Value("${search.query.max-prefix-terms:1000}")
+    private int maxPrefixTerms;
+
+    @Value("${search.query.max-fuzzy-terms:50}")
+    private int maxFuzzyTerms;
+
+    // Budget for verifying one regex search's candidates; guards against catastrophic backtracking
+    @Value("${search.regex.timeout-ms:2000}")
+    private long regexTimeoutMs;
+
+    private volatile InvertedIndex index = new InvertedIndex();
+    private volatile TrigramIndex trigrams = new TrigramIndex();
+    private volatile CompletionTrie termSuggestions = new CompletionTrie();
+    private volatile CompletionTrie filenameSuggestions = new CompletionTrie();
+    private volatile FacetIndex facets = new FacetIndex();
+    private int journalRecords;
+    private boolean compactionQueued;
+    private ExecutorService compactor;
+
+    // Snapshots are captured in sequence under the monitor and written in sequence under snapshotLock
+    private final Object snapshotLock = new Object();
+    private long capturedSnapshots;
+    private long writtenSnapshots;
+
+    // Bumped after every change to the indexed corpus; cached search results are keyed by it
+    private final AtomicLong generation = new AtomicLong();
+
+    public SearchIndexService(DocumentRepository documentRepository, TextStoreService textStoreService,
+                              MetricsService metrics) {
+        this.documentRepository = documentRepository;
+        this.textStoreService = textStoreService;
+        this.metrics = metrics;
+
+        metrics.gauge("pdfapp.index.documents", "Documents in the search index", this, s -> s.index.documentCount());
+        metrics.gauge("pdfapp.index.terms", "Distinct terms in the search index", this, s -> s.index.termCount());
+        metrics.gauge("pdfapp.index.trigrams", "Distinct trigrams in the substring index", this, s -> s.trigrams.trigramCount());
+        metrics.gauge("pdfapp.index.suggestions", "Terms and filenames offered as suggestions", this,
+                s -> s.termSuggestions.keyCount() + s.filenameSuggestions.keyCount());
+        metrics.gauge("pdfapp.index.facet.values", "Facet values with a document bitmap", this, s -> s.facets.valueCount());
+        metrics.gauge("pdfapp.index.facet.bytes", "Memory held by the facet bitmaps", this, s -> s.facets.sizeInBytes());
+        metrics.gauge("pdfapp.index.journal.records", "Journal records since the last snapshot", this, s -> s.journalRecords);
+    }
+
+    // Read before evaluating a query: a result computed at generation g is valid until it moves on
+    public long generation() {
+        return generation.get();
+    }
+
+    private Path snapshotPath() { return Paths.get(indexDir, "index.snapshot"); }
+    private Path journalPath() { return Paths.get(indexDir, "index.journal"); }
+    private Path setAsidePath() { return Paths.get(indexDir, "index.journal.prev"); } // covered by a snapshot being written
+    private Path trigramSnapshotPath() { return Paths.get(indexDir, "trigram.snapshot"); }
+
+    @PostConstruct
+    public synchronized void load() throws IOException {
+        Files.createDirectories(Paths.get(indexDir));
+        compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "index-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+
+        if (Files.exists(snapshotPath())) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath())))) {
+                index = InvertedIndex.readSnapshot(in);
+            } catch (IOException e) {
+                log.warn("Index snapshot unreadable, starting empty: {}", e.getMessage());
+                index = new InvertedIndex();
+            }
+        }
+        if (Files.exists(trigramSnapshotPath())) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(trigramSnapshotPath())))) {
+                trigrams = TrigramIndex.readSnapshot(in);
+            } catch (IOException e) {
+                log.warn("Trigram snapshot unreadable, starting empty: {}", e.getMessage());
+                trigrams = new TrigramIndex();
+            }
+        }
+
+        // A journal set aside by a compaction that never finished comes before the live one
+        int replayed = replayJournal(setAsidePath()) + replayJournal(journalPath());
+        if (replayed > 0) compact();
+        buildDerived();
+        generation.incrementAndGet();
+        log.info("Search index loaded: {} documents, {} terms", index.documentCount(), index.termCount());
+    }
+
+    @PreDestroy
+    public void stop() {
+        compactor.shutdownNow(); // the journal still holds whatever an unfinished snapshot covered
+    }
+
+    // A torn trailing record (crash mid-append) simply ends the replay
+    private int replayJournal(Path journal) throws IOException {
+        if (!Files.exists(journal)) return 0;
+
+        int records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journal)))) {
+            if (in.readInt() != JOURNAL_MAGIC || in.readInt() != JOURNAL_VERSION) {
+                log.warn("Index journal has an old or unknown format; discarding it");
+                Files.delete(journal);
+                return 0;
+            }
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                long docId = in.readLong();
+                if (op == OP_ADD) {
+                    byte[] payload = new byte[in.readInt()];
+                    in.readFully(payload);
+                    DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                    index.readDocument(docId, record);
+                    trigrams.readDocument(docId, record);
+                } else if (op == OP_REMOVE) {
+                    index.remove(docId);
+                    trigrams.remove(docId);
+                } else {
+                    throw new IOException("Corrupt index journal record: " + op);
+                }
+                records++;
+            }
+        } catch (EOFException e) {
+            log.warn("Index journal ends with a partial record; ignoring it");
+        }
+        return records;
+    }
+
+    // ✅ Bring the index in line with the database (documents uploaded before the index existed)
+    // Only READY documents are searchable; pending and failed ones are dropped from the index.
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcile() {
+        Set<Long> known = new HashSet<>();
+        List<Document> missing = new ArrayList<>();
+        for (Document doc : documentRepository.findAllWithOwner()) {
+            if (doc.getStatus() != DocumentStatus.READY) continue;
+            known.add(doc.getId());
+            if ((index.contains(doc.getId()) && trigrams.contains(doc.getId())) || !textStoreService.exists(doc.getTextFilePath())) continue;
+            missing.add(doc);
+        }
+
+        // Visit texts in segment order so a full rebuild reads the store sequentially
+        missing.sort(Comparator.comparingLong(d -> textStoreService.locality(d.getTextFilePath())));
+        for (Document doc : missing) {
+
+            try {
+                indexDocument(doc, textStoreService.read(doc.getTextFilePath()));
+            } catch (IOException e) {
+                log.warn("Could not index document {}: {}", doc.getId(), e.getMessage());
+            }
+        }
+
+        for (Long docId : index.documentIds()) {
+            if (known.contains(docId)) continue;
+            try {
+                removeDocument(docId);
+            } catch (IOException e) {
+                log.warn("Could not drop document {} from the index: {}", docId, e.getMessage());
+            }
+        }
+    }
+
+    // Drops the index and re-adds every READY document from its stored text
+    public synchronized void rebuild() throws IOException {
+        index = new InvertedIndex();
+        trigrams = new TrigramIndex();
+        buildDerived();
+        generation.incrementAndGet();
+        compact();
+        reconcile();
+        compact();
+        log.info("Search index rebuilt: {} documents, {} terms", index.documentCount(), index.termCount());
+    }
+
+    // The document's owner must be loaded (it is read for the owner: filter).
+    // Tokenizing happens outside the lock so parallel extraction jobs only serialize on the journal.
+    // Throws when the journal record cannot be written; the document is then left out of the index.
+    public void indexDocument(Document doc, String text) throws IOException {
+        indexDocument(doc, Tokenizer.tokenize(text), TrigramIndex.trigrams(text));
+    }
+
+    // tokens and trigramKeys as produced by Tokenizer/TrigramIndex, or by a TextAnalyzer fed while extracting
+    public void indexDocument(Document doc, List<Token> tokens, long[] trigramKeys) throws IOException {
+        long start = metrics.start();
+        DocumentMeta meta = metaOf(doc);
+        synchronized (this) {
+            String[] oldTerms = index.terms(doc.getId());
+            DocumentMeta oldMeta = index.meta(doc.getId());
+            index.add(doc.getId(), meta, tokens);
+            trigrams.add(doc.getId(), trigramKeys);
+            updateDerived(doc.getId(), oldTerms, oldMeta, -1);
+            updateDerived(doc.getId(), index.terms(doc.getId()), meta, 1);
+            generation.incrementAndGet();
+            journalAdd(doc.getId());
+        }
+        metrics.stop("pdfapp.index.update", start, "op", "add");
+        metrics.record("pdfapp.index.tokens", tokens.size());
+    }
+
+    // Indexes a document with identical content by reusing another document's postings
+    public synchronized boolean copyDocument(long fromDocId, Document to) throws IOException {
+        long start = metrics.start();
+        if (!trigrams.contains(fromDocId)) return false;
+        String[] oldTerms = index.terms(to.getId());
+        DocumentMeta oldMeta = index.meta(to.getId());
+        if (!index.copy(fromDocId, to.getId(), metaOf(to))) return false;
+        trigrams.copy(fromDocId, to.getId());
+        updateDerived(to.getId(), oldTerms, oldMeta, -1);
+        updateDerived(to.getId(), index.terms(to.getId()), index.meta(to.getId()), 1);
+        generation.incrementAndGet();
+        journalAdd(to.getId());
+        metrics.stop("pdfapp.index.update", start, "op", "copy");
+        return true;
+    }
+
+    private static DocumentMeta metaOf(Document doc) {
+        return new DocumentMeta(doc.getFilename(),
+                doc.getOwner() != null ? doc.getOwner().getId() : null,
+                doc.getOwner() != null ? doc.getOwner().getUsername() : null,
+                doc.getMimeType(),
+                doc.getUploadedAt() != null ? doc.getUploadedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0L);
+    }
+
+    public synchronized void removeDocument(long docId) throws IOException {
+        if (drop(docId)) {
+            generation.incrementAndGet();
+            appendJournal(OP_REMOVE, docId);
+        }
+    }
+
+    // Unjournaled add: take the document back out so memory matches what a restart would load
+    private void journalAdd(long docId) throws IOException {
+        try {
+            appendJournal(OP_ADD, docId);
+        } catch (IOException e) {
+            drop(docId);
+            generation.incrementAndGet();
+            throw e;
+        }
+    }
+
+    private boolean drop(long docId) {
+        updateDerived(docId, index.terms(docId), index.meta(docId), -1);
+        boolean removed = trigrams.remove(docId);
+        return index.remove(docId) || removed;
+    }
+
+    // ---------------------------------------------------------------------
+    // Suggestions
+    // ---------------------------------------------------------------------
+
+    // Completions of the last word of the input (the words before it are kept) and filenames starting with it
+    public record Suggestions(List<CompletionTrie.Completion> terms, List<CompletionTrie.Completion> filenames) {}
+
+    public Suggestions suggest(String prefix, int k) {
+        long start = metrics.start();
+        List<CompletionTrie.Completion> terms = List.of();
+        List<Token> tokens = Tokenizer.tokenize(prefix);
+        if (!tokens.isEmpty() && Character.isLetterOrDigit(prefix.charAt(prefix.length() - 1))) {
+            Token last = tokens.get(tokens.size() - 1);
+            String before = prefix.substring(0, last.getOffset());
+            terms = termSuggestions.complete(last.getTerm(), k).stream()
+                    .map(c -> new CompletionTrie.Completion(before + c.text(), c.weight()))
+                    .toList();
+        }
+        String filename = prefix.strip().toLowerCase(Locale.ROOT);
+        List<CompletionTrie.Completion> filenames = filename.isEmpty() ? List.of() : filenameSuggestions.complete(filename, k);
+        metrics.stop("pdfapp.suggest", start);
+        return new Suggestions(terms, filenames);
+    }
+
+    // Suggestions and facets follow a document's terms and metadata in (delta 1) or out (delta -1)
+    private void updateDerived(long docId, String[] terms, DocumentMeta meta, int delta) {
+        if (terms != null) {
+            for (String term : terms) termSuggestions.add(term, delta);
+        }
+        if (meta == null) return;
+        if (meta.getFilename() != null) {
+            filenameSuggestions.add(meta.getFilename().toLowerCase(Locale.ROOT), meta.getFilename(), delta);
+        }
+        if (delta > 0) facets.add(docId, meta);
+        else facets.remove(docId, meta);
+    }
+
+    // From scratch, off the current index; also how removed suggestion keys' nodes are reclaimed
+    private void buildDerived() {
+        CompletionTrie terms = new CompletionTrie();
+        CompletionTrie filenames = new CompletionTrie();
+        FacetIndex facetIndex = new FacetIndex();
+        index.forEachTerm(terms::add);
+        for (long docId : index.allDocs().toList()) { // ascending, so bitmap adds append
+            DocumentMeta meta = index.meta(docId);
+            if (meta == null) continue;
+            if (meta.getFilename() != null) filenames.add(meta.getFilename().toLowerCase(Locale.ROOT), meta.getFilename(), 1);
+            facetIndex.add(docId, meta);
+        }
+        termSuggestions = terms;
+        filenameSuggestions = filenames;
+        facets = facetIndex;
+    }
+
+    // ---------------------------------------------------------------------
+    // Facets
+    // ---------------------------------------------------------------------
+
+    // Counts per owner, mimeType and upload month (yyyy-MM) over the hits, as bitmap intersections
+    public Map<String, Map<String, Integer>> facetCounts(DocIdSet hits, int maxValues) {
+        long start = metrics.start();
+        Map<String, Map<String, Integer>> counts = facets.counts(RoaringBitmap.of(hits), maxValues);
+        metrics.stop("pdfapp.search.facets", start);
+        return counts;
+    }
+
+    // Throws QuerySyntaxException for malformed queries
+    public Query parse(String query) {
+        return parse(query, false);
+    }
+
+    // fuzzy: every plain word is matched as if written word~ (see QueryParser)
+    public Query parse(String query, boolean fuzzy) {
+        return new QueryParser(maxPrefixTerms, maxFuzzyTerms, fuzzy).parse(query);
+    }
+
+    // Ids of documents matching the query (see QueryParser for the syntax)
+    public DocIdSet search(Query query) {
+        long start = metrics.start();
+        DocIdSet ids = query.evaluate(index);
+        metrics.stop("pdfapp.search", start, "type", "boolean");
+        metrics.record("pdfapp.search.hits", ids.size(), "type", "boolean");
+        return ids;
+    }
+
+    /**
+     * Top-k documents matching the query, ranked by BM25 over its non-negated terms,
+     * best first, with hit offsets for snippets. A query of only field filters has
+     * nothing to score, so its matches come back in id order with score 0.
+     */
+    public List<InvertedIndex.ScoredDocument> rank(Query query, int k, int maxOffsets) {
+        long start = metrics.start();
+        InvertedIndex current = index;
+        DocIdSet matches = query.evaluate(current);
+
+        Set<String> terms = new LinkedHashSet<>();
+        query.collectTerms(terms);
+        List<InvertedIndex.ScoredDocument> ranked;
+        if (!terms.isEmpty()) {
+            ranked = current.rankBm25(terms, matches, k, bm25K1, bm25B, maxOffsets);
+        } else {
+            ranked = new ArrayList<>();
+            for (int i = 0; i < matches.size() && i < k; i++) {
+                ranked.add(new InvertedIndex.ScoredDocument(matches.get(i), 0));
+            }
+        }
+        metrics.stop("pdfapp.search", start, "type", "ranked");
+        metrics.record("pdfapp.search.hits", matches.size(), "type", "ranked");
+        return ranked;
+    }
+
+    /**
+     * Ids of documents whose text contains the literal, ignoring case, anywhere
+     * (inside words too, e.g. part numbers like "AB-1234-X"). Candidates come from the
+     * trigram index; only they are scanned. Literals under three characters have no
+     * trigram, so every document is a candidate.
+     */
+    public DocIdSet searchSubstring(String literal) {
+        long start = metrics.start();
+        DocIdSet candidates = substringCandidates(literal);
+        TextScanner scanner = new TextScanner(0);
+        DocIdSet ids = verify(candidates, ref -> firstSubstringHit(ref, literal, scanner) != null);
+        metrics.stop("pdfapp.search", start, "type", "substring");
+        metrics.record("pdfapp.search.candidates", candidates.size(), "type", "substring");
+        metrics.record("pdfapp.search.hits", ids.size(), "type", "substring");
+        return ids;
+    }
+
+    /**
+     * Ids of documents with a case-insensitive match of the regex
+     * (java.util.regex syntax; PatternSyntaxException when invalid). The literals every
+     * match must contain (RegexLiterals) pick the candidates; a pattern without any,
+     * like "\d+", scans everything. Throws QueryTimeoutException past search.regex.timeout-ms.
+     */
+    public DocIdSet searchRegex(String regex) {
+        long start = metrics.start();
+        Pattern pattern = compileRegex(regex);
+        DocIdSet candidates = regexCandidates(pattern);
+        long deadline = System.nanoTime() + regexTimeoutMs * 1_000_000;
+        DocIdSet ids = verify(candidates, ref -> firstRegexHit(ref, pattern, deadline, regexTimeoutMs) != null);
+        metrics.stop("pdfapp.search", start, "type", "regex");
+        metrics.record("pdfapp.search.candidates", candidates.size(), "type", "regex");
+        metrics.record("pdfapp.search.hits", ids.size(), "type", "regex");
+        return ids;
+    }
+
+    // Throws PatternSyntaxException; callers that stream compile first so a bad pattern fails before any output
+    public static Pattern compileRegex(String regex) {
+        return Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    private DocIdSet substringCandidates(String literal) {
+        DocIdSet candidates = trigrams.candidates(List.of(literal));
+        return candidates != null ? candidates : trigrams.allDocs();
+    }
+
+    private DocIdSet regexCandidates(Pattern pattern) {
+        DocIdSet candidates = DocIdSet.EMPTY;
+        List<List<String>> alternatives = RegexLiterals.required(pattern.pattern());
+        if (alternatives == null) return trigrams.allDocs();
+        for (List<String> literals : alternatives) {
+            DocIdSet docs = trigrams.candidates(literals);
+            if (docs == null) return trigrams.allDocs();
+            candidates = candidates.or(docs);
+        }
+        return candidates;
+    }
+
+    // Offset of the first occurrence, or null
+    private int[] firstSubstringHit(String textRef, String literal, TextScanner scanner) throws IOException {
+        long[] hit = {-1};
+        try (Reader reader = textStoreService.openReader(textRef)) {
+            scanner.scan(reader, literal, (offset, snippet) -> {
+                hit[0] = offset;
+                return false; // the first hit settles it
+            });
+        }
+        return hit[0] >= 0 ? new int[]{(int) hit[0]} : null;
+    }
+
+    private int[] firstRegexHit(String textRef, Pattern pattern, long deadline, long budgetMs) throws IOException {
+        Matcher matcher = pattern.matcher(new DeadlineCharSequence(textStoreService.read(textRef), deadline, budgetMs));
+        return matcher.find() ? new int[]{matcher.start()} : null;
+    }
+
+    // ---------------------------------------------------------------------
+    // Streaming: matches are handed over one by one, in id order, as soon as they are confirmed
+    // ---------------------------------------------------------------------
+
+    public interface HitListener {
+        // offsets: where the first hits are in the document's text (empty for pure field filters);
+        // return false to stop the search
+        boolean onHit(Document doc, int[] offsets);
+    }
+
+    public enum StreamEnd { COMPLETE, STOPPED, DEADLINE }
+
+    private interface DocMatcher {
+        // Offsets of the document's first hits, or null when it does not match
+        int[] match(Document doc) throws IOException;
+    }
+
+    // Query matches need no text reads; offsets for snippets come from the postings
+    public StreamEnd streamQuery(Query query, int maxOffsets, long deadline, HitListener listener) {
+        InvertedIndex current = index;
+        DocIdSet matches = query.evaluate(current);
+        Set<String> terms = new LinkedHashSet<>();
+        query.collectTerms(terms);
+        return stream("boolean", matches, doc -> current.offsets(doc.getId(), terms, maxOffsets), deadline, listener);
+    }
+
+    public StreamEnd streamSubstring(String literal, long deadline, HitListener listener) {
+        TextScanner scanner = new TextScanner(0);
+        return stream("substring", substringCandidates(literal),
+                byText(ref -> firstSubstringHit(ref, literal, scanner)), deadline, listener);
+    }
+
+    // The stream deadline also bounds the regex, on top of search.regex.timeout-ms
+    public StreamEnd streamRegex(Pattern pattern, long deadline, HitListener listener) {
+        long regexDeadline = Math.min(deadline, System.nanoTime() + regexTimeoutMs * 1_000_000);
+        long budgetMs = Math.max(0, (regexDeadline - System.nanoTime()) / 1_000_000);
+        return stream("regex", regexCandidates(pattern),
+                byText(ref -> firstRegexHit(ref, pattern, regexDeadline, budgetMs)), deadline, listener);
+    }
+
+    private interface TextHitFinder {
+        int[] find(String textRef) throws IOException;
+    }
+
+    // Documents sharing a text (same content) are scanned once
+    private static DocMatcher byText(TextHitFinder finder) {
+        Map<String, int[]> seen = new HashMap<>();
+        return doc -> {
+            String ref = doc.getTextFilePath();
+            if (ref == null) return null;
+            if (seen.containsKey(ref)) return seen.get(ref);
+            int[] offsets = finder.find(ref);
+            seen.put(ref, offsets);
+            return offsets;
+        };
+    }
+
+    // Candidates are loaded STREAM_BATCH at a time, so the first hit does not wait for the rest
+    private StreamEnd stream(String type, DocIdSet candidates, DocMatcher matcher, long deadline, HitListener listener) {
+        long start = metrics.start();
+        List<Long> ids = candidates.toList();
+        int hits = 0;
+        StreamEnd end = StreamEnd.COMPLETE;
+        batches:
+        for (int i = 0; i < ids.size(); i += STREAM_BATCH) {
+            List<Document> docs = new ArrayList<>(documentRepository.findWithOwnerByIdIn(
+                    ids.subList(i, Math.min(ids.size(), i + STREAM_BATCH))));
+            docs.sort(Comparator.comparing(Document::getId));
+            for (Document doc : docs) {
+                if (System.nanoTime() - deadline >= 0) {
+                    end = StreamEnd.DEADLINE;
+                    break batches;
+                }
+                int[] offsets;
+                try {
+                    offsets = matcher.match(doc);
+                } catch (IOException e) {
+                    log.warn("Could not read text of document {} while searching: {}", doc.getId(), e.getMessage());
+                    continue;
+                } catch (QueryTimeoutException e) {
+                    end = StreamEnd.DEADLINE;
+                    break batches;
+                }
+                if (offsets == null) continue;
+                hits++;
+                if (!listener.onHit(doc, offsets)) {
+                    end = StreamEnd.STOPPED;
+                    break batches;
+                }
+            }
+        }
+        metrics.stop("pdfapp.search.stream", start, "type", type, "end", end.name().toLowerCase(Locale.ROOT));
+        metrics.record("pdfapp.search.hits", hits, "type", type + "-stream");
+        return end;
+    }
+
+    private interface TextMatcher {
+        boolean matches(String textRef) throws IOException;
+    }
+
+    // Candidates whose stored text matches; documents sharing a text (same content) are checked once
+    private DocIdSet verify(DocIdSet candidates, TextMatcher matcher) {
+        Map<String, List<Long>> byRef = new LinkedHashMap<>();
+        List<Long> ids = candidates.toList();
+        for (int i = 0; i < ids.size(); i += REF_BATCH) {
+            for (Object[] row : documentRepository.findTextRefsByIdIn(ids.subList(i, Math.min(ids.size(), i + REF_BATCH)))) {
+                if (row[1] != null) byRef.computeIfAbsent((String) row[1], r -> new ArrayList<>()).add((Long) row[0]);
+            }
+        }
+
+        long[] matches = new long[ids.size()];
+        int n = 0;
+        for (Map.Entry<String, List<Long>> entry : byRef.entrySet()) {
+            try {
+                if (!matcher.matches(entry.getKey())) continue;
+                for (long id : entry.getValue()) matches[n++] = id;
+            } catch (IOException e) {
+                log.warn("Could not read text {} while searching: {}", entry.getKey(), e.getMessage());
+            }
+        }
+        return DocIdSet.fromUnsorted(Arrays.copyOf(matches, n));
+    }
+
+    // Text whose charAt gives up once the deadline passes; Matcher reads the input only through it
+    private static class DeadlineCharSequence implements CharSequence {
+        private final CharSequence text;
+        private final long deadline;
+        private final long budgetMs;
+        private int reads;
+
+        DeadlineCharSequence(CharSequence text, long deadline, long budgetMs) {
+            this.text = text;
+            this.deadline = deadline;
+            this.budgetMs = budgetMs;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if ((++reads & 0xFFFF) == 0 && System.nanoTime() > deadline) {
+                throw new QueryTimeoutException("Regex search took longer than " + budgetMs + " ms");
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new DeadlineCharSequence(text.subSequence(start, end), deadline, budgetMs);
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+
+    private void appendJournal(byte op, long docId) throws IOException {
+        boolean fresh = !Files.exists(journalPath());
+        long size = fresh ? 0 : Files.size(journalPath());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(journalPath(), StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+            if (fresh) {
+                out.writeInt(JOURNAL_MAGIC);
+                out.writeInt(JOURNAL_VERSION);
+            }
+            out.writeByte(op);
+            out.writeLong(docId);
+            if (op == OP_ADD) {
+                ByteArrayOutputStream payload = new ByteArrayOutputStream();
+                DataOutputStream record = new DataOutputStream(payload);
+                index.writeDocument(docId, record);
+                trigrams.writeDocument(docId, record);
+                out.writeInt(payload.size());
+                payload.writeTo(out);
+            }
+        } catch (IOException e) {
+            log.error("Failed to append to index journal", e);
+            // Cut off the partial record, or the replay would stop (or choke) there
+            try (FileChannel channel = FileChannel.open(journalPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(size);
+            } catch (IOException ignored) {
+                // nothing more to do; a torn tail is still skipped on replay
+            }
+            throw e;
+        }
+
+        if (++journalRecords >= journalCompactThreshold && !compactionQueued) {
+            compactionQueued = true;
+            compactor.execute(this::compactInBackground);
+        }
+    }
+
+    private void compactInBackground() {
+        try {
+            Snapshot snapshot;
+            synchronized (this) {
+                compactionQueued = false;
+                snapshot = capture();
+            }
+            write(snapshot);
+        } catch (IOException e) {
+            log.error("Index compaction failed", e);
+        }
+    }
+
+    // Synchronous compaction, for load and rebuild
+    private void compact() throws IOException {
+        write(capture());
+    }
+
+    private record Snapshot(long seq, byte[] index, byte[] trigrams) {}
+
+    // Caller holds the monitor. Copies both indexes to memory and sets the journal they cover aside,
+    // so later updates start a fresh journal while the copies are written out.
+    private Snapshot capture() throws IOException {
+        trigrams.purge();
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(indexBytes)) {
+            index.writeSnapshot(out);
+        }
+        ByteArrayOutputStream trigramBytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(trigramBytes)) {
+            trigrams.writeSnapshot(out);
+        }
+
+        if (Files.exists(journalPath())) {
+            if (!Files.exists(setAsidePath())) {
+                Files.move(journalPath(), setAsidePath(), StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                // An earlier snapshot was never written; its journal still counts, so keep both
+                try (InputStream in = Files.newInputStream(journalPath());
+                     OutputStream out = Files.newOutputStream(setAsidePath(), StandardOpenOption.APPEND)) {
+                    in.skipNBytes(8); // format header
+                    in.transferTo(out);
+                }
+                Files.delete(journalPath());
+            }
+        }
+        journalRecords = 0;
+
+        if (termSuggestions.garbage() > termSuggestions.keyCount()
+                || filenameSuggestions.garbage() > filenameSuggestions.keyCount()) {
+            buildDerived();
+        }
+        return new Snapshot(++capturedSnapshots, indexBytes.toByteArray(), trigramBytes.toByteArray());
+    }
+
+    // Writes fresh snapshots next to the old ones and swaps them in atomically; a snapshot overtaken
+    // by a newer one is skipped. The set-aside journal goes once the latest capture is on disk
+    // (replaying it over a mix of old and new snapshots after a crash in between is harmless).
+    private void write(Snapshot snapshot) throws IOException {
+        synchronized (snapshotLock) {
+            if (snapshot.seq() <= writtenSnapshots) return;
+            replace(snapshotPath(), snapshot.index());
+            replace(trigramSnapshotPath(), snapshot.trigrams());
+            writtenSnapshots = snapshot.seq();
+        }
+        synchronized (this) {
+            if (snapshot.seq() == capturedSnapshots) Files.deleteIfExists(setAsidePath());
+        }
+    }
+
+    private static void replace(Path target, byte[] content) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(tmp, content);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
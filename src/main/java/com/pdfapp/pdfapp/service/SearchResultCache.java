@@ -0,0 +1,118 @@
+package com.pdfapp.pdfapp.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pdfapp.pdfapp.search.DocIdSet;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Finished search responses (the DTO lists the search endpoints return, together with
+ * the matching id set for boolean/substring/regex searches), keyed by
+ * the normalized query and the index generation they were computed at. Any change
+ * to the indexed corpus moves the generation on, so older entries can never be
+ * served again, and the first lookup after a change clears them out. Bounded by
+ * the total number of hits held, with Caffeine's W-TinyLFU policy keeping the
+ * frequently repeated queries.
+ * Hit and miss counts are exported as cache.gets{cache="pdfapp.search.results"}.
+ */
+@Service
+public class SearchResultCache {
+
+    private record Key(String kind, String query, int k, long generation) {
+    }
+
+    // Ids matching a search, ascending, and the documents the endpoint returns for them
+    public record Hits<T>(DocIdSet ids, List<T> documents) {
+    }
+
+    private final SearchIndexService searchIndexService;
+    private final MetricsService metrics;
+
+    // Total result rows held across all cached queries
+    @Value("${search.cache.max-hits:100000}")
+    private long maxHits;
+
+    private Cache<Key, Object> cache; // a List of results, or Hits
+    private volatile long generation = -1;
+
+    public SearchResultCache(SearchIndexService searchIndexService, MetricsService metrics) {
+        this.searchIndexService = searchIndexService;
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxHits)
+                .weigher((Key key, Object value) -> 1 + (value instanceof Hits<?> hits ? hits.documents() : (List<?>) value).size())
+                .recordStats()
+                .build();
+        metrics.monitor(cache, "pdfapp.search.results");
+    }
+
+    // Whitespace runs outside quotes are insignificant to QueryParser; case is not (AND/OR/NOT are operators)
+    static String normalize(String query) {
+        StringBuilder sb = new StringBuilder(query.length());
+        boolean quoted = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (c == '"') quoted = !quoted;
+            if (!quoted && Character.isWhitespace(c)) {
+                if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') sb.append(' ');
+            } else {
+                sb.append(c);
+            }
+        }
+        int end = sb.length();
+        if (end > 0 && sb.charAt(end - 1) == ' ') sb.setLength(end - 1);
+        return sb.toString();
+    }
+
+    /**
+     * The cached result for the query, or the loader's (which is then cached).
+     * k distinguishes result sizes of the same query; pass 0 when there is none.
+     * Exceptions from the loader (e.g. QuerySyntaxException) propagate and cache nothing.
+     */
+    public <T> List<T> get(String kind, String query, int k, Supplier<List<T>> loader) {
+        return load(kind, normalize(query), k, () -> List.copyOf(loader.get()));
+    }
+
+    // Same, keyed by the query exactly as given (substring and regex searches, where whitespace matters)
+    public <T> List<T> getVerbatim(String kind, String query, int k, Supplier<List<T>> loader) {
+        return load(kind, query, k, () -> List.copyOf(loader.get()));
+    }
+
+    // Cached ids and documents of a search; documents are looked up for the ids only on a miss
+    public <T> Hits<T> getHits(String kind, String query, Supplier<DocIdSet> search, Function<DocIdSet, List<T>> documents) {
+        return load(kind, normalize(query), 0, () -> hits(search, documents));
+    }
+
+    // Same, keyed by the query exactly as given
+    public <T> Hits<T> getHitsVerbatim(String kind, String query, Supplier<DocIdSet> search, Function<DocIdSet, List<T>> documents) {
+        return load(kind, query, 0, () -> hits(search, documents));
+    }
+
+    private static <T> Hits<T> hits(Supplier<DocIdSet> search, Function<DocIdSet, List<T>> documents) {
+        DocIdSet ids = search.get();
+        return new Hits<>(ids, List.copyOf(documents.apply(ids)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> V load(String kind, String query, int k, Supplier<V> loader) {
+        // Read before loading: a result that races an index update is filed under the older generation
+        long current = searchIndexService.generation();
+        if (current != generation) {
+            // Stale entries can't hit, but their frequency history would keep new ones from being admitted
+            generation = current;
+            cache.invalidateAll();
+        }
+        Key key = new Key(kind, query, k, current);
+        return (V) cache.get(key, ignored -> loader.get());
+    }
+}
@@ -0,0 +1,350 @@
+package com.pdfapp.pdfapp.service;
+
+import com.pdfapp.pdfapp.extract.ExtractedText;
+import com.pdfapp.pdfapp.extract.TextSink;
+import com.pdfapp.pdfapp.store.SegmentStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Persists extracted text. New texts go to the segment store, block-compressed, and
+ * are referenced as "seg:&lt;key&gt;"; any other reference is a legacy per-document UTF-8 file with its
+ * page-offset table (one int per page, the character offset where the page starts)
+ * in a ".pages" file next to it. Both kinds are readable through the same methods.
+ */
+@Service
+public class TextStoreService {
+
+    private static final Logger log = LoggerFactory.getLogger(TextStoreService.class);
+
+    public static final String SEGMENT_PREFIX = "seg:";
+
+    @Value("${storage.text-dir:extracted_texts}")
+    private String textDir;
+
+    @Value("${text.segment.max-bytes:268435456}")
+    private long segmentMaxBytes;
+
+    // Deflate level for new texts (1-9); 0 stores them uncompressed
+    @Value("${text.compression-level:6}")
+    private int compressionLevel;
+
+    // Sealed segments with at least this fraction of dead bytes are rewritten
+    @Value("${text.segment.compact-dead-ratio:0.5}")
+    private double compactDeadRatio;
+
+    @Value("${text.segment.compact-interval-seconds:300}")
+    private long compactIntervalSeconds;
+
+    private final MetricsService metrics;
+    private SegmentStore segments;
+    private ScheduledExecutorService compactor;
+
+    public TextStoreService(MetricsService metrics) {
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        segments = SegmentStore.open(Paths.get(textDir, "segments"), segmentMaxBytes, compressionLevel);
+        metrics.gauge("pdfapp.textstore.texts", "Texts held in the segment store", segments, s -> s.keys().size());
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "text-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        compactor.scheduleWithFixedDelay(this::compactQuietly, compactIntervalSeconds, compactIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        compactor.shutdownNow();
+        segments.close();
+    }
+
+    public static boolean isSegmentRef(String textRef) {
+        return textRef != null && textRef.startsWith(SEGMENT_PREFIX);
+    }
+
+    public static String segmentRef(String key) {
+        return SEGMENT_PREFIX + key;
+    }
+
+    private static String key(String textRef) {
+        return textRef.substring(SEGMENT_PREFIX.length());
+    }
+
+    private static Path pagesPath(String textRef) {
+        return Paths.get(textRef + ".pages");
+    }
+
+    public void write(String textRef, ExtractedText extracted) throws IOException {
+        if (isSegmentRef(textRef)) {
+            long start = metrics.start();
+            segments.put(key(textRef), extracted.getText(), extracted.getPageOffsets());
+            metrics.stop("pdfapp.textstore.write", start);
+            return;
+        }
+
+        Files.writeString(Paths.get(textRef), extracted.getText());
+
+        int[] offsets = extracted.getPageOffsets();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(pagesPath(textRef))))) {
+            out.writeInt(offsets.length);
+            for (int offset : offsets) out.writeInt(offset);
+        }
+    }
+
+    // Streams a text into the store as it is extracted; nothing is readable until commit()
+    public TextWriter openWriter(String textRef) throws IOException {
+        return new TextWriter(textRef);
+    }
+
+    /**
+     * A text being written. Segment texts are spilled block by block and appended on commit;
+     * legacy refs are written next to their file and moved over it. Closing without commit() discards the text.
+     */
+    public class TextWriter implements TextSink, Closeable {
+        private final String textRef;
+        private final SegmentStore.TextWriter segment;
+        private final Path tempFile;
+        private final Writer file;
+        private int[] pageOffsets = new int[4];
+        private int pages;
+        private long chars;
+        private boolean committed;
+
+        private TextWriter(String textRef) throws IOException {
+            this.textRef = textRef;
+            if (isSegmentRef(textRef)) {
+                this.segment = segments.openWriter(key(textRef));
+                this.tempFile = null;
+                this.file = null;
+            } else {
+                this.segment = null;
+                Path path = Paths.get(textRef).toAbsolutePath();
+                this.tempFile = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+                this.file = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8);
+            }
+        }
+
+        @Override
+        public void startPage() throws IOException {
+            if (segment != null) {
+                segment.startPage();
+                return;
+            }
+            if (pages == pageOffsets.length) pageOffsets = Arrays.copyOf(pageOffsets, pages * 2);
+            pageOffsets[pages++] = Math.toIntExact(chars);
+        }
+
+        @Override
+        public void append(CharSequence text) throws IOException {
+            if (segment != null) {
+                segment.append(text);
+                return;
+            }
+            file.append(text);
+            chars += text.length();
+        }
+
+        public void commit() throws IOException {
+            if (segment != null) {
+                long start = metrics.start();
+                segment.commit();
+                metrics.stop("pdfapp.textstore.write", start);
+            } else {
+                file.close();
+                Files.move(tempFile, Paths.get(textRef), StandardCopyOption.REPLACE_EXISTING);
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(pagesPath(textRef))))) {
+                    out.writeInt(pages);
+                    for (int i = 0; i < pages; i++) out.writeInt(pageOffsets[i]);
+                }
+            }
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (segment != null) {
+                segment.close();
+            } else if (!committed) {
+                file.close();
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    // Streams a stored text, page table included, under another ref
+    public void copy(String fromRef, String toRef) throws IOException {
+        int[] offsets = pageOffsets(fromRef);
+        try (Reader reader = openReader(fromRef); TextWriter writer = openWriter(toRef)) {
+            char[] buf = new char[8192];
+            long pos = 0;
+            int page = 0;
+            int read;
+            while ((read = reader.read(buf)) > 0) {
+                int from = 0;
+                while (from < read) {
+                    while (page < offsets.length && offsets[page] <= pos + from) {
+                        writer.startPage();
+                        page++;
+                    }
+                    int to = page < offsets.length ? (int) Math.min(read, offsets[page] - pos) : read;
+                    writer.append(CharBuffer.wrap(buf, from, to - from));
+                    from = to;
+                }
+                pos += read;
+            }
+            while (page++ < offsets.length) writer.startPage(); // pages at the very end, if any
+            writer.commit();
+        }
+    }
+
+    public boolean exists(String textRef) {
+        if (textRef == null) return false;
+        return isSegmentRef(textRef) ? segments.contains(key(textRef)) : Files.exists(Paths.get(textRef));
+    }
+
+    public String read(String textRef) throws IOException {
+        return isSegmentRef(textRef) ? segments.read(key(textRef)) : Files.readString(Paths.get(textRef));
+    }
+
+    public Reader openReader(String textRef) throws IOException {
+        if (isSegmentRef(textRef)) {
+            return new BufferedReader(new InputStreamReader(segments.openStream(key(textRef)), StandardCharsets.UTF_8));
+        }
+        return Files.newBufferedReader(Paths.get(textRef), StandardCharsets.UTF_8);
+    }
+
+    // The UTF-8 text as a download; segment texts are served straight from the mapped segment
+    public Resource resource(String textRef) throws IOException {
+        if (!isSegmentRef(textRef)) return new FileSystemResource(Paths.get(textRef));
+
+        String key = key(textRef);
+        return segmentResource(key, segments.byteLength(key), () -> segments.openStream(key));
+    }
+
+    // The text gzip-encoded, straight from the stored blocks; null when it is not stored compressed
+    public Resource gzipResource(String textRef) throws IOException {
+        if (!isSegmentRef(textRef) || !segments.isCompressed(key(textRef))) return null;
+
+        String key = key(textRef);
+        return segmentResource(key, segments.gzipLength(key), () -> segments.openGzip(key));
+    }
+
+    private Resource segmentResource(String key, long length, InputStreamSource source) {
+        return new AbstractResource() {
+            @Override
+            public String getDescription() {
+                return "segment text [" + key + "]";
+            }
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return source.getInputStream();
+            }
+
+            @Override
+            public long contentLength() {
+                return length;
+            }
+
+            @Override
+            public boolean exists() {
+                return segments.contains(key);
+            }
+        };
+    }
+
+    // Reads up to length characters starting at a character offset
+    public String readRange(String textRef, long start, int length) throws IOException {
+        if (isSegmentRef(textRef)) return segments.readRange(key(textRef), start, length);
+
+        try (Reader reader = openReader(textRef)) {
+            long skipped = 0;
+            while (skipped < start) {
+                long n = reader.skip(start - skipped);
+                if (n <= 0) return "";
+                skipped += n;
+            }
+            char[] buf = new char[length];
+            int filled = 0;
+            int read;
+            while (filled < length && (read = reader.read(buf, filled, length - filled)) > 0) filled += read;
+            return new String(buf, 0, filled);
+        }
+    }
+
+    // Text stored before page tracking existed is reported as a single page
+    public int[] pageOffsets(String textRef) throws IOException {
+        if (isSegmentRef(textRef)) return segments.pageOffsets(key(textRef));
+
+        Path pages = pagesPath(textRef);
+        if (!Files.exists(pages)) return new int[]{0};
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(pages)))) {
+            int[] offsets = new int[in.readInt()];
+            for (int i = 0; i < offsets.length; i++) offsets[i] = in.readInt();
+            return offsets;
+        }
+    }
+
+    // Sort key that visits texts in the order they sit on disk (legacy files last)
+    public long locality(String textRef) {
+        return isSegmentRef(textRef) ? segments.locality(key(textRef)) : Long.MAX_VALUE;
+    }
+
+    // Refs of every text held in the segment store
+    public Set<String> segmentRefs() {
+        return segments.keys().stream().map(TextStoreService::segmentRef).collect(Collectors.toSet());
+    }
+
+    public void delete(String textRef) throws IOException {
+        if (textRef == null) return;
+        if (isSegmentRef(textRef)) {
+            segments.delete(key(textRef));
+            return;
+        }
+        Files.deleteIfExists(Paths.get(textRef));
+        Files.deleteIfExists(pagesPath(textRef));
+    }
+
+    public int compact() throws IOException {
+        long start = metrics.start();
+        int reclaimed = segments.compact(compactDeadRatio);
+        if (reclaimed > 0) metrics.stop("pdfapp.textstore.compaction", start);
+        return reclaimed;
+    }
+
+    private void compactQuietly() {
+        try {
+            int reclaimed = compact();
+            if (reclaimed > 0) log.info("Text store compaction reclaimed {} segments", reclaimed);
+        } catch (Exception e) {
+            log.warn("Text store compaction failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.pdfapp.pdfapp.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Raw Deflate for text blocks. Every block is compressed by its own Deflater and
+ * ends with a full flush: it needs no history to inflate, and the blocks of a text
+ * concatenated are one valid (unterminated) deflate stream, which is what lets a
+ * gzip response be assembled from the stored bytes without recompressing.
+ */
+final class BlockCodec {
+
+    static final byte CODEC_DEFLATE = 1;
+
+    // Gzip member header: magic, method deflate, no flags, no mtime, no extra flags, OS unknown
+    static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    // An empty final fixed-Huffman block; terminates the stream the flushed blocks leave open
+    static final byte[] DEFLATE_END = {0x03, 0x00};
+
+    private BlockCodec() {
+    }
+
+    static byte[] deflate(byte[] block, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(block);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(block.length / 2 + 64);
+            byte[] buf = new byte[8192];
+            int n;
+            do {
+                n = deflater.deflate(buf, 0, buf.length, Deflater.FULL_FLUSH);
+                out.write(buf, 0, n);
+            } while (n == buf.length); // a full buffer means more flushed output is pending
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static byte[] inflate(ByteBuffer block) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(block);
+            byte[] out = new byte[Math.max(1024, block.remaining() * 4)];
+            int size = 0;
+            while (true) {
+                if (size == out.length) out = Arrays.copyOf(out, out.length * 2);
+                int n = inflater.inflate(out, size, out.length - size);
+                size += n;
+                if (n == 0 && (inflater.needsInput() || inflater.finished())) break;
+                if (n == 0 && inflater.needsDictionary()) throw new IOException("Corrupt text block");
+            }
+            return size == out.length ? out : Arrays.copyOf(out, size);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt text block: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // Gzip trailer: CRC32 and length (mod 2^32) of the uncompressed data, little-endian
+    static byte[] gzipTrailer(int crc, long length) {
+        return ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(crc).putInt((int) length).array();
+    }
+}
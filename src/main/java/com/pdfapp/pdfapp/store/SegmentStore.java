@@ -0,0 +1,718 @@
+package com.pdfapp.pdfapp.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only store packing many texts into large segment files (seg-000001.dat, ...).
+ *
+ * Record layout (big-endian): magic, type, key; for texts also the codec (for
+ * compressed texts followed by the uncompressed length and CRC32), char length,
+ * page offsets, a block table (char start and payload byte offset of every ~64 KB
+ * block, so any range decodes without reading from the start), payload length,
+ * CRC32 and the payload. Blocks are UTF-8, or with the Deflate codec each block is
+ * compressed on its own (see BlockCodec). A delete appends a tombstone; the last record for a
+ * key wins. The offset table lives in memory and is rebuilt at startup by walking
+ * record headers. Reads go through read-only mappings of the segment files;
+ * compaction copies the live records of mostly-dead segments to the end of the
+ * active one and removes the old file.
+ */
+public class SegmentStore implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentStore.class);
+
+    private static final int RECORD_MAGIC = 0x54585453; // "TXTS"
+    private static final byte TYPE_TEXT = 1;
+    private static final byte TYPE_TOMBSTONE = 2;
+    static final byte CODEC_RAW = 0;
+    static final int BLOCK_BYTES = 65536;
+    private static final String SEGMENT_PREFIX = "seg-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final String SPILL_PREFIX = "spill-";
+
+    // Where one text record lives; offsets in the block table are relative to the payload
+    static final class Location {
+        final int segment;
+        final long recordOffset;
+        final int recordLength;
+        final long payloadOffset;
+        final int payloadLength;
+        final byte codec;
+        final int rawLength;
+        final int rawCrc;
+        final int charLength;
+        final int[] pageOffsets;
+        final int[] blockChars;
+        final int[] blockBytes;
+
+        Location(int segment, long recordOffset, int recordLength, long payloadOffset, int payloadLength,
+                 byte codec, int rawLength, int rawCrc, int charLength, int[] pageOffsets, int[] blockChars, int[] blockBytes) {
+            this.segment = segment;
+            this.recordOffset = recordOffset;
+            this.recordLength = recordLength;
+            this.payloadOffset = payloadOffset;
+            this.payloadLength = payloadLength;
+            this.codec = codec;
+            this.rawLength = rawLength;
+            this.rawCrc = rawCrc;
+            this.charLength = charLength;
+            this.pageOffsets = pageOffsets;
+            this.blockChars = blockChars;
+            this.blockBytes = blockBytes;
+        }
+
+        Location movedTo(int newSegment, long newRecordOffset) {
+            return new Location(newSegment, newRecordOffset, recordLength, payloadOffset - recordOffset + newRecordOffset,
+                    payloadLength, codec, rawLength, rawCrc, charLength, pageOffsets, blockChars, blockBytes);
+        }
+    }
+
+    // A parsed record header; location is null for tombstones
+    private record Header(byte type, String key, int length, Location location, int crc) {}
+
+    private final Path dir;
+    private final long maxSegmentBytes;
+    private final int compressionLevel;
+    private final Map<String, Location> locations = new ConcurrentHashMap<>();
+    private final Map<Integer, MappedByteBuffer> mappings = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> liveBytes = new HashMap<>();
+    private final NavigableMap<Integer, Long> segmentSizes = new TreeMap<>();
+
+    private int activeSegment;
+    private FileChannel active;
+    private long activeSize;
+
+    private SegmentStore(Path dir, long maxSegmentBytes, int compressionLevel) {
+        this.dir = dir;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.compressionLevel = compressionLevel;
+    }
+
+    // compressionLevel is a Deflater level (1-9); 0 stores new texts uncompressed
+    public static SegmentStore open(Path dir, long maxSegmentBytes, int compressionLevel) throws IOException {
+        Files.createDirectories(dir);
+        SegmentStore store = new SegmentStore(dir, maxSegmentBytes, compressionLevel);
+        store.load();
+        return store;
+    }
+
+    private Path segmentPath(int segment) {
+        return dir.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    // Walks every record header in segment order; only the last segment (the one a crash can tear) is CRC-checked
+    private void load() throws IOException {
+        List<Integer> segments = segmentFiles();
+        try (Stream<Path> list = Files.list(dir)) {
+            for (Path spill : list.filter(p -> p.getFileName().toString().startsWith(SPILL_PREFIX)).toList()) {
+                Files.deleteIfExists(spill); // a text whose writer never committed
+            }
+        }
+
+        for (int i = 0; i < segments.size(); i++) {
+            int segment = segments.get(i);
+            boolean last = i == segments.size() - 1;
+            long valid;
+            try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+                valid = scan(segment, channel, last);
+                if (valid < channel.size()) {
+                    log.warn("Segment {} has {} unreadable trailing bytes", segment, channel.size() - valid);
+                }
+            }
+            if (last) {
+                try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.WRITE)) {
+                    if (channel.size() > valid) channel.truncate(valid);
+                }
+            }
+            segmentSizes.put(segment, valid);
+        }
+
+        activeSegment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+        openActive();
+        log.info("Text segment store: {} texts in {} segments", locations.size(), segmentSizes.size());
+    }
+
+    // Segment numbers of the files on disk, ascending (including any a compaction failed to delete)
+    private List<Integer> segmentFiles() throws IOException {
+        List<Integer> segments = new ArrayList<>();
+        try (Stream<Path> list = Files.list(dir)) {
+            list.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith(SEGMENT_PREFIX) && n.endsWith(SEGMENT_SUFFIX))
+                    .forEach(n -> segments.add(Integer.parseInt(n.substring(SEGMENT_PREFIX.length(), n.length() - SEGMENT_SUFFIX.length()))));
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private long scan(int segment, FileChannel channel, boolean verify) throws IOException {
+        long size = channel.size();
+        if (size == 0) return 0;
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        long pos = 0;
+        while (pos < size) {
+            Header header = parseHeader(buf, segment, pos);
+            if (header == null) break;
+            if (verify && header.location() != null && crc(buf, header.location()) != header.crc()) break;
+
+            forget(header.key());
+            if (header.location() != null) {
+                locations.put(header.key(), header.location());
+                liveBytes.merge(segment, (long) header.length(), Long::sum);
+            }
+            pos += header.length();
+        }
+        return pos;
+    }
+
+    private static Header parseHeader(ByteBuffer file, int segment, long offset) {
+        try {
+            ByteBuffer buf = file.duplicate();
+            buf.position(Math.toIntExact(offset));
+            if (buf.getInt() != RECORD_MAGIC) return null;
+            byte type = buf.get();
+            byte[] key = new byte[buf.getShort() & 0xffff];
+            buf.get(key);
+            String k = new String(key, StandardCharsets.UTF_8);
+            if (type == TYPE_TOMBSTONE) return new Header(type, k, (int) (buf.position() - offset), null, 0);
+            if (type != TYPE_TEXT) return null;
+
+            byte codec = buf.get();
+            boolean raw = codec == CODEC_RAW;
+            if (!raw && codec != BlockCodec.CODEC_DEFLATE) return null;
+            int rawLength = raw ? 0 : buf.getInt();
+            int rawCrc = raw ? 0 : buf.getInt();
+            int charLength = buf.getInt();
+            int[] pages = readInts(buf);
+            int[] blockChars = readInts(buf);
+            int[] blockBytes = readInts(buf);
+            int payloadLength = buf.getInt();
+            int crc = buf.getInt();
+            long payloadOffset = buf.position();
+            if (blockChars.length != blockBytes.length || payloadOffset + payloadLength > buf.limit()) return null;
+
+            int length = (int) (payloadOffset + payloadLength - offset);
+            Location location = new Location(segment, offset, length, payloadOffset, payloadLength, codec,
+                    raw ? payloadLength : rawLength, raw ? crc : rawCrc, charLength, pages, blockChars, blockBytes);
+            return new Header(type, k, length, location, crc);
+        } catch (RuntimeException e) {
+            return null; // torn or garbage record
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buf) {
+        int count = buf.getInt();
+        if (count < 0 || count > buf.remaining() / 4) throw new IllegalStateException("Bad count " + count);
+        int[] values = new int[count];
+        for (int i = 0; i < values.length; i++) values[i] = buf.getInt();
+        return values;
+    }
+
+    private static int crc(ByteBuffer file, Location location) {
+        CRC32 crc = new CRC32();
+        crc.update(slice(file, location.payloadOffset, location.payloadLength));
+        return (int) crc.getValue();
+    }
+
+    private static ByteBuffer slice(ByteBuffer buf, long offset, int length) {
+        return buf.slice(Math.toIntExact(offset), length);
+    }
+
+    private void openActive() throws IOException {
+        active = FileChannel.open(segmentPath(activeSegment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        activeSize = active.size();
+        segmentSizes.putIfAbsent(activeSegment, activeSize);
+    }
+
+    private void roll() throws IOException {
+        active.close();
+        activeSegment++;
+        openActive();
+    }
+
+    // Drops the live-byte accounting of a key's current record
+    private void forget(String key) {
+        Location old = locations.remove(key);
+        if (old != null) liveBytes.merge(old.segment, (long) -old.recordLength, Long::sum);
+    }
+
+    private static byte[] encodeHeader(byte type, String key) {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(7 + k.length);
+        buf.putInt(RECORD_MAGIC).put(type).putShort((short) k.length).put(k);
+        return buf.array();
+    }
+
+    public void put(String key, String text, int[] pageOffsets) throws IOException {
+        try (TextWriter writer = openWriter(key)) {
+            writer.append(text);
+            writer.pages = pageOffsets.clone();
+            writer.pageCount = pageOffsets.length;
+            writer.commit();
+        }
+    }
+
+    // Streams a text into the store; see TextWriter
+    public TextWriter openWriter(String key) throws IOException {
+        return new TextWriter(key);
+    }
+
+    /**
+     * One text written as it is produced. Blocks are encoded (and compressed) as they fill
+     * and spilled to a temporary file next to the segments, with the lengths, CRCs and block
+     * table worked out on the way; commit() then appends the finished record to the active
+     * segment. The heap holds one block however long the text is. Not thread-safe; closing
+     * without commit() discards the text.
+     */
+    public final class TextWriter implements Closeable {
+        private final String key;
+        private final Path spillPath;
+        private final FileChannel spill;
+        private final boolean compress = compressionLevel > 0;
+        private final StringBuilder block = new StringBuilder();
+        private int blockUtf8; // UTF-8 bytes of block, as put() always counted them
+        private char pendingHigh; // a high surrogate whose pair may arrive with the next append
+        private long chars;
+        private int flushedChars;
+        private int[] pages = new int[4];
+        private int pageCount;
+        private int[] blockChars = new int[16];
+        private int[] blockBytes = new int[16];
+        private int blocks;
+        private long payloadLength;
+        private long rawLength;
+        private final CRC32 rawCrc = new CRC32();
+        private final CRC32 crc = new CRC32();
+        private boolean committed;
+
+        private TextWriter(String key) throws IOException {
+            this.key = key;
+            this.spillPath = Files.createTempFile(dir, SPILL_PREFIX, ".tmp");
+            this.spill = FileChannel.open(spillPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        public void startPage() throws IOException {
+            if (pageCount == pages.length) pages = Arrays.copyOf(pages, pageCount * 2);
+            pages[pageCount++] = Math.toIntExact(chars);
+        }
+
+        public void append(CharSequence text) throws IOException {
+            chars += text.length();
+            if (chars > Integer.MAX_VALUE) throw new IOException("Text of more than " + Integer.MAX_VALUE + " characters");
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (pendingHigh != 0) {
+                    char high = pendingHigh;
+                    pendingHigh = 0;
+                    if (Character.isLowSurrogate(c)) {
+                        add(high, c);
+                        continue;
+                    }
+                    add(high);
+                }
+                if (Character.isHighSurrogate(c)) pendingHigh = c;
+                else add(c);
+            }
+        }
+
+        // Blocks end at ~64 KB of UTF-8 and never split a surrogate pair, so each one decodes on its own
+        private void add(char c) throws IOException {
+            if (blockUtf8 >= BLOCK_BYTES) flushBlock();
+            block.append(c);
+            blockUtf8 += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+
+        private void add(char high, char low) throws IOException {
+            if (blockUtf8 >= BLOCK_BYTES) flushBlock();
+            block.append(high).append(low);
+            blockUtf8 += 4;
+        }
+
+        private void flushBlock() throws IOException {
+            if (block.length() == 0) return;
+            byte[] bytes = block.toString().getBytes(StandardCharsets.UTF_8);
+            rawCrc.update(bytes);
+            rawLength += bytes.length;
+            if (compress) bytes = BlockCodec.deflate(bytes, compressionLevel);
+
+            if (blocks == blockChars.length) {
+                blockChars = Arrays.copyOf(blockChars, blocks * 2);
+                blockBytes = Arrays.copyOf(blockBytes, blocks * 2);
+            }
+            blockChars[blocks] = flushedChars;
+            blockBytes[blocks] = (int) payloadLength;
+            blocks++;
+            flushedChars += block.length();
+            payloadLength += bytes.length;
+            if (payloadLength > Integer.MAX_VALUE - (1 << 20)) throw new IOException("Text too large for one record");
+            crc.update(bytes);
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            while (buf.hasRemaining()) spill.write(buf);
+
+            block.setLength(0);
+            blockUtf8 = 0;
+        }
+
+        // Makes the text readable under its key, replacing any earlier one
+        public void commit() throws IOException {
+            if (committed) throw new IllegalStateException("Already committed");
+            if (pendingHigh != 0) {
+                char high = pendingHigh;
+                pendingHigh = 0;
+                add(high);
+            }
+            flushBlock();
+
+            byte codec = compress ? BlockCodec.CODEC_DEFLATE : CODEC_RAW;
+            byte[] head = encodeHeader(TYPE_TEXT, key);
+            int metaLength = 1 + (compress ? 8 : 0) + 4 + 4 * (3 + pageCount + 2 * blocks) + 4 + 4;
+            ByteBuffer header = ByteBuffer.allocate(head.length + metaLength);
+            header.put(head).put(codec);
+            if (compress) header.putInt((int) rawLength).putInt((int) rawCrc.getValue());
+            header.putInt((int) chars);
+            header.putInt(pageCount);
+            for (int i = 0; i < pageCount; i++) header.putInt(pages[i]);
+            header.putInt(blocks);
+            for (int i = 0; i < blocks; i++) header.putInt(blockChars[i]);
+            header.putInt(blocks);
+            for (int i = 0; i < blocks; i++) header.putInt(blockBytes[i]);
+            header.putInt((int) payloadLength).putInt((int) crc.getValue());
+            header.flip();
+
+            int recordLength = header.limit() + (int) payloadLength;
+            synchronized (SegmentStore.this) {
+                long offset = SegmentStore.this.append(header, spill, payloadLength);
+                Location location = new Location(activeSegment, offset, recordLength, offset + head.length + metaLength,
+                        (int) payloadLength, codec, (int) rawLength, (int) rawCrc.getValue(), (int) chars,
+                        Arrays.copyOf(pages, pageCount), Arrays.copyOf(blockChars, blocks), Arrays.copyOf(blockBytes, blocks));
+                forget(key);
+                locations.put(key, location);
+                liveBytes.merge(activeSegment, (long) location.recordLength, Long::sum);
+            }
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            spill.close();
+            Files.deleteIfExists(spillPath);
+        }
+    }
+
+    public synchronized boolean delete(String key) throws IOException {
+        if (!locations.containsKey(key)) return false;
+        append(ByteBuffer.wrap(encodeHeader(TYPE_TOMBSTONE, key)));
+        forget(key);
+        return true;
+    }
+
+    // Writes one whole record at the end of the active segment, rolling to a new one when full
+    private long append(ByteBuffer record) throws IOException {
+        return append(record, null, 0);
+    }
+
+    // Same, for a record whose payload (after the header in record) is the first payloadLength bytes of a spill file
+    private long append(ByteBuffer record, FileChannel payload, long payloadLength) throws IOException {
+        if (activeSize > 0 && activeSize + record.remaining() + payloadLength > maxSegmentBytes) roll();
+        long offset = activeSize;
+        while (record.hasRemaining()) activeSize += active.write(record, activeSize);
+        if (payloadLength > 0) {
+            active.position(activeSize);
+            long copied = 0;
+            while (copied < payloadLength) copied += payload.transferTo(copied, payloadLength - copied, active);
+            activeSize += payloadLength;
+        }
+        segmentSizes.put(activeSegment, activeSize);
+        return offset;
+    }
+
+    public boolean contains(String key) {
+        return locations.containsKey(key);
+    }
+
+    public Set<String> keys() {
+        return Collections.unmodifiableSet(locations.keySet());
+    }
+
+    private Location locate(String key) throws IOException {
+        Location location = locations.get(key);
+        if (location == null) throw new NoSuchFileException("segment text " + key);
+        return location;
+    }
+
+    // A text located with its payload slice
+    private record Payload(Location location, ByteBuffer bytes) {}
+
+    // Compaction may move a record (and delete its old segment) between the lookup and the mapping; look it up again then
+    private Payload payload(String key) throws IOException {
+        while (true) {
+            Location location = locate(key);
+            try {
+                return new Payload(location, slice(mapping(location), location.payloadOffset, location.payloadLength));
+            } catch (NoSuchFileException e) {
+                if (locations.get(key) == location) throw e;
+            }
+        }
+    }
+
+    // Position in physical storage order, for reading many texts sequentially
+    public long locality(String key) {
+        Location location = locations.get(key);
+        return location == null ? Long.MAX_VALUE : ((long) location.segment << 40) | location.recordOffset;
+    }
+
+    public int[] pageOffsets(String key) throws IOException {
+        return locate(key).pageOffsets.clone();
+    }
+
+    public int length(String key) throws IOException {
+        return locate(key).charLength;
+    }
+
+    // The mapping is widened when the active segment has grown past it
+    private ByteBuffer mapping(Location location) throws IOException {
+        long end = location.payloadOffset + location.payloadLength;
+        MappedByteBuffer buf = mappings.get(location.segment);
+        if (buf != null && buf.capacity() >= end) return buf;
+        synchronized (mappings) {
+            buf = mappings.get(location.segment);
+            if (buf != null && buf.capacity() >= end) return buf;
+            try (FileChannel channel = FileChannel.open(segmentPath(location.segment), StandardOpenOption.READ)) {
+                buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            mappings.put(location.segment, buf);
+            return buf;
+        }
+    }
+
+    private static ByteBuffer block(Payload text, int b) {
+        Location location = text.location();
+        int start = location.blockBytes[b];
+        int end = b + 1 < location.blockBytes.length ? location.blockBytes[b + 1] : location.payloadLength;
+        return slice(text.bytes(), start, end - start);
+    }
+
+    // UTF-8 bytes of one block, inflated if the text is compressed
+    private static ByteBuffer blockBytes(Payload text, int b) throws IOException {
+        ByteBuffer block = block(text, b);
+        return text.location().codec == CODEC_RAW ? block : ByteBuffer.wrap(BlockCodec.inflate(block));
+    }
+
+    // UTF-8 bytes of the whole text; compressed texts are inflated one block at a time as the stream is read
+    public InputStream openStream(String key) throws IOException {
+        Payload text = payload(key);
+        if (text.location().codec == CODEC_RAW) return new ByteBufferInputStream(text.bytes());
+
+        return new InputStream() {
+            private int next;
+            private ByteBuffer current = ByteBuffer.allocate(0);
+
+            private boolean fill() throws IOException {
+                while (!current.hasRemaining()) {
+                    if (next >= text.location().blockBytes.length) return false;
+                    current = blockBytes(text, next++);
+                }
+                return true;
+            }
+
+            @Override
+            public int read() throws IOException {
+                return fill() ? current.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) return 0;
+                if (!fill()) return -1;
+                int n = Math.min(len, current.remaining());
+                current.get(b, off, n);
+                return n;
+            }
+        };
+    }
+
+    // Uncompressed UTF-8 size
+    public long byteLength(String key) throws IOException {
+        return locate(key).rawLength;
+    }
+
+    public boolean isCompressed(String key) throws IOException {
+        return locate(key).codec != CODEC_RAW;
+    }
+
+    // Size of the gzip stream openGzip returns: header, stored blocks, end block, trailer
+    public long gzipLength(String key) throws IOException {
+        return BlockCodec.GZIP_HEADER.length + locate(key).payloadLength + BlockCodec.DEFLATE_END.length + 8;
+    }
+
+    // The text as a gzip stream assembled from the stored Deflate blocks; nothing is recompressed
+    public InputStream openGzip(String key) throws IOException {
+        Payload text = payload(key);
+        Location location = text.location();
+        if (location.codec != BlockCodec.CODEC_DEFLATE) throw new IOException("Text " + key + " is not stored compressed");
+
+        return new SequenceInputStream(Collections.enumeration(List.of(
+                new ByteArrayInputStream(BlockCodec.GZIP_HEADER),
+                new ByteBufferInputStream(text.bytes()),
+                new ByteArrayInputStream(BlockCodec.DEFLATE_END),
+                new ByteArrayInputStream(BlockCodec.gzipTrailer(location.rawCrc, location.rawLength)))));
+    }
+
+    public String read(String key) throws IOException {
+        Payload text = payload(key);
+        if (text.location().codec == CODEC_RAW) return StandardCharsets.UTF_8.decode(text.bytes()).toString();
+
+        StringBuilder sb = new StringBuilder(text.location().charLength);
+        for (int b = 0; b < text.location().blockBytes.length; b++) sb.append(StandardCharsets.UTF_8.decode(blockBytes(text, b)));
+        return sb.toString();
+    }
+
+    // Decodes only the blocks covering [start, start + length)
+    public String readRange(String key, long start, int length) throws IOException {
+        Payload text = payload(key);
+        Location location = text.location();
+        if (start >= location.charLength || length <= 0) return "";
+
+        int first = blockOf(location, (int) start);
+        int from = (int) start - location.blockChars[first];
+        StringBuilder sb = new StringBuilder();
+        for (int b = first; b < location.blockChars.length && sb.length() < from + length; b++) {
+            sb.append(StandardCharsets.UTF_8.decode(blockBytes(text, b)));
+        }
+        return sb.substring(from, Math.min(sb.length(), from + length));
+    }
+
+    private static int blockOf(Location location, int charOffset) {
+        int i = Arrays.binarySearch(location.blockChars, charOffset);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    /**
+     * Rewrites every sealed segment whose dead fraction is at least minDeadRatio: live
+     * records (and tombstones whose key still has a record in an older segment, which
+     * they shadow) are copied to the active segment, then the old file is deleted.
+     * Returns the number of segments reclaimed.
+     */
+    public int compact(double minDeadRatio) throws IOException {
+        List<Integer> candidates = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<Integer, Long> e : segmentSizes.entrySet()) {
+                int segment = e.getKey();
+                long size = e.getValue();
+                if (segment == activeSegment || size == 0) continue;
+                double dead = 1.0 - (double) liveBytes.getOrDefault(segment, 0L) / size;
+                if (dead >= minDeadRatio) candidates.add(segment);
+            }
+        }
+
+        int reclaimed = 0;
+        for (int segment : candidates) {
+            if (compactSegment(segment)) reclaimed++;
+        }
+        return reclaimed;
+    }
+
+    private synchronized boolean compactSegment(int segment) throws IOException {
+        long size = segmentSizes.getOrDefault(segment, 0L);
+        ByteBuffer file = null;
+        if (size > 0) {
+            try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+                file = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+        }
+
+        Set<String> deleted = new HashSet<>();
+        long pos = 0;
+        while (pos < size) {
+            Header header = parseHeader(file, segment, pos);
+            if (header == null) break;
+            if (header.location() == null && !locations.containsKey(header.key())) deleted.add(header.key());
+            pos += header.length();
+        }
+        Set<String> shadowed = keysBefore(segment, deleted);
+
+        pos = 0;
+        while (pos < size) {
+            Header header = parseHeader(file, segment, pos);
+            if (header == null) break;
+            Location current = locations.get(header.key());
+            boolean live = header.location() != null && current != null
+                    && current.segment == segment && current.recordOffset == pos;
+            boolean shadowing = header.location() == null && current == null && shadowed.contains(header.key());
+            if (live || shadowing) {
+                long offset = append(slice(file, pos, header.length()));
+                if (live) {
+                    forget(header.key());
+                    Location moved = current.movedTo(activeSegment, offset);
+                    locations.put(header.key(), moved);
+                    liveBytes.merge(activeSegment, (long) moved.recordLength, Long::sum);
+                }
+            }
+            pos += header.length();
+        }
+        active.force(false);
+
+        segmentSizes.remove(segment);
+        liveBytes.remove(segment);
+        mappings.remove(segment);
+        try {
+            Files.deleteIfExists(segmentPath(segment));
+        } catch (IOException e) {
+            // Still mapped by a reader (Windows); its records now live in a newer segment, so the
+            // file is harmless and will be compacted again after the next restart
+            log.warn("Could not delete compacted segment {}: {}", segment, e.getMessage());
+        }
+        log.info("Compacted text segment {} ({} bytes)", segment, size);
+        return true;
+    }
+
+    // Those of keys that some segment older than the given one still holds a text record for
+    private Set<String> keysBefore(int segment, Set<String> keys) throws IOException {
+        Set<String> found = new HashSet<>();
+        for (int older : segmentFiles()) {
+            if (older >= segment || found.size() == keys.size()) break;
+            try (FileChannel channel = FileChannel.open(segmentPath(older), StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size == 0) continue;
+                MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                long pos = 0;
+                while (pos < size) {
+                    Header header = parseHeader(file, older, pos);
+                    if (header == null) break;
+                    if (header.location() != null && keys.contains(header.key())) found.add(header.key());
+                    pos += header.length();
+                }
+            }
+        }
+        return found;
+    }
+
+    public synchronized void flush() throws IOException {
+        active.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        active.force(false);
+        active.close();
+        mappings.clear();
+    }
+}
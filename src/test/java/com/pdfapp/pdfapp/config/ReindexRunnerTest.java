@@ -0,0 +1,38 @@
+package com.pdfapp.pdfapp.config;
+
+import com.pdfapp.pdfapp.service.ReindexService;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ReindexRunnerTest {
+
+	private static ReindexService returning(int errors) throws Exception {
+		ReindexService.Summary summary = mock(ReindexService.Summary.class);
+		when(summary.getErrors()).thenReturn(errors);
+		ReindexService reindexService = mock(ReindexService.class);
+		when(reindexService.run()).thenReturn(summary);
+		return reindexService;
+	}
+
+	@Test
+	void cleanRunsExitWithZero() throws Exception {
+		assertEquals(0, ReindexRunner.runOnce(returning(0)));
+	}
+
+	@Test
+	void runsWithFilesThatCouldNotBeProcessedExitWithTwo() throws Exception {
+		assertEquals(2, ReindexRunner.runOnce(returning(3)));
+	}
+
+	@Test
+	void failedRunsExitWithOne() throws Exception {
+		ReindexService reindexService = mock(ReindexService.class);
+		when(reindexService.run()).thenThrow(new IOException("disk gone"));
+
+		assertEquals(1, ReindexRunner.runOnce(reindexService));
+	}
+}
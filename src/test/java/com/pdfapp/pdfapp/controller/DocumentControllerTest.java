@@ -0,0 +1,275 @@
+package com.pdfapp.pdfapp.controller;
+
+import com.pdfapp.pdfapp.dto.DocumentDTO;
+import com.pdfapp.pdfapp.extract.ExtractionLimits;
+import com.pdfapp.pdfapp.extract.Extractor;
+import com.pdfapp.pdfapp.model.Document;
+import com.pdfapp.pdfapp.model.DocumentStatus;
+import com.pdfapp.pdfapp.repository.DocumentRepository;
+import com.pdfapp.pdfapp.search.DocIdSet;
+import com.pdfapp.pdfapp.service.ExtractionJobService;
+import com.pdfapp.pdfapp.service.ExtractionService;
+import com.pdfapp.pdfapp.service.FileStorageService;
+import com.pdfapp.pdfapp.service.MetricsService;
+import com.pdfapp.pdfapp.service.SearchIndexService;
+import com.pdfapp.pdfapp.service.SearchResultCache;
+import com.pdfapp.pdfapp.service.TextStoreService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class DocumentControllerTest {
+
+	@Mock
+	DocumentRepository documentRepository;
+
+	@Mock
+	ExtractionJobService extractionJobService;
+
+	@Mock
+	FileStorageService fileStorageService;
+
+	@Mock
+	SearchResultCache searchResultCache;
+
+	@Mock
+	SearchIndexService searchIndexService;
+
+	@Mock
+	ExtractionService extractionService;
+
+	@Mock
+	TextStoreService textStoreService;
+
+	@Spy
+	MetricsService metrics = new MetricsService(new SimpleMeterRegistry(), new StandardEnvironment());
+
+	@TempDir
+	Path dir;
+
+	@InjectMocks
+	DocumentController controller;
+
+	private MockMvc mvc() {
+		return MockMvcBuilders.standaloneSetup(controller).build();
+	}
+
+	@Test
+	void uploadsArePushedBackWhileTheExtractionQueueIsFull() throws Exception {
+		when(extractionJobService.isSaturated()).thenReturn(true);
+
+		ResponseEntity<?> response = controller.uploadFile(
+				new MockMultipartFile("file", "a.txt", "text/plain", "hello".getBytes()), null);
+
+		assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+		verifyNoInteractions(fileStorageService, documentRepository);
+	}
+
+	@Test
+	void searchWithoutAModeIsTheContainsMatch() throws Exception {
+		when(searchResultCache.getHitsVerbatim(eq("substring"), eq("voice num"), any(), any()))
+				.thenReturn(new SearchResultCache.Hits<>(DocIdSet.EMPTY, List.of()));
+
+		mvc().perform(get("/api/documents/search").param("keyword", "voice num"))
+				.andExpect(status().isOk())
+				.andExpect(content().json("[]"));
+		verify(searchResultCache).getHitsVerbatim(eq("substring"), eq("voice num"), any(), any());
+	}
+
+	private static DocumentDTO row(long id, LocalDateTime uploadedAt) {
+		return new DocumentDTO(id, "doc" + id + ".pdf", "application/pdf", 1L, "alice", uploadedAt, null, null);
+	}
+
+	@Test
+	void bareListingIsAPlainBoundedArray() throws Exception {
+		ReflectionTestUtils.setField(controller, "maxPageSize", 2);
+		LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+		when(documentRepository.findListing(PageRequest.of(0, 2)))
+				.thenReturn(List.of(row(2, now), row(1, now.minusDays(1))));
+
+		mvc().perform(get("/api/documents").param("size", "500"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(2))
+				.andExpect(jsonPath("$[0].id").value(2))
+				.andExpect(jsonPath("$[1].id").value(1));
+	}
+
+	@Test
+	void pageListingCarriesACursorWhenMoreRowsExist() throws Exception {
+		ReflectionTestUtils.setField(controller, "maxPageSize", 200);
+		LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+		when(documentRepository.findListingByOwner(1L, PageRequest.of(0, 2)))
+				.thenReturn(List.of(row(3, now), row(2, now.minusDays(1))));
+
+		mvc().perform(get("/api/documents/page").param("ownerId", "1").param("size", "1"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.items.length()").value(1))
+				.andExpect(jsonPath("$.items[0].id").value(3))
+				.andExpect(jsonPath("$.nextCursor").isNotEmpty());
+	}
+
+	private Document storedPdf(String content) throws Exception {
+		Path file = Files.writeString(dir.resolve("stored.pdf"), content);
+		Document doc = new Document();
+		doc.setId(1L);
+		doc.setFilename("report.pdf");
+		doc.setMimeType("application/pdf");
+		doc.setPdfFilePath(file.toString());
+		doc.setContentHash("abc123");
+		doc.setUploadedAt(LocalDateTime.of(2024, 5, 1, 12, 0));
+		when(documentRepository.findById(1L)).thenReturn(Optional.of(doc));
+		return doc;
+	}
+
+	@Test
+	void filesAreStreamedFromDisk() throws Exception {
+		Path file = Path.of(storedPdf("%PDF-1.7 stored bytes").getPdfFilePath());
+
+		mvc().perform(get("/api/documents/1/file"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("Content-Type", "application/pdf"))
+				.andExpect(header().longValue("Content-Length", Files.size(file)))
+				.andExpect(content().string("%PDF-1.7 stored bytes"));
+	}
+
+	@Test
+	void fileRangesAreServedAsPartialContent() throws Exception {
+		storedPdf("0123456789");
+
+		mvc().perform(get("/api/documents/1/file").header("Range", "bytes=2-5"))
+				.andExpect(status().isPartialContent())
+				.andExpect(header().string("Content-Range", "bytes 2-5/10"))
+				.andExpect(header().string("ETag", "\"abc123\""))
+				.andExpect(content().string("2345"));
+	}
+
+	@Test
+	void unchangedFilesAreRevalidatedWithNotModified() throws Exception {
+		Document doc = storedPdf("0123456789");
+
+		mvc().perform(get("/api/documents/1/file").header("If-None-Match", "\"abc123\""))
+				.andExpect(status().isNotModified())
+				.andExpect(content().string(""));
+		String lastModified = mvc().perform(get("/api/documents/1/file"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader("Last-Modified");
+		assertNotNull(lastModified);
+		mvc().perform(get("/api/documents/1/file").header("If-Modified-Since", lastModified))
+				.andExpect(status().isNotModified());
+
+		doc.setContentHash("def456"); // replaced content revalidates to a full response
+		mvc().perform(get("/api/documents/1/file").header("If-None-Match", "\"abc123\""))
+				.andExpect(status().isOk())
+				.andExpect(content().string("0123456789"));
+	}
+
+	private Document row(long id, Path blob, String hash) {
+		Document doc = new Document();
+		doc.setId(id);
+		doc.setFilename("doc" + id + ".pdf");
+		doc.setPdfFilePath(blob.toString());
+		doc.setContentHash(hash);
+		doc.setTextFilePath(TextStoreService.segmentRef(hash));
+		doc.setStatus(DocumentStatus.READY);
+		return doc;
+	}
+
+	@Test
+	void duplicateUploadsShareTheBlobAndTextWithoutExtracting() throws Exception {
+		Path blob = Files.writeString(dir.resolve("abc123"), "%PDF-1.7 same content");
+		Document twin = row(1, blob, "abc123");
+		when(fileStorageService.store(any(MultipartFile.class)))
+				.thenReturn(new FileStorageService.StoredFile(blob, "abc123", Files.size(blob), true));
+		when(fileStorageService.lockFor("abc123")).thenReturn(new Object());
+		Extractor pdf = mock(Extractor.class);
+		when(pdf.name()).thenReturn("pdf");
+		when(extractionService.detect(blob)).thenReturn(pdf);
+		when(extractionService.getLimits("pdf")).thenReturn(ExtractionLimits.NONE);
+		when(extractionService.contentType(eq(pdf), any())).thenReturn("application/pdf");
+		when(documentRepository.findReadyByContentHash("abc123")).thenReturn(List.of(twin));
+		when(textStoreService.exists(twin.getTextFilePath())).thenReturn(true);
+		when(documentRepository.save(any(Document.class))).thenAnswer(inv -> {
+			Document doc = inv.getArgument(0);
+			doc.setId(2L);
+			return doc;
+		});
+		when(searchIndexService.copyDocument(eq(1L), any(Document.class))).thenReturn(true);
+
+		ResponseEntity<?> response = controller.uploadFile(
+				new MockMultipartFile("file", "copy.pdf", "application/pdf", "%PDF-1.7 same content".getBytes()), null);
+
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		DocumentDTO dto = (DocumentDTO) response.getBody();
+		assertEquals(2L, dto.getId());
+		assertEquals("READY", dto.getStatus());
+		ArgumentCaptor<Document> saved = ArgumentCaptor.forClass(Document.class);
+		verify(documentRepository).save(saved.capture());
+		assertEquals(blob.toString(), saved.getValue().getPdfFilePath());
+		assertEquals(twin.getTextFilePath(), saved.getValue().getTextFilePath());
+		verify(extractionJobService, never()).submit(anyLong());
+	}
+
+	@Test
+	void deletingOneOfTwoRowsSharingABlobKeepsIt() throws Exception {
+		Path blob = Files.writeString(dir.resolve("abc123"), "%PDF-1.7 shared");
+		Document doc = row(1, blob, "abc123");
+		when(documentRepository.findById(1L)).thenReturn(Optional.of(doc));
+		when(fileStorageService.lockFor("abc123")).thenReturn(new Object());
+		when(documentRepository.countByPdfFilePath(blob.toString())).thenReturn(1L);
+		when(documentRepository.countByTextFilePath(doc.getTextFilePath())).thenReturn(1L);
+
+		assertEquals(HttpStatus.OK, controller.deleteDocument(1L).getStatusCode());
+
+		verify(documentRepository).delete(doc);
+		assertTrue(Files.exists(blob));
+		verify(textStoreService, never()).delete(any());
+		verify(searchIndexService).removeDocument(1L);
+	}
+
+	@Test
+	void deletingTheLastReferenceRemovesTheBlobAndText() throws Exception {
+		Path blob = Files.writeString(dir.resolve("abc123"), "%PDF-1.7 shared");
+		Document doc = row(1, blob, "abc123");
+		when(documentRepository.findById(1L)).thenReturn(Optional.of(doc));
+		when(fileStorageService.lockFor("abc123")).thenReturn(new Object());
+		when(documentRepository.countByPdfFilePath(blob.toString())).thenReturn(0L);
+		when(documentRepository.countByTextFilePath(doc.getTextFilePath())).thenReturn(0L);
+
+		assertEquals(HttpStatus.OK, controller.deleteDocument(1L).getStatusCode());
+
+		assertFalse(Files.exists(blob));
+		verify(textStoreService).delete(doc.getTextFilePath());
+		verify(searchIndexService).removeDocument(1L);
+	}
+}
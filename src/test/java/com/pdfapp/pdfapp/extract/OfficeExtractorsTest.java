@@ -0,0 +1,137 @@
+package com.pdfapp.pdfapp.extract;
+
+import org.apache.poi.sl.usermodel.Placeholder;
+import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.xslf.usermodel.XSLFNotes;
+import org.apache.poi.xslf.usermodel.XSLFSlide;
+import org.apache.poi.xslf.usermodel.XSLFTextShape;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.wp.usermodel.HeaderFooterType;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OfficeExtractorsTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void docxIncludesTablesHeadersFootersAndFootnotes() throws IOException {
+		Path file = dir.resolve("doc.docx");
+		try (XWPFDocument doc = new XWPFDocument(); OutputStream out = Files.newOutputStream(file)) {
+			doc.createParagraph().createRun().setText("Body paragraph");
+			XWPFTable table = doc.createTable(1, 2);
+			table.getRow(0).getCell(0).setText("cell alpha");
+			table.getRow(0).getCell(1).setText("cell beta");
+			doc.createParagraph().createRun().setText("After the table");
+			doc.createHeader(HeaderFooterType.DEFAULT).createParagraph().createRun().setText("Running header");
+			doc.createFooter(HeaderFooterType.DEFAULT).createParagraph().createRun().setText("Running footer");
+			doc.createFootnote().createParagraph().createRun().setText("A footnote");
+			doc.write(out);
+		}
+
+		ExtractedText extracted = new DocxExtractor().extract(file);
+		String text = extracted.getText();
+		assertEquals(1, extracted.getPageCount());
+		assertTrue(text.indexOf("Body paragraph") < text.indexOf("cell alpha"), text);
+		assertTrue(text.indexOf("cell beta") < text.indexOf("After the table"), text);
+		assertTrue(text.contains("Running header"), text);
+		assertTrue(text.contains("Running footer"), text);
+		assertTrue(text.contains("A footnote"), text);
+	}
+
+	@Test
+	void extractionThroughTheLimitsStopsOnceInterrupted() throws IOException {
+		Path file = dir.resolve("doc.docx");
+		try (XWPFDocument doc = new XWPFDocument(); OutputStream out = Files.newOutputStream(file)) {
+			doc.createParagraph().createRun().setText("Never read");
+			doc.write(out);
+		}
+
+		Thread.currentThread().interrupt(); // e.g. the job watchdog
+		assertThrows(InterruptedIOException.class, () -> new DocxExtractor().extract(file,
+				new LimitedTextSink(new ExtractedTextBuilder(), ExtractionLimits.NONE, "docx")));
+		assertFalse(Thread.interrupted());
+	}
+
+	@Test
+	void pptxHasOnePagePerSlideWithNotes() throws IOException {
+		Path file = dir.resolve("deck.pptx");
+		try (XMLSlideShow ppt = new XMLSlideShow(); OutputStream out = Files.newOutputStream(file)) {
+			for (int i = 1; i <= 2; i++) {
+				XSLFSlide slide = ppt.createSlide();
+				slide.createTextBox().setText("Slide " + i + " title");
+				XSLFNotes notes = ppt.getNotesSlide(slide);
+				for (XSLFTextShape shape : notes.getPlaceholders()) {
+					if (shape.getTextType() == Placeholder.BODY) shape.setText("note " + i);
+				}
+			}
+			ppt.write(out);
+		}
+
+		ExtractedText extracted = new PptxExtractor().extract(file);
+		String text = extracted.getText();
+		assertEquals(2, extracted.getPageCount());
+		int second = extracted.getPageOffsets()[1];
+		assertTrue(text.indexOf("Slide 1 title") < second, text);
+		assertTrue(text.indexOf("note 1") < second, text);
+		assertTrue(text.indexOf("Slide 2 title") >= second, text);
+		assertTrue(text.indexOf("note 2") >= second, text);
+	}
+
+	@Test
+	void xlsxHasOnePagePerSheetAndRowsAsLines() throws IOException {
+		Path file = dir.resolve("book.xlsx");
+		try (XSSFWorkbook book = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+			XSSFSheet first = book.createSheet("First");
+			XSSFRow row = first.createRow(0);
+			row.createCell(0).setCellValue("invoice");
+			row.createCell(2).setCellValue(42.5);
+			row.createCell(3).setCellValue(true);
+			first.createRow(3).createCell(1).setCellValue("invoice");
+			book.createSheet("Second").createRow(0).createCell(0).setCellValue("receipt");
+			book.write(out);
+		}
+
+		ExtractedText extracted = new XlsxExtractor().extract(file);
+		assertEquals(2, extracted.getPageCount());
+		assertEquals("invoice\t42.5\tTRUE\ninvoice\nreceipt\n", extracted.getText());
+		assertEquals("receipt\n", extracted.getText().substring(extracted.getPageOffsets()[1]));
+	}
+
+	@Test
+	void rejectsFilesThatAreNotOfficeDocuments() throws IOException {
+		Path file = dir.resolve("fake.docx");
+		Files.writeString(file, "not a zip");
+		assertThrows(IOException.class, () -> new DocxExtractor().extract(file));
+		assertThrows(IOException.class, () -> new DocExtractor().extract(file));
+	}
+
+	@Test
+	void ooxmlFormatsAreToldApartByTheirMainPart() throws IOException {
+		Path deck = dir.resolve("deck.docx"); // wrong extension on purpose
+		try (XMLSlideShow ppt = new XMLSlideShow(); OutputStream out = Files.newOutputStream(deck)) {
+			ppt.createSlide().createTextBox().setText("only slide");
+			ppt.write(out);
+		}
+
+		ExtractorRegistry registry = new ExtractorRegistry()
+				.register(new DocxExtractor())
+				.register(new PptxExtractor())
+				.register(new XlsxExtractor())
+				.register(new DocExtractor());
+		assertEquals("pptx", registry.detect(deck).name());
+	}
+}
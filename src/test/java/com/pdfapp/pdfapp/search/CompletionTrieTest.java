@@ -0,0 +1,58 @@
+package com.pdfapp.pdfapp.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompletionTrieTest {
+
+	@Test
+	void topCompletionsMatchBruteForce() {
+		Random random = new Random(11);
+		CompletionTrie trie = new CompletionTrie();
+		Map<String, Integer> weights = new HashMap<>();
+		for (int i = 0; i < 5000; i++) {
+			StringBuilder key = new StringBuilder();
+			int length = 1 + random.nextInt(6);
+			for (int j = 0; j < length; j++) key.append((char) ('a' + random.nextInt(5)));
+			int delta = random.nextInt(10) < 8 ? 1 + random.nextInt(20) : -random.nextInt(30);
+			trie.add(key.toString(), delta);
+			weights.put(key.toString(), Math.max(0, weights.getOrDefault(key.toString(), 0) + delta));
+		}
+
+		for (String prefix : List.of("", "a", "bc", "ddd", "eeeee", "zz")) {
+			List<Integer> expected = weights.entrySet().stream()
+					.filter(e -> e.getKey().startsWith(prefix) && e.getValue() > 0)
+					.map(Map.Entry::getValue).sorted(Comparator.reverseOrder()).limit(10).toList();
+			List<CompletionTrie.Completion> actual = trie.complete(prefix, 10);
+			assertEquals(expected, actual.stream().map(CompletionTrie.Completion::weight).toList(), prefix);
+			for (CompletionTrie.Completion c : actual) {
+				assertTrue(c.text().startsWith(prefix));
+				assertEquals(weights.get(c.text()), c.weight());
+			}
+		}
+		assertEquals(weights.values().stream().filter(w -> w > 0).count(), trie.keyCount());
+	}
+
+	@Test
+	void removedKeysAndSurfaces() {
+		CompletionTrie trie = new CompletionTrie();
+		trie.add("invoice", 3);
+		trie.add("invoices", 5);
+		trie.add("inventory", 1);
+		trie.add("report q1.pdf", "Report Q1.pdf", 2);
+
+		assertEquals(List.of(new CompletionTrie.Completion("invoices", 5), new CompletionTrie.Completion("invoice", 3)),
+				trie.complete("invo", 5));
+		assertEquals(List.of(new CompletionTrie.Completion("Report Q1.pdf", 2)), trie.complete("rep", 5));
+
+		trie.add("invoices", -5);
+		assertEquals(List.of("invoice", "inventory"), trie.complete("in", 5).stream().map(CompletionTrie.Completion::text).toList());
+		assertEquals(1, trie.garbage());
+		trie.add("invoices", 1);
+		assertEquals(0, trie.garbage());
+		assertEquals(List.of(), trie.complete("x", 5));
+	}
+}
@@ -0,0 +1,112 @@
+package com.pdfapp.pdfapp.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvertedIndexTest {
+
+	@Test
+	void phraseSearchUsesPositions() {
+		InvertedIndex index = new InvertedIndex();
+		index.add(1, Tokenizer.tokenize("Quarterly invoice 2024 for ACME"));
+		index.add(2, Tokenizer.tokenize("2024 invoice, quarterly"));
+
+		assertEquals(List.of(1L, 2L), index.searchPhrase(List.of("invoice")));
+		assertEquals(List.of(1L), index.searchPhrase(List.of("invoice", "2024")));
+		assertEquals(List.of(), index.searchPhrase(List.of("missing")));
+	}
+
+	@Test
+	void removeOnlyDropsThatDocument() {
+		InvertedIndex index = new InvertedIndex();
+		index.add(1, Tokenizer.tokenize("alpha beta"));
+		index.add(2, Tokenizer.tokenize("beta gamma"));
+
+		assertTrue(index.remove(1));
+		assertEquals(List.of(), index.searchPhrase(List.of("alpha")));
+		assertEquals(List.of(2L), index.searchPhrase(List.of("beta")));
+		assertFalse(index.remove(1));
+	}
+
+	@Test
+	void snapshotAndDocumentRecordsRoundTrip() throws IOException {
+		InvertedIndex index = new InvertedIndex();
+		index.add(5, Tokenizer.tokenize("search engines rank documents"));
+		index.add(9, Tokenizer.tokenize("documents are ranked"));
+
+		ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+		index.writeSnapshot(new DataOutputStream(snapshot));
+		InvertedIndex restored = InvertedIndex.readSnapshot(
+				new DataInputStream(new ByteArrayInputStream(snapshot.toByteArray())));
+		assertEquals(List.of(5L, 9L), restored.searchPhrase(List.of("documents")));
+
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		assertTrue(index.writeDocument(9, new DataOutputStream(record)));
+		InvertedIndex replayed = new InvertedIndex();
+		replayed.readDocument(9, new DataInputStream(new ByteArrayInputStream(record.toByteArray())));
+		assertEquals(List.of(9L), replayed.searchPhrase(List.of("are", "ranked")));
+	}
+
+	@Test
+	void bm25PrefersRarerTermsAndKeepsTopK() {
+		InvertedIndex index = new InvertedIndex();
+		index.add(1, Tokenizer.tokenize("contract contract contract renewal"));
+		index.add(2, Tokenizer.tokenize("contract termination clause"));
+		index.add(3, Tokenizer.tokenize("unrelated text about invoices"));
+		index.add(4, Tokenizer.tokenize("termination notice"));
+
+		List<InvertedIndex.ScoredDocument> top = index.rankBm25(List.of("contract", "termination"), 2, 1.2, 0.75, 3);
+		assertEquals(2, top.size());
+		assertEquals(2L, top.get(0).getDocId());
+		assertTrue(top.get(0).getScore() >= top.get(1).getScore());
+		assertArrayEquals(new int[]{0, 9}, top.get(0).getOffsets());
+	}
+
+	@Test
+	void fuzzyTermsMatchBruteForceEditDistance() {
+		Random random = new Random(3);
+		InvertedIndex index = new InvertedIndex();
+		List<String> words = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			StringBuilder word = new StringBuilder();
+			int length = 1 + random.nextInt(8);
+			for (int j = 0; j < length; j++) word.append((char) ('a' + random.nextInt(4)));
+			words.add(word.toString());
+		}
+		words.add("abcd");
+		index.add(1, Tokenizer.tokenize(String.join(" ", words)));
+
+		for (String query : List.of("abcd", "a", "ddddddd", "bacab")) {
+			for (int maxEdits = 1; maxEdits <= 2; maxEdits++) {
+				int edits = maxEdits;
+				List<String> expected = words.stream().distinct().filter(w -> distance(w, query) <= edits).sorted().toList();
+				List<String> actual = new ArrayList<>(index.fuzzyTerms(new LevenshteinAutomaton(query, edits), 10_000));
+				actual.sort(null);
+				assertEquals(expected, actual, query + "~" + edits);
+			}
+		}
+		// Capped expansions keep the closest terms
+		assertEquals(List.of("abcd"), index.fuzzyTerms(new LevenshteinAutomaton("abcd", 2), 1));
+	}
+
+	private static int distance(String a, String b) {
+		int[] row = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++) row[j] = j;
+		for (int i = 1; i <= a.length(); i++) {
+			int diagonal = row[0];
+			row[0] = i;
+			for (int j = 1; j <= b.length(); j++) {
+				int above = row[j];
+				row[j] = Math.min(Math.min(row[j] + 1, row[j - 1] + 1), diagonal + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1));
+				diagonal = above;
+			}
+		}
+		return row[b.length()];
+	}
+}
@@ -0,0 +1,104 @@
+package com.pdfapp.pdfapp.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryParserTest {
+
+	private final QueryParser parser = new QueryParser(1000);
+	private InvertedIndex index;
+
+	@BeforeEach
+	void setUp() {
+		index = new InvertedIndex();
+		index.add(1, meta("invoice-2024.pdf", "alice", "application/pdf", "2024-02-10"),
+				Tokenizer.tokenize("Invoice 2024 net amount due for ACME"));
+		index.add(2, meta("receipt.pdf", "bob", "application/pdf", "2024-07-01"),
+				Tokenizer.tokenize("Receipt 2024, amount paid, invoice attached"));
+		index.add(3, meta("notes.docx", "alice", "application/vnd.openxmlformats-officedocument.wordprocessingml.document", "2023-12-31"),
+				Tokenizer.tokenize("Draft invoicing notes"));
+	}
+
+	private static DocumentMeta meta(String filename, String owner, String mimeType, String day) {
+		long uploaded = LocalDate.parse(day).atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		return new DocumentMeta(filename, null, owner, mimeType, uploaded);
+	}
+
+	private List<Long> search(String query) {
+		return parser.parse(query).evaluate(index).toList();
+	}
+
+	@Test
+	void termsAreAndedByDefault() {
+		assertEquals(List.of(1L, 2L), search("invoice 2024"));
+		assertEquals(List.of(2L), search("invoice paid"));
+	}
+
+	@Test
+	void booleanOperatorsAndGrouping() {
+		assertEquals(List.of(1L, 2L), search("acme OR receipt"));
+		assertEquals(List.of(1L), search("invoice AND NOT receipt"));
+		assertEquals(List.of(1L), search("invoice -receipt"));
+		assertEquals(List.of(2L, 3L), search("NOT acme"));
+		assertEquals(List.of(2L, 3L), search("(draft OR paid) -acme"));
+	}
+
+	@Test
+	void phrasesAndPrefixes() {
+		assertEquals(List.of(1L), search("\"amount due\""));
+		assertEquals(List.of(), search("\"due amount\""));
+		assertEquals(List.of(1L, 2L, 3L), search("invoic*"));
+	}
+
+	@Test
+	void fuzzyTerms() {
+		assertEquals(List.of(1L, 2L), search("invoise~"));
+		assertEquals(List.of(1L, 2L, 3L), search("invoicin~2"));
+		assertEquals(List.of(), search("invoise"));
+		assertEquals(List.of(2L), search("reciept~2 amount"));
+		assertEquals(List.of(1L), search("acme~0"));
+		assertThrows(QuerySyntaxException.class, () -> parser.parse("invoice~3"));
+
+		QueryParser fuzzy = new QueryParser(1000, 50, true);
+		assertEquals(List.of(1L, 2L), fuzzy.parse("invoise amout").evaluate(index).toList());
+		assertEquals(List.of(), fuzzy.parse("\"invoise amout\"").evaluate(index).toList());
+	}
+
+	@Test
+	void fieldFilters() {
+		assertEquals(List.of(1L, 3L), search("owner:alice"));
+		assertEquals(List.of(1L), search("owner:alice invoice"));
+		assertEquals(List.of(3L), search("mimeType:wordprocessing"));
+		assertEquals(List.of(1L, 2L), search("filename:*.pdf"));
+		assertEquals(List.of(1L), search("uploaded:2024-02-10"));
+		assertEquals(List.of(1L, 2L), search("uploaded:[2024-01-01 TO *]"));
+		assertEquals(List.of(3L), search("uploaded:[* TO 2023-12-31]"));
+	}
+
+	@Test
+	void malformedQueriesAreRejected() {
+		assertThrows(QuerySyntaxException.class, () -> parser.parse("\"unterminated"));
+		assertThrows(QuerySyntaxException.class, () -> parser.parse("(invoice"));
+		assertThrows(QuerySyntaxException.class, () -> parser.parse("invoice OR"));
+		assertThrows(QuerySyntaxException.class, () -> parser.parse("uploaded:yesterday"));
+		assertThrows(QuerySyntaxException.class, () -> parser.parse("owner:[a TO b]"));
+	}
+
+	@Test
+	void skipPointerIntersection() {
+		long[] evens = new long[1000];
+		for (int i = 0; i < evens.length; i++) evens[i] = i * 2L;
+		DocIdSet large = new DocIdSet(evens);
+		DocIdSet small = new DocIdSet(new long[]{3, 4, 998, 1500, 5000});
+
+		assertEquals(List.of(4L, 998L, 1500L), large.and(small).toList());
+		assertEquals(List.of(3L, 5000L), small.andNot(large).toList());
+		assertEquals(1002, large.or(small).size());
+	}
+}
@@ -0,0 +1,83 @@
+package com.pdfapp.pdfapp.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoaringBitmapTest {
+
+	@Test
+	void matchesReferenceSetAcrossContainerKinds() {
+		Random random = new Random(5);
+		RoaringBitmap a = new RoaringBitmap();
+		RoaringBitmap b = new RoaringBitmap();
+		TreeSet<Long> setA = new TreeSet<>();
+		TreeSet<Long> setB = new TreeSet<>();
+		// Dense range (bitmap containers), sparse ids far apart (array containers), then deletes
+		for (int i = 0; i < 20_000; i++) {
+			long dense = random.nextInt(30_000);
+			long sparse = (1L << 20) + random.nextInt(1 << 24);
+			a.add(dense);
+			setA.add(dense);
+			if (i % 3 == 0) {
+				b.add(dense);
+				setB.add(dense);
+			}
+			b.add(sparse);
+			setB.add(sparse);
+		}
+		for (int i = 0; i < 15_000; i++) {
+			long id = random.nextInt(30_000);
+			assertEquals(setA.remove(id), a.remove(id));
+		}
+
+		assertEquals(setA.size(), a.cardinality());
+		assertEquals(setB.size(), b.cardinality());
+		assertEquals(new ArrayList<>(setA), a.toDocIdSet().toList());
+		Set<Long> both = new TreeSet<>(setA);
+		both.retainAll(setB);
+		assertEquals(both.size(), a.andCardinality(b));
+		assertEquals(both.size(), b.andCardinality(a));
+		assertEquals(both.size(), a.withBitmapContainers(1).andCardinality(b));
+
+		// A few ids against a full array container: the binary-search path
+		RoaringBitmap few = new RoaringBitmap();
+		RoaringBitmap many = new RoaringBitmap();
+		for (long id = 0; id < 8000; id += 2) many.add(id);
+		for (long id : new long[]{1, 2, 3, 500, 7998, 7999, 9000}) few.add(id);
+		assertEquals(3, few.andCardinality(many));
+		assertEquals(3, many.andCardinality(few));
+		assertTrue(a.contains(setA.first()));
+		assertFalse(a.contains(30_001));
+	}
+
+	@Test
+	void facetCountsAreIntersectionsWithTheHits() {
+		FacetIndex facets = new FacetIndex();
+		DocumentMeta alicePdf = meta("alice", "application/pdf", "2024-02-10");
+		facets.add(1, alicePdf);
+		facets.add(2, meta("bob", "application/pdf", "2024-02-20"));
+		facets.add(3, meta("alice", "text/plain", "2024-03-01"));
+		facets.add(4, meta("alice", "application/pdf", "2024-03-05"));
+
+		Map<String, Map<String, Integer>> counts = facets.counts(RoaringBitmap.of(new DocIdSet(new long[]{1, 2, 3})), 10);
+		assertEquals(Map.of("alice", 2, "bob", 1), counts.get("owner"));
+		assertEquals(List.of("alice", "bob"), new ArrayList<>(counts.get("owner").keySet()));
+		assertEquals(Map.of("application/pdf", 2, "text/plain", 1), counts.get("mimeType"));
+		assertEquals(Map.of("2024-02", 2, "2024-03", 1), counts.get("uploaded"));
+
+		facets.remove(1, alicePdf);
+		counts = facets.counts(RoaringBitmap.of(new DocIdSet(new long[]{1, 2, 3, 4})), 1);
+		assertEquals(Map.of("alice", 2), counts.get("owner"));
+		assertEquals(Map.of("2024-03", 2), counts.get("uploaded"));
+	}
+
+	private static DocumentMeta meta(String owner, String mimeType, String day) {
+		long uploaded = LocalDate.parse(day).atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		return new DocumentMeta("f", null, owner, mimeType, uploaded);
+	}
+}
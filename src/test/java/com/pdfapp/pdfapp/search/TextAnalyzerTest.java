@@ -0,0 +1,49 @@
+package com.pdfapp.pdfapp.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextAnalyzerTest {
+
+	@Test
+	void matchesTokenizerAndTrigramsWhateverTheChunking() {
+		Random random = new Random(42);
+		String[] words = {"Invoice", "AB-1234", "été", "😀", "x", "Straße", "a".repeat(80), "\n", "  ", "2024"};
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < 50_000) sb.append(words[random.nextInt(words.length)]).append(random.nextBoolean() ? " " : "");
+		String text = sb.toString();
+
+		for (int round = 0; round < 5; round++) {
+			TextAnalyzer analyzer = new TextAnalyzer();
+			int pos = 0;
+			while (pos < text.length()) {
+				int end = Math.min(text.length(), pos + 1 + random.nextInt(round == 0 ? 3 : 5000));
+				analyzer.append(text.substring(pos, end));
+				pos = end;
+			}
+
+			List<Token> expected = Tokenizer.tokenize(text);
+			List<Token> actual = analyzer.tokens();
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.get(i).getTerm(), actual.get(i).getTerm());
+				assertEquals(expected.get(i).getPosition(), actual.get(i).getPosition());
+				assertEquals(expected.get(i).getOffset(), actual.get(i).getOffset());
+			}
+			assertArrayEquals(TrigramIndex.trigrams(text), analyzer.trigrams());
+		}
+	}
+
+	@Test
+	void shortTextsHaveNoTrigrams() {
+		TextAnalyzer analyzer = new TextAnalyzer();
+		analyzer.append("a");
+		analyzer.append("b");
+		assertEquals(0, analyzer.trigrams().length);
+		assertEquals("ab", analyzer.tokens().get(0).getTerm());
+	}
+}
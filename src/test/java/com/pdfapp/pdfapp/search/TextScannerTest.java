@@ -0,0 +1,55 @@
+package com.pdfapp.pdfapp.search;
+
+import com.pdfapp.pdfapp.extract.ExtractedText;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextScannerTest {
+
+	@Test
+	void findsHitsAcrossChunkBoundariesWithOffsets() throws IOException {
+		StringBuilder text = new StringBuilder();
+		List<Long> expected = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			if (i % 1000 == 999) {
+				expected.add((long) text.length());
+				text.append("Needle ");
+			} else {
+				text.append("filler ");
+			}
+		}
+
+		List<Long> offsets = new ArrayList<>();
+		new TextScanner(10).scan(new StringReader(text.toString()), "NEEDLE", (offset, snippet) -> {
+			assertTrue(snippet.contains("Needle"));
+			offsets.add(offset);
+			return true;
+		});
+		assertEquals(expected, offsets);
+	}
+
+	@Test
+	void stopsAtHitLimit() throws IOException {
+		List<Long> offsets = new ArrayList<>();
+		new TextScanner(5).scan(new StringReader("a b a b a b a"), "a", (offset, snippet) -> {
+			offsets.add(offset);
+			return offsets.size() < 2;
+		});
+		assertEquals(List.of(0L, 4L), offsets);
+	}
+
+	@Test
+	void mapsOffsetsToPages() {
+		int[] pages = {0, 100, 100, 250};
+		assertEquals(1, ExtractedText.pageOf(pages, 0));
+		assertEquals(1, ExtractedText.pageOf(pages, 99));
+		assertEquals(3, ExtractedText.pageOf(pages, 100));
+		assertEquals(4, ExtractedText.pageOf(pages, 900));
+	}
+}
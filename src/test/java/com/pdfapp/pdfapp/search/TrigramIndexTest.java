@@ -0,0 +1,74 @@
+package com.pdfapp.pdfapp.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrigramIndexTest {
+
+	@Test
+	void candidatesContainEveryDocumentWithTheLiteral() {
+		TrigramIndex index = new TrigramIndex();
+		index.add(1, "Replace part AB-1234-X before shipping");
+		index.add(2, "Part ab-1234-y is discontinued");
+		index.add(3, "Nothing to see here");
+
+		assertEquals(List.of(1L), index.candidates(List.of("b-1234-x")).toList());
+		assertEquals(List.of(1L, 2L), index.candidates(List.of("AB-1234")).toList());
+		assertEquals(List.of(), index.candidates(List.of("zzz")).toList());
+		assertNull(index.candidates(List.of("ab")), "too short to narrow anything");
+	}
+
+	@Test
+	void removedAndReplacedDocumentsStopMatching() {
+		TrigramIndex index = new TrigramIndex();
+		index.add(1, "invoice 2024");
+		index.add(2, "invoice 2025");
+		index.add(3, "receipt");
+
+		assertTrue(index.remove(2));
+		assertEquals(List.of(1L), index.candidates(List.of("invoice")).toList());
+		index.purge();
+		assertEquals(List.of(1L), index.candidates(List.of("invoice")).toList());
+
+		index.add(1, "credit note");
+		assertEquals(List.of(), index.candidates(List.of("invoice")).toList());
+		assertTrue(index.copy(3, 7));
+		assertEquals(List.of(3L, 7L), index.candidates(List.of("receipt")).toList());
+	}
+
+	@Test
+	void snapshotAndDocumentRecordsRoundTrip() throws IOException {
+		TrigramIndex index = new TrigramIndex();
+		index.add(9, "search engines rank documents");
+		index.add(5, "Documents are ranked");
+		index.add(6, "gone");
+		index.remove(6);
+
+		ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+		index.writeSnapshot(new DataOutputStream(snapshot));
+		TrigramIndex loaded = TrigramIndex.readSnapshot(new DataInputStream(new ByteArrayInputStream(snapshot.toByteArray())));
+		assertEquals(List.of(5L, 9L), loaded.candidates(List.of("document")).toList());
+		assertFalse(loaded.contains(6));
+
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		assertTrue(index.writeDocument(9, new DataOutputStream(record)));
+		TrigramIndex replayed = new TrigramIndex();
+		replayed.readDocument(9, new DataInputStream(new ByteArrayInputStream(record.toByteArray())));
+		assertEquals(List.of(9L), replayed.candidates(List.of("engines")).toList());
+	}
+
+	@Test
+	void regexLiteralsAreOnlyWhatEveryMatchContains() {
+		assertEquals(List.of(List.of("ab-", "-x")), RegexLiterals.required("ab-\\d{4}-x"));
+		assertEquals(List.of(List.of("invoice"), List.of("receipt")), RegexLiterals.required("invoice|receipt"));
+		assertEquals(List.of(List.of("colo", "r")), RegexLiterals.required("colou?r"));
+		assertEquals(List.of(List.of("total", ".")), RegexLiterals.required("(?i)total\\s*:?\\s*[0-9]+\\."));
+		assertEquals(List.of(List.of("id")), RegexLiterals.required("\\x41\\u0042id"));
+		assertNull(RegexLiterals.required("\\d+"));
+		assertNull(RegexLiterals.required("invoice|\\w+"));
+	}
+}
@@ -0,0 +1,56 @@
+package com.pdfapp.pdfapp.security;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilTest {
+
+	private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+	private JwtUtil jwtUtil;
+
+	@BeforeEach
+	void setUp() {
+		jwtUtil = new JwtUtil(now::get);
+		jwtUtil.init();
+	}
+
+	@Test
+	void secondVerifyIsServedFromTheCache() {
+		String token = jwtUtil.generateToken("alice", "ADMIN");
+
+		JwtUtil.VerifiedToken first = jwtUtil.verify(token);
+		assertEquals("alice", first.getUsername());
+		assertEquals("ADMIN", first.getRole());
+		assertSame(first, jwtUtil.verify(token));
+		assertEquals(1, jwtUtil.cachedTokens());
+	}
+
+	@Test
+	void expiredTokensLeaveTheCacheAndAreRejected() {
+		String token = jwtUtil.generateToken("alice", "USER");
+		jwtUtil.verify(token);
+
+		now.addAndGet(TimeUnit.HOURS.toMillis(10) + 1);
+		assertEquals(0, jwtUtil.cachedTokens());
+		assertThrows(ExpiredJwtException.class, () -> jwtUtil.verify(token));
+	}
+
+	@Test
+	void tamperedTokensAreRejectedAndNotCached() {
+		String token = jwtUtil.generateToken("alice", "USER");
+		String[] parts = token.split("\\.");
+		// Same signature over a payload claiming another user
+		String forged = parts[0] + "." + jwtUtil.generateToken("mallory", "ADMIN").split("\\.")[1] + "." + parts[2];
+
+		assertThrows(JwtException.class, () -> jwtUtil.verify(forged));
+		assertEquals(0, jwtUtil.cachedTokens());
+		assertEquals("alice", jwtUtil.verify(token).getUsername());
+	}
+}
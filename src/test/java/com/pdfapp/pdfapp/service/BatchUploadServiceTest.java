@@ -0,0 +1,172 @@
+package com.pdfapp.pdfapp.service;
+
+import com.pdfapp.pdfapp.dto.BatchFileResultDTO;
+import com.pdfapp.pdfapp.dto.BatchUploadReportDTO;
+import com.pdfapp.pdfapp.dto.DocumentDTO;
+import com.pdfapp.pdfapp.model.Document;
+import com.pdfapp.pdfapp.repository.DocumentRepository;
+import com.pdfapp.pdfapp.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BatchUploadServiceTest {
+
+	@TempDir
+	Path dir;
+
+	private final List<Document> rows = new ArrayList<>();
+	private DocumentRepository documentRepository;
+	private ExtractionService extractionService;
+	private BatchUploadService batch;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		// Every extractor takes files of up to 100 bytes, so that is also the cap per ZIP entry
+		MockEnvironment environment = new MockEnvironment().withProperty("extraction.limits.max-bytes", "100");
+		MetricsService metrics = new MetricsService(new SimpleMeterRegistry(), environment);
+
+		extractionService = new ExtractionService(metrics, environment);
+		ReflectionTestUtils.setField(extractionService, "pdfMaxMainMemoryBytes", 16L * 1024 * 1024);
+		ReflectionTestUtils.setField(extractionService, "pdfScratchDir", "");
+		ReflectionTestUtils.setField(extractionService, "parallelPageThreshold", 200);
+		ReflectionTestUtils.setField(extractionService, "pdfParallelism", 1);
+		extractionService.start();
+
+		FileStorageService fileStorageService = new FileStorageService(metrics);
+		ReflectionTestUtils.setField(fileStorageService, "pdfDir", dir.resolve("pdfs").toString());
+		ReflectionTestUtils.setField(fileStorageService, "textDir", dir.resolve("texts").toString());
+		fileStorageService.init();
+
+		documentRepository = mock(DocumentRepository.class);
+		when(documentRepository.findReadyByContentHashIn(anyCollection())).thenReturn(List.of());
+		when(documentRepository.saveAll(anyList())).thenAnswer(inv -> {
+			List<Document> saved = inv.getArgument(0);
+			for (Document doc : saved) {
+				doc.setId((long) rows.size() + 1);
+				rows.add(doc);
+			}
+			return saved;
+		});
+		when(documentRepository.findDtosByIdIn(anyCollection())).thenAnswer(inv -> {
+			Collection<Long> ids = inv.getArgument(0);
+			return rows.stream().filter(d -> ids.contains(d.getId())).map(DocumentDTO::new).toList();
+		});
+
+		batch = new BatchUploadService(documentRepository, mock(UserRepository.class), fileStorageService,
+				mock(TextStoreService.class), mock(SearchIndexService.class), mock(ExtractionJobService.class),
+				extractionService);
+		ReflectionTestUtils.setField(batch, "maxFiles", 1000);
+		ReflectionTestUtils.setField(batch, "maxArchiveBytes", 0L);
+		ReflectionTestUtils.setField(batch, "maxTotalBytes", 0L);
+	}
+
+	@AfterEach
+	void tearDown() {
+		extractionService.stop();
+	}
+
+	private static String text(int bytes, char fill) {
+		return String.valueOf(fill).repeat(bytes - 1) + "\n";
+	}
+
+	private static byte[] zip(Map<String, String> entries) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+			for (Map.Entry<String, String> entry : entries.entrySet()) {
+				zip.putNextEntry(new ZipEntry(entry.getKey()));
+				zip.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+				zip.closeEntry();
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	private BatchFileResultDTO result(BatchUploadReportDTO report, String filename) {
+		return report.getFiles().stream().filter(f -> f.getFilename().equals(filename)).findFirst().orElseThrow();
+	}
+
+	private long storedBlobs() throws IOException {
+		try (Stream<Path> files = Files.walk(dir.resolve("pdfs"))) {
+			return files.filter(Files::isRegularFile).count();
+		}
+	}
+
+	@Test
+	void entriesOverTheLargestExtractorLimitFailOnTheirOwn() throws Exception {
+		Map<String, String> entries = new LinkedHashMap<>();
+		entries.put("docs/small.txt", text(60, 'a'));
+		entries.put("docs/big.txt", text(101, 'b'));
+		entries.put("docs/after.txt", text(60, 'c'));
+
+		BatchUploadReportDTO report = batch.ingestZip(new ByteArrayInputStream(zip(entries)), null, false);
+
+		assertEquals(3, report.getTotal());
+		assertEquals("CREATED", result(report, "small.txt").getOutcome());
+		assertEquals("CREATED", result(report, "after.txt").getOutcome());
+		assertEquals("FAILED", result(report, "big.txt").getOutcome());
+		assertEquals("File exceeds the 100 byte limit", result(report, "big.txt").getError());
+		assertEquals(2, rows.size());
+		assertEquals(2, storedBlobs());
+	}
+
+	@Test
+	void entriesPastTheFileCountAreSkipped() throws Exception {
+		ReflectionTestUtils.setField(batch, "maxFiles", 2);
+		Map<String, String> entries = new LinkedHashMap<>();
+		for (char c = 'a'; c <= 'c'; c++) entries.put(c + ".txt", text(20, c));
+
+		BatchUploadReportDTO report = batch.ingestZip(new ByteArrayInputStream(zip(entries)), null, false);
+
+		assertEquals(3, report.getTotal());
+		assertEquals("CREATED", result(report, "b.txt").getOutcome());
+		assertEquals("SKIPPED", result(report, "c.txt").getOutcome());
+		assertEquals("Batch limit of 2 files reached", result(report, "c.txt").getError());
+		assertEquals(2, rows.size());
+	}
+
+	@Test
+	void archivesExpandingPastTheTotalAreRejectedAndLeaveNothingBehind() throws Exception {
+		ReflectionTestUtils.setField(batch, "maxTotalBytes", 150L);
+		Map<String, String> entries = new LinkedHashMap<>();
+		for (char c = 'a'; c <= 'c'; c++) entries.put(c + ".txt", text(60, c));
+
+		BatchUploadService.ArchiveTooLargeException e = assertThrows(BatchUploadService.ArchiveTooLargeException.class,
+				() -> batch.ingestZip(new ByteArrayInputStream(zip(entries)), null, false));
+
+		assertEquals("Archive expands to more than 150 bytes", e.getMessage());
+		assertEquals(0, storedBlobs());
+		verify(documentRepository, never()).saveAll(anyList());
+	}
+
+	@Test
+	void archivesOverTheCompressedSizeAreRejected() throws Exception {
+		byte[] archive = zip(Map.of("a.txt", text(60, 'a'), "b.txt", text(60, 'b')));
+		ReflectionTestUtils.setField(batch, "maxArchiveBytes", (long) archive.length - 1);
+
+		BatchUploadService.ArchiveTooLargeException e = assertThrows(BatchUploadService.ArchiveTooLargeException.class,
+				() -> batch.ingestZip(new ByteArrayInputStream(archive), null, false));
+
+		assertEquals("Archive is larger than " + (archive.length - 1) + " bytes", e.getMessage());
+		assertEquals(0, storedBlobs());
+	}
+}
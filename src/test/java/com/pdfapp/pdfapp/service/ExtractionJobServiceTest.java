@@ -0,0 +1,208 @@
+package com.pdfapp.pdfapp.service;
+
+import com.pdfapp.pdfapp.extract.Extractor;
+import com.pdfapp.pdfapp.extract.TextSink;
+import com.pdfapp.pdfapp.model.Document;
+import com.pdfapp.pdfapp.model.DocumentStatus;
+import com.pdfapp.pdfapp.repository.DocumentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ExtractionJobServiceTest {
+
+	@TempDir
+	Path dir;
+
+	private final Map<Long, Document> rows = new HashMap<>();
+	private final Map<Long, List<DocumentStatus>> saved = new HashMap<>();
+	private DocumentRepository documentRepository;
+	private SearchIndexService searchIndexService;
+	private ExtractionService extractionService;
+	private TextStoreService textStoreService;
+	private ExtractionJobService jobs;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		StandardEnvironment environment = new StandardEnvironment();
+		MetricsService metrics = new MetricsService(new SimpleMeterRegistry(), environment);
+
+		extractionService = new ExtractionService(metrics, environment);
+		ReflectionTestUtils.setField(extractionService, "pdfMaxMainMemoryBytes", 16L * 1024 * 1024);
+		ReflectionTestUtils.setField(extractionService, "pdfScratchDir", "");
+		ReflectionTestUtils.setField(extractionService, "parallelPageThreshold", 200);
+		ReflectionTestUtils.setField(extractionService, "pdfParallelism", 1);
+		extractionService.start();
+
+		textStoreService = new TextStoreService(metrics);
+		ReflectionTestUtils.setField(textStoreService, "textDir", dir.resolve("texts").toString());
+		ReflectionTestUtils.setField(textStoreService, "segmentMaxBytes", 1L << 20);
+		ReflectionTestUtils.setField(textStoreService, "compressionLevel", 6);
+		ReflectionTestUtils.setField(textStoreService, "compactDeadRatio", 0.5);
+		ReflectionTestUtils.setField(textStoreService, "compactIntervalSeconds", 300L);
+		textStoreService.init();
+
+		documentRepository = mock(DocumentRepository.class);
+		when(documentRepository.findWithOwnerByIdIn(anyList())).thenAnswer(inv -> {
+			List<Long> ids = inv.getArgument(0);
+			return ids.stream().map(rows::get).filter(Objects::nonNull).toList();
+		});
+		when(documentRepository.existsById(anyLong())).thenAnswer(inv -> rows.containsKey(inv.<Long>getArgument(0)));
+		when(documentRepository.findReadyByContentHash(anyString())).thenReturn(List.of());
+		when(documentRepository.save(any(Document.class))).thenAnswer(inv -> {
+			Document doc = inv.getArgument(0);
+			synchronized (saved) {
+				saved.computeIfAbsent(doc.getId(), id -> new ArrayList<>()).add(doc.getStatus());
+				saved.notifyAll();
+			}
+			return doc;
+		});
+		searchIndexService = mock(SearchIndexService.class);
+
+		jobs = new ExtractionJobService(documentRepository, extractionService, searchIndexService, textStoreService, metrics);
+		ReflectionTestUtils.setField(jobs, "workers", 1);
+		ReflectionTestUtils.setField(jobs, "queueCapacity", 1);
+		ReflectionTestUtils.setField(jobs, "jobTimeoutSeconds", 1L);
+		ReflectionTestUtils.setField(jobs, "batchParallelism", 1);
+		ReflectionTestUtils.setField(jobs, "batchMaxPending", 1);
+		jobs.start();
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		jobs.stop();
+		extractionService.stop();
+		textStoreService.shutdown();
+	}
+
+	private Document pending(long id, Path file) {
+		Document doc = new Document();
+		doc.setId(id);
+		doc.setFilename(file.getFileName().toString());
+		doc.setPdfFilePath(file.toString());
+		doc.setTextFilePath(TextStoreService.segmentRef("doc" + id));
+		doc.setStatus(DocumentStatus.PENDING);
+		rows.put(id, doc);
+		return doc;
+	}
+
+	// Statuses saved for the document once its job has saved a final one
+	private List<DocumentStatus> awaitFinished(long id) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		synchronized (saved) {
+			while (true) {
+				List<DocumentStatus> statuses = saved.getOrDefault(id, List.of());
+				if (!statuses.isEmpty() && statuses.get(statuses.size() - 1) != DocumentStatus.PROCESSING) {
+					return new ArrayList<>(statuses);
+				}
+				long left = deadline - System.nanoTime();
+				if (left <= 0) fail("Document " + id + " never finished: " + statuses);
+				TimeUnit.NANOSECONDS.timedWait(saved, left);
+			}
+		}
+	}
+
+	@Test
+	void pendingDocumentsGoThroughProcessingToReady() throws Exception {
+		Path file = Files.writeString(dir.resolve("notes.txt"), "quarterly invoice totals\n");
+		Document doc = pending(1, file);
+
+		jobs.submit(1L);
+
+		assertEquals(List.of(DocumentStatus.PROCESSING, DocumentStatus.READY), awaitFinished(1));
+		assertNull(doc.getStatusMessage());
+		assertEquals("quarterly invoice totals\n", textStoreService.read(doc.getTextFilePath()));
+		verify(searchIndexService).indexDocument(eq(doc), anyList(), any(long[].class));
+	}
+
+	@Test
+	void unreadableFilesEndFailedWithTheReason() throws Exception {
+		byte[] binary = new byte[2048];
+		new Random(7).nextBytes(binary);
+		Document doc = pending(2, Files.write(dir.resolve("blob.bin"), binary));
+
+		jobs.submit(2L);
+
+		assertEquals(List.of(DocumentStatus.PROCESSING, DocumentStatus.FAILED), awaitFinished(2));
+		assertEquals("Extraction failed: Unsupported file format", doc.getStatusMessage());
+		assertFalse(textStoreService.exists(doc.getTextFilePath()));
+		verifyNoInteractions(searchIndexService);
+	}
+
+	@Test
+	void jobsPastTheTimeoutAreStoppedAndFreeTheirWorker() throws Exception {
+		// A parser that never looks at the interrupt flag and trickles out text
+		extractionService.getRegistry().register(new Extractor() {
+			@Override
+			public String name() {
+				return "txt";
+			}
+
+			@Override
+			public String mimeType() {
+				return "text/plain";
+			}
+
+			@Override
+			public boolean detect(Path file, byte[] head) {
+				return file.getFileName().toString().startsWith("slow");
+			}
+
+			@Override
+			public void extract(Path file, TextSink sink) throws IOException {
+				sink.startPage();
+				while (true) {
+					long until = System.nanoTime() + 1_000_000;
+					while (System.nanoTime() < until) Thread.onSpinWait();
+					sink.append("word ");
+				}
+			}
+		});
+		Document slow = pending(3, Files.writeString(dir.resolve("slow.txt"), "x"));
+
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			jobs.submit(3L);
+			assertEquals(List.of(DocumentStatus.PROCESSING, DocumentStatus.FAILED), awaitFinished(3));
+		});
+		assertEquals("Extraction timed out after 1s", slow.getStatusMessage());
+		assertFalse(textStoreService.exists(slow.getTextFilePath()));
+		assertEquals(0, jobs.getQueueDepth());
+	}
+
+	@Test
+	void fullQueueRejectsFurtherJobs() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch running = new CountDownLatch(1);
+		when(documentRepository.findWithOwnerByIdIn(List.of(10L))).thenAnswer(inv -> {
+			running.countDown();
+			release.await();
+			return List.of();
+		});
+
+		jobs.submit(10L); // occupies the only worker
+		assertTrue(running.await(5, TimeUnit.SECONDS));
+		assertFalse(jobs.isSaturated());
+		jobs.submit(11L); // fills the queue
+		assertTrue(jobs.isSaturated());
+		assertThrows(RejectedExecutionException.class, () -> jobs.submit(12L));
+
+		release.countDown();
+	}
+}
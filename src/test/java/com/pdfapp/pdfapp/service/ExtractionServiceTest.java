@@ -0,0 +1,131 @@
+package com.pdfapp.pdfapp.service;
+
+import com.pdfapp.pdfapp.extract.ExtractedText;
+import com.pdfapp.pdfapp.extract.ExtractionLimitException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExtractionServiceTest {
+
+	@TempDir
+	Path dir;
+
+	private static ExtractionService service(int threshold, int parallelism) {
+		return service(threshold, parallelism, new StandardEnvironment());
+	}
+
+	private static ExtractionService service(int threshold, int parallelism, StandardEnvironment environment) {
+		ExtractionService service = new ExtractionService(
+				new MetricsService(new SimpleMeterRegistry(), environment), environment);
+		ReflectionTestUtils.setField(service, "pdfMaxMainMemoryBytes", 16L * 1024 * 1024);
+		ReflectionTestUtils.setField(service, "pdfScratchDir", "");
+		ReflectionTestUtils.setField(service, "parallelPageThreshold", threshold);
+		ReflectionTestUtils.setField(service, "pdfParallelism", parallelism);
+		service.start();
+		return service;
+	}
+
+	private Path pdf(int pages) throws IOException {
+		return pdf(pages, "doc.pdf");
+	}
+
+	private Path pdf(int pages, String name) throws IOException {
+		Path file = dir.resolve(name);
+		try (PDDocument doc = new PDDocument()) {
+			for (int p = 1; p <= pages; p++) {
+				PDPage page = new PDPage();
+				doc.addPage(page);
+				try (PDPageContentStream content = new PDPageContentStream(doc, page)) {
+					if (p % 7 == 0) continue; // some blank pages
+					content.beginText();
+					content.setFont(PDType1Font.HELVETICA, 12);
+					content.newLineAtOffset(50, 700);
+					content.showText("Page " + p + " alpha beta");
+					content.newLineAtOffset(0, -20);
+					content.showText("second line of page " + p);
+					content.endText();
+				}
+			}
+			doc.save(file.toFile());
+		}
+		return file;
+	}
+
+	@Test
+	void pageRangesStitchBackToTheSequentialResult() throws IOException {
+		Path file = pdf(23);
+		ExtractionService sequential = service(1000, 1);
+		ExtractionService parallel = service(2, 4);
+		try {
+			ExtractedText expected = sequential.extractText(file);
+			ExtractedText actual = parallel.extractText(file);
+
+			assertEquals(23, expected.getPageCount());
+			assertEquals(expected.getText(), actual.getText());
+			assertArrayEquals(expected.getPageOffsets(), actual.getPageOffsets());
+			int offset = actual.getText().indexOf("Page 15 ");
+			assertEquals(15, ExtractedText.pageOf(actual.getPageOffsets(), offset));
+		} finally {
+			sequential.stop();
+			parallel.stop();
+		}
+	}
+
+	@Test
+	void formatComesFromTheBytesNotTheContentType() throws IOException {
+		Path mislabelled = pdf(2, "scan.docx");
+		Path notes = dir.resolve("notes.bin");
+		Files.writeString(notes, "plain notes, naïve café\n");
+		Path binary = dir.resolve("blob.bin");
+		Files.write(binary, new byte[]{0x00, 0x01, 0x02, (byte) 0xFF});
+
+		ExtractionService service = service(1000, 1);
+		try {
+			String docx = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+			assertEquals("pdf", service.detect(mislabelled).name());
+			assertEquals(2, service.extractText(mislabelled).getPageCount());
+			assertEquals("application/pdf", service.contentType(service.detect(mislabelled), docx));
+
+			assertEquals("txt", service.detect(notes).name());
+			assertEquals("plain notes, naïve café\n", service.extractText(notes).getText());
+
+			assertNull(service.detect(binary));
+			assertThrows(IOException.class, () -> service.extractText(binary));
+		} finally {
+			service.stop();
+		}
+	}
+
+	@Test
+	void perExtractorLimitsOverrideTheDefaults() throws IOException {
+		Path file = pdf(5);
+		StandardEnvironment environment = new StandardEnvironment();
+		environment.getPropertySources().addFirst(new MapPropertySource("limits", Map.of(
+				"extraction.limits.max-pages", "100",
+				"extraction.limits.pdf.max-pages", "3")));
+
+		ExtractionService service = service(1000, 1, environment);
+		try {
+			assertEquals(3, service.getLimits("pdf").maxPages());
+			assertEquals(100, service.getLimits("docx").maxPages());
+			assertThrows(ExtractionLimitException.class, () -> service.extractText(file));
+		} finally {
+			service.stop();
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package com.pdfapp.pdfapp.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FileStorageServiceTest {
+
+	@TempDir
+	Path dir;
+
+	private FileStorageService storage;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		storage = new FileStorageService(new MetricsService(new SimpleMeterRegistry(), new StandardEnvironment()));
+		ReflectionTestUtils.setField(storage, "pdfDir", dir.resolve("pdfs").toString());
+		ReflectionTestUtils.setField(storage, "textDir", dir.resolve("texts").toString());
+		storage.init();
+	}
+
+	// length bytes of a repeating pattern, produced as they are read
+	private static InputStream generated(long length) {
+		return new InputStream() {
+			private long pos;
+
+			@Override
+			public int read() {
+				return pos < length ? (int) (pos++ % 251) : -1;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) {
+				if (pos >= length) return -1;
+				int n = (int) Math.min(len, length - pos);
+				for (int i = 0; i < n; i++) b[off + i] = (byte) (pos++ % 251);
+				return n;
+			}
+		};
+	}
+
+	private static String sha256(InputStream in) throws IOException {
+		MessageDigest digest = FileStorageService.newDigest();
+		byte[] buf = new byte[8192];
+		int n;
+		while ((n = in.read(buf)) > 0) digest.update(buf, 0, n);
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	private long filesUnder(Path root) throws IOException {
+		try (Stream<Path> files = Files.walk(root)) {
+			return files.filter(Files::isRegularFile).count();
+		}
+	}
+
+	@Test
+	void uploadsAreStreamedToDiskAndHashedOnTheWay() throws Exception {
+		long length = 8L * 1024 * 1024 + 3;
+		MultipartFile upload = mock(MultipartFile.class);
+		when(upload.getInputStream()).thenReturn(generated(length));
+		when(upload.getBytes()).thenThrow(new AssertionError("the upload must not be read into memory"));
+
+		FileStorageService.StoredFile stored = storage.store(upload);
+
+		assertEquals(length, stored.getSize());
+		assertEquals(length, Files.size(stored.getPath()));
+		assertEquals(sha256(generated(length)), stored.getSha256());
+		assertEquals(stored.getSha256(), storage.sha256(stored.getPath()));
+		assertEquals(1, filesUnder(dir.resolve("pdfs"))); // no temp file left behind
+	}
+
+	@Test
+	void identicalContentIsStoredOnce() throws Exception {
+		byte[] content = "same bytes under two names".getBytes(StandardCharsets.UTF_8);
+
+		FileStorageService.StoredFile first = storage.store(new ByteArrayInputStream(content));
+		FileStorageService.StoredFile second = storage.store(new ByteArrayInputStream(content));
+		FileStorageService.StoredFile other = storage.store(new ByteArrayInputStream("other".getBytes(StandardCharsets.UTF_8)));
+
+		assertFalse(first.isDuplicate());
+		assertTrue(second.isDuplicate());
+		assertEquals(first.getPath(), second.getPath());
+		assertEquals(storage.blobPath(first.getSha256()), first.getPath());
+		assertNotEquals(first.getPath(), other.getPath());
+		assertEquals(2, filesUnder(dir.resolve("pdfs")));
+	}
+}
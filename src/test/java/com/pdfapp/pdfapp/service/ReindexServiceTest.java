@@ -0,0 +1,176 @@
+package com.pdfapp.pdfapp.service;
+
+import com.pdfapp.pdfapp.model.Document;
+import com.pdfapp.pdfapp.model.DocumentStatus;
+import com.pdfapp.pdfapp.repository.DocumentRepository;
+import com.pdfapp.pdfapp.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReindexServiceTest {
+
+	@TempDir
+	Path dir;
+
+	private final List<Document> rows = new ArrayList<>();
+	private Path pdfs;
+	private FileStorageService fileStorageService;
+	private TextStoreService textStoreService;
+	private ExtractionService extractionService;
+	private SearchIndexService searchIndexService;
+	private ExtractionJobService extractionJobService;
+	private ReindexService reindex;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		StandardEnvironment environment = new StandardEnvironment();
+		MetricsService metrics = new MetricsService(new SimpleMeterRegistry(), environment);
+		pdfs = dir.resolve("pdfs");
+
+		extractionService = new ExtractionService(metrics, environment);
+		ReflectionTestUtils.setField(extractionService, "pdfMaxMainMemoryBytes", 16L * 1024 * 1024);
+		ReflectionTestUtils.setField(extractionService, "pdfScratchDir", "");
+		ReflectionTestUtils.setField(extractionService, "parallelPageThreshold", 200);
+		ReflectionTestUtils.setField(extractionService, "pdfParallelism", 1);
+		extractionService.start();
+
+		fileStorageService = new FileStorageService(metrics);
+		ReflectionTestUtils.setField(fileStorageService, "pdfDir", pdfs.toString());
+		ReflectionTestUtils.setField(fileStorageService, "textDir", dir.resolve("texts").toString());
+		fileStorageService.init();
+
+		textStoreService = new TextStoreService(metrics);
+		ReflectionTestUtils.setField(textStoreService, "textDir", dir.resolve("texts").toString());
+		ReflectionTestUtils.setField(textStoreService, "segmentMaxBytes", 1L << 20);
+		ReflectionTestUtils.setField(textStoreService, "compressionLevel", 6);
+		ReflectionTestUtils.setField(textStoreService, "compactDeadRatio", 0.5);
+		ReflectionTestUtils.setField(textStoreService, "compactIntervalSeconds", 300L);
+		textStoreService.init();
+
+		DocumentRepository documentRepository = mock(DocumentRepository.class);
+		when(documentRepository.findAllWithOwner()).thenAnswer(inv -> new ArrayList<>(rows));
+		when(documentRepository.findAll()).thenAnswer(inv -> new ArrayList<>(rows));
+		when(documentRepository.findAllById(anyIterable())).thenAnswer(inv -> {
+			Set<Long> ids = new HashSet<>();
+			inv.<Iterable<Long>>getArgument(0).forEach(ids::add);
+			return rows.stream().filter(d -> ids.contains(d.getId())).toList();
+		});
+		when(documentRepository.save(any(Document.class))).thenAnswer(inv -> {
+			Document doc = inv.getArgument(0);
+			if ("broken.txt".equals(doc.getFilename())) throw new DataIntegrityViolationException("rejected");
+			synchronized (rows) {
+				if (doc.getId() == null) {
+					doc.setId((long) rows.size() + 1);
+					rows.add(doc);
+				}
+			}
+			return doc;
+		});
+		UserRepository userRepository = mock(UserRepository.class);
+		when(userRepository.findByUsername(anyString())).thenReturn(Optional.empty());
+		searchIndexService = mock(SearchIndexService.class);
+		extractionJobService = mock(ExtractionJobService.class);
+
+		reindex = new ReindexService(documentRepository, userRepository, fileStorageService, textStoreService,
+				searchIndexService, extractionJobService, extractionService);
+		ReflectionTestUtils.setField(reindex, "pdfDir", pdfs.toString());
+		ReflectionTestUtils.setField(reindex, "textDir", dir.resolve("texts").toString());
+		ReflectionTestUtils.setField(reindex, "manifestFile", dir.resolve("index/reindex.manifest").toString());
+		ReflectionTestUtils.setField(reindex, "parallelism", 2);
+		ReflectionTestUtils.setField(reindex, "importOrphans", true);
+		ReflectionTestUtils.setField(reindex, "importOwner", "admin");
+		ReflectionTestUtils.setField(reindex, "pruneOrphanTexts", false);
+		ReflectionTestUtils.setField(reindex, "rebuildIndex", true);
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		extractionService.stop();
+		textStoreService.shutdown();
+	}
+
+	private Document row(String filename, String hash, DocumentStatus status) {
+		Document doc = new Document();
+		doc.setId((long) rows.size() + 1);
+		doc.setFilename(filename);
+		doc.setPdfFilePath(pdfs.resolve(filename).toString());
+		doc.setContentHash(hash);
+		doc.setTextFilePath(hash != null ? fileStorageService.textRef(hash) : null);
+		doc.setStatus(status);
+		rows.add(doc);
+		return doc;
+	}
+
+	@Test
+	void reconcilesRowsWithTheStoredFilesAndCountsEveryOutcome() throws Exception {
+		Path kept = Files.writeString(pdfs.resolve("kept.txt"), "already extracted\n");
+		String keptHash = fileStorageService.sha256(kept);
+		try (TextStoreService.TextWriter writer = textStoreService.openWriter(fileStorageService.textRef(keptHash))) {
+			writer.startPage();
+			writer.append("already extracted\n");
+			writer.commit();
+		}
+		Document keptRow = row("kept.txt", keptHash, DocumentStatus.READY);
+
+		Files.writeString(pdfs.resolve("changed.txt"), "edited since the last extraction\n");
+		Document changedRow = row("changed.txt", "0".repeat(64), DocumentStatus.READY);
+
+		Document goneRow = row("gone.txt", "1".repeat(64), DocumentStatus.READY);
+
+		Files.writeString(pdfs.resolve("orphan.txt"), "nobody imported me\n");
+		Files.write(pdfs.resolve("blob.bin"), new byte[]{0, 1, 2, (byte) 0xff, 0, 0x7f, 0x10, 0});
+		Files.writeString(pdfs.resolve("broken.txt"), "the database refuses this one\n");
+
+		ReindexService.Summary summary = reindex.run();
+
+		assertEquals("scanned=5 unchanged=0 hashed=5 imported=1 unsupported=1 re-extracted=2 migrated-texts=0"
+				+ " missing-source=1 orphan-texts=0 pruned-texts=0 errors=1", summary.toString());
+		assertEquals(1, summary.getErrors());
+
+		assertEquals(DocumentStatus.READY, keptRow.getStatus());
+		assertEquals(DocumentStatus.PENDING, changedRow.getStatus());
+		assertEquals(DocumentStatus.FAILED, goneRow.getStatus());
+		assertEquals("Source file missing", goneRow.getStatusMessage());
+		verify(searchIndexService).removeDocument(goneRow.getId());
+
+		Document imported = rows.stream().filter(d -> "orphan.txt".equals(d.getFilename())).findFirst().orElseThrow();
+		assertEquals(DocumentStatus.PENDING, imported.getStatus());
+		verify(extractionJobService).extractAll(argThat(groups ->
+				groups.stream().flatMap(List::stream).sorted().toList()
+						.equals(List.of(changedRow.getId(), imported.getId()))));
+		verify(searchIndexService).rebuild();
+	}
+
+	@Test
+	void aSecondRunOnlyHashesWhatTheManifestDoesNotCover() throws Exception {
+		Files.writeString(pdfs.resolve("a.txt"), "first\n");
+		Files.writeString(pdfs.resolve("b.txt"), "second\n");
+		Files.writeString(pdfs.resolve("broken.txt"), "never recorded\n");
+
+		ReindexService.Summary first = reindex.run();
+		assertEquals(3, first.hashed.get());
+		assertEquals(1, first.getErrors());
+
+		ReindexService.Summary second = reindex.run();
+		assertEquals(3, second.scanned.get());
+		assertEquals(2, second.unchanged.get());
+		assertEquals(1, second.hashed.get());
+		assertEquals(0, second.imported.get()); // a.txt and b.txt have rows now
+		assertEquals(1, second.getErrors());
+	}
+}
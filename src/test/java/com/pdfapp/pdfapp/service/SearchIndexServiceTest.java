@@ -0,0 +1,101 @@
+package com.pdfapp.pdfapp.service;
+
+import com.pdfapp.pdfapp.model.Document;
+import com.pdfapp.pdfapp.repository.DocumentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class SearchIndexServiceTest {
+
+	@TempDir
+	Path dir;
+
+	private final List<SearchIndexService> opened = new ArrayList<>();
+
+	@AfterEach
+	void tearDown() {
+		opened.forEach(SearchIndexService::stop);
+	}
+
+	private SearchIndexService open(int compactThreshold) throws IOException {
+		SearchIndexService service = new SearchIndexService(mock(DocumentRepository.class), mock(TextStoreService.class),
+				new MetricsService(new SimpleMeterRegistry(), new StandardEnvironment()));
+		ReflectionTestUtils.setField(service, "indexDir", dir.toString());
+		ReflectionTestUtils.setField(service, "journalCompactThreshold", compactThreshold);
+		ReflectionTestUtils.setField(service, "maxPrefixTerms", 1000);
+		ReflectionTestUtils.setField(service, "maxFuzzyTerms", 50);
+		service.load();
+		opened.add(service);
+		return service;
+	}
+
+	private static Document doc(long id) {
+		Document doc = new Document();
+		doc.setId(id);
+		doc.setFilename("doc" + id + ".pdf");
+		return doc;
+	}
+
+	private static List<Long> hits(SearchIndexService service, String query) {
+		return service.search(service.parse(query)).toList();
+	}
+
+	@Test
+	void compactionRunsInTheBackgroundAndSurvivesARestart() throws Exception {
+		SearchIndexService service = open(3);
+		for (long id = 1; id <= 4; id++) {
+			service.indexDocument(doc(id), "invoice number " + id);
+		}
+
+		// The third add queues the compaction; the fourth lands in the snapshot or in a fresh journal
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!Files.exists(dir.resolve("index.snapshot")) || Files.exists(dir.resolve("index.journal.prev"))) {
+			assertTrue(System.nanoTime() < deadline, "compaction never finished");
+			Thread.sleep(10);
+		}
+		assertTrue(Files.exists(dir.resolve("trigram.snapshot")));
+
+		service.stop();
+		assertEquals(List.of(1L, 2L, 3L, 4L), hits(open(3), "invoice"));
+	}
+
+	@Test
+	void aJournalSetAsideByAnUnfinishedCompactionIsReplayedFirst() throws Exception {
+		SearchIndexService service = open(500);
+		service.indexDocument(doc(1), "quarterly invoice");
+		service.indexDocument(doc(2), "annual invoice");
+		// As if a compaction had set the journal aside and died before writing its snapshot
+		Files.move(dir.resolve("index.journal"), dir.resolve("index.journal.prev"));
+		service.removeDocument(1);
+		service.stop();
+
+		SearchIndexService reopened = open(500);
+		assertEquals(List.of(2L), hits(reopened, "invoice"));
+		assertFalse(Files.exists(dir.resolve("index.journal")));
+		assertFalse(Files.exists(dir.resolve("index.journal.prev")));
+	}
+
+	@Test
+	void failedJournalAppendsAreReportedAndLeaveTheDocumentOut() throws Exception {
+		SearchIndexService service = open(500);
+		Files.createDirectory(dir.resolve("index.journal")); // nothing can be appended to it
+
+		assertThrows(IOException.class, () -> service.indexDocument(doc(1), "quarterly invoice"));
+		assertEquals(List.of(), hits(service, "invoice"));
+		assertTrue(service.suggest("quar", 5).terms().isEmpty());
+	}
+}
@@ -0,0 +1,74 @@
+package com.pdfapp.pdfapp.service;
+
+import com.pdfapp.pdfapp.search.DocIdSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SearchResultCacheTest {
+
+	private final AtomicLong generation = new AtomicLong(1);
+	private final AtomicInteger loads = new AtomicInteger();
+	private SearchResultCache cache;
+
+	@BeforeEach
+	void setUp() {
+		SearchIndexService searchIndexService = mock(SearchIndexService.class);
+		when(searchIndexService.generation()).thenAnswer(inv -> generation.get());
+		cache = new SearchResultCache(searchIndexService,
+				new MetricsService(new SimpleMeterRegistry(), new StandardEnvironment()));
+		ReflectionTestUtils.setField(cache, "maxHits", 1000L);
+		cache.init();
+	}
+
+	private List<String> search(String query) {
+		return cache.get("query", query, 10, () -> List.of("result " + loads.incrementAndGet()));
+	}
+
+	@Test
+	void repeatedQueriesAreServedFromTheCache() {
+		assertEquals(List.of("result 1"), search("invoice  AND total"));
+		assertEquals(List.of("result 1"), search(" invoice AND total "));
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	void aGenerationChangeInvalidatesEveryCachedResult() {
+		search("invoice");
+		cache.getHits("boolean", "invoice", () -> new DocIdSet(new long[]{1, 2}), ids -> List.of("doc 1", "doc 2"));
+
+		generation.incrementAndGet(); // e.g. a document was indexed
+		assertEquals(List.of("result 2"), search("invoice"));
+		SearchResultCache.Hits<String> hits = cache.getHits("boolean", "invoice",
+				() -> new DocIdSet(new long[]{3}), ids -> List.of("doc 3"));
+		assertEquals(List.of(3L), hits.ids().toList());
+		assertEquals(List.of("doc 3"), hits.documents());
+
+		assertEquals(List.of("result 2"), search("invoice")); // cached again at the new generation
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	void verbatimQueriesKeepTheirWhitespace() {
+		cache.getVerbatim("substring", "a  b", 0, () -> List.of(loads.incrementAndGet()));
+		cache.getVerbatim("substring", "a b", 0, () -> List.of(loads.incrementAndGet()));
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	void failedLoadsCacheNothing() {
+		assertThrows(IllegalArgumentException.class, () -> cache.get("query", "(", 10, () -> {
+			throw new IllegalArgumentException("unbalanced");
+		}));
+		assertEquals(List.of("result 1"), search("("));
+	}
+}
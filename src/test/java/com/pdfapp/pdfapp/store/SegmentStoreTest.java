@@ -0,0 +1,200 @@
+package com.pdfapp.pdfapp.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentStoreTest {
+
+	@TempDir
+	Path dir;
+
+	private static String text(int chars) {
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < chars) sb.append("page ").append(sb.length()).append(" été 😀 ");
+		return sb.substring(0, chars);
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {0, 6})
+	void readsWholeTextsAndRangesAcrossBlocks(int compressionLevel) throws IOException {
+		String big = text(SegmentStore.BLOCK_BYTES * 3 + 17);
+		try (SegmentStore store = SegmentStore.open(dir, 1 << 20, compressionLevel)) {
+			store.put("a", "hello world", new int[]{0, 6});
+			store.put("b", big, new int[]{0});
+
+			assertEquals("hello world", store.read("a"));
+			assertArrayEquals(new int[]{0, 6}, store.pageOffsets("a"));
+			assertEquals("world", store.readRange("a", 6, 100));
+			assertEquals(big, store.read("b"));
+
+			int start = SegmentStore.BLOCK_BYTES - 5;
+			assertEquals(big.substring(start, start + SegmentStore.BLOCK_BYTES + 10),
+					store.readRange("b", start, SegmentStore.BLOCK_BYTES + 10));
+			assertEquals(big.substring(big.length() - 3), store.readRange("b", big.length() - 3, 50));
+			assertEquals("", store.readRange("b", big.length(), 5));
+
+			try (InputStream in = store.openStream("b")) {
+				assertEquals(big, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+			}
+			assertEquals(big.getBytes(StandardCharsets.UTF_8).length, store.byteLength("b"));
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {0, 6})
+	void streamedTextsSplitAcrossAppendsReadBackWhole(int compressionLevel) throws IOException {
+		String big = text(SegmentStore.BLOCK_BYTES * 2 + 333);
+		try (SegmentStore store = SegmentStore.open(dir, 1 << 20, compressionLevel)) {
+			int half = big.length() / 2;
+			try (SegmentStore.TextWriter writer = store.openWriter("a")) {
+				writer.startPage();
+				// chunks of 7 cut through surrogate pairs and block boundaries
+				for (int i = 0; i < half; i += 7) writer.append(big.substring(i, Math.min(i + 7, half)));
+				writer.startPage();
+				writer.append(big.substring(half));
+				writer.commit();
+			}
+			try (SegmentStore.TextWriter writer = store.openWriter("b")) {
+				writer.append("never committed");
+			}
+
+			assertEquals(big, store.read("a"));
+			assertArrayEquals(new int[]{0, half}, store.pageOffsets("a"));
+			assertEquals(big.substring(half - 3, half + 3), store.readRange("a", half - 3, 6));
+			assertFalse(store.contains("b"));
+		}
+		try (Stream<Path> files = Files.list(dir)) {
+			assertTrue(files.noneMatch(p -> p.getFileName().toString().startsWith("spill-")));
+		}
+		try (SegmentStore store = SegmentStore.open(dir, 1 << 20, compressionLevel)) {
+			assertEquals(big, store.read("a"));
+		}
+	}
+
+	@Test
+	void compressedTextsAreServedAsGzipFromTheStoredBlocks() throws IOException {
+		String big = text(SegmentStore.BLOCK_BYTES * 2 + 500);
+		try (SegmentStore store = SegmentStore.open(dir, 1 << 20, 6)) {
+			store.put("b", big, new int[]{0});
+			assertTrue(store.isCompressed("b"));
+			assertTrue(store.gzipLength("b") * 3 < store.byteLength("b"));
+
+			byte[] gzip;
+			try (InputStream in = store.openGzip("b")) {
+				gzip = in.readAllBytes();
+			}
+			assertEquals(store.gzipLength("b"), gzip.length);
+			try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+				assertEquals(big, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+			}
+		}
+	}
+
+	@Test
+	void deletesSurviveReopenAndTornTailIsDropped() throws IOException {
+		try (SegmentStore store = SegmentStore.open(dir, 1 << 20, 6)) {
+			store.put("a", "first", new int[]{0});
+			store.put("b", "second", new int[]{0});
+			assertTrue(store.delete("a"));
+			assertFalse(store.delete("a"));
+		}
+		Path segment;
+		try (Stream<Path> files = Files.list(dir)) {
+			segment = files.findFirst().orElseThrow();
+		}
+		Files.write(segment, new byte[]{0x54, 0x58, 0x54}, StandardOpenOption.APPEND);
+
+		try (SegmentStore store = SegmentStore.open(dir, 1 << 20, 6)) {
+			assertFalse(store.contains("a"));
+			assertThrows(NoSuchFileException.class, () -> store.read("a"));
+			assertEquals("second", store.read("b"));
+			store.put("c", "third", new int[]{0});
+		}
+		try (SegmentStore store = SegmentStore.open(dir, 1 << 20, 6)) {
+			assertEquals("third", store.read("c"));
+		}
+	}
+
+	@Test
+	void compactionMovesLiveTextsAndRemovesDeadSegments() throws IOException {
+		String filler = text(4000);
+		try (SegmentStore store = SegmentStore.open(dir, 16 * 1024, 0)) {
+			for (int i = 0; i < 12; i++) store.put("doc" + i, i + filler, new int[]{0});
+			for (int i = 0; i < 12; i++) if (i % 4 != 0) store.delete("doc" + i);
+			long before;
+			try (Stream<Path> files = Files.list(dir)) {
+				before = files.count();
+			}
+
+			assertTrue(store.compact(0.5) > 0);
+			long after;
+			try (Stream<Path> files = Files.list(dir)) {
+				after = files.count();
+			}
+			assertTrue(after < before);
+			for (int i = 0; i < 12; i += 4) assertEquals(i + filler, store.read("doc" + i));
+		}
+		try (SegmentStore store = SegmentStore.open(dir, 16 * 1024, 0)) {
+			assertEquals(3, store.keys().size());
+			assertEquals("8" + filler, store.read("doc8"));
+		}
+	}
+
+	private boolean anySegmentMentions(String key) throws IOException {
+		byte[] needle = key.getBytes(StandardCharsets.UTF_8);
+		try (Stream<Path> files = Files.list(dir)) {
+			for (Path file : files.toList()) {
+				byte[] bytes = Files.readAllBytes(file);
+				for (int i = 0; i + needle.length <= bytes.length; i++) {
+					if (Arrays.equals(bytes, i, i + needle.length, needle, 0, needle.length)) return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	@Test
+	void compactionKeepsOnlyTombstonesThatStillShadowAnOlderRecord() throws IOException {
+		String filler = text(4000);
+		try (SegmentStore store = SegmentStore.open(dir, 16 * 1024, 0)) {
+			// First segment: stays mostly live, so it is not compacted
+			store.put("shadowed", filler, new int[]{0});
+			store.put("live1", filler, new int[]{0});
+			store.put("live2", filler, new int[]{0});
+			// Second segment: texts deleted where they were written, plus a delete of an older text
+			store.put("ghost", filler, new int[]{0});
+			store.put("dead", filler, new int[]{0});
+			store.delete("shadowed");
+			store.delete("ghost");
+			store.delete("dead");
+			store.put("live3", filler, new int[]{0});
+			store.put("live4", filler, new int[]{0});
+
+			assertEquals(1, store.compact(0.5));
+			assertFalse(anySegmentMentions("ghost"));
+			assertFalse(anySegmentMentions("dead"));
+		}
+		try (SegmentStore store = SegmentStore.open(dir, 16 * 1024, 0)) {
+			assertFalse(store.contains("shadowed"));
+			assertEquals(Set.of("live1", "live2", "live3", "live4"), store.keys());
+			assertEquals(filler, store.read("live3"));
+		}
+	}
+}